@@ -17,8 +17,13 @@
 
 package io.oigres.ecomm.gateway.config;
 
+import io.oigres.ecomm.gateway.util.JwtAlgorithm;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -33,10 +38,59 @@ public class AuthenticationProperties {
 
   @Data
   public static class Jwt {
-    @NotNull @NotBlank private String secret;
+    @Data
+    public static class Key {
+      @NotNull @NotBlank private String id;
+      @NotNull private JwtAlgorithm algorithm = JwtAlgorithm.HS256;
+
+      /** Base64 secret of HS256 keys. */
+      private String secret;
+
+      /** X.509 public key of RS256/ES256 keys, either PEM or base64 DER. */
+      private String publicKey;
+
+      /** PKCS#8 private key of RS256/ES256 keys, only needed when this key signs new tokens. */
+      private String privateKey;
+    }
+
+    /** Secret which verifies the tokens without "kid" header. */
+    private String secret;
+
+    private boolean fastPath;
+    @NotNull @Valid private List<Key> keys = new ArrayList<>();
+
+    /** Id of the key which signs new tokens. The secret is used when it is empty. */
+    private String currentKeyId;
+
+    /** How long a key is still accepted after it was removed from the configuration. */
+    @NotNull private Duration gracePeriod = Duration.ofHours(24);
+  }
+
+  @Data
+  public static class TokenCache {
+    private boolean enabled = true;
+    private long maximumSize = 100_000;
+  }
+
+  @Data
+  public static class Revocation {
+    private boolean enabled = true;
+
+    /** Topic where revoked tokens are published. */
+    @NotNull @NotBlank private String topic;
+
+    /** Expected number of revoked tokens which are not expired yet, to size the Bloom filter. */
+    private long expectedTokens = 100_000;
+
+    private double falsePositiveProbability = 0.001;
+
+    /** How often expired tokens are removed from the revocation list. */
+    @NotNull private Duration purgeInterval = Duration.ofMinutes(10);
   }
 
   @NotNull @NotBlank private String scope;
   private boolean enabled;
-  @NotNull private Jwt jwt;
+  @NotNull @Valid private Jwt jwt;
+  @NotNull private TokenCache tokenCache = new TokenCache();
+  @NotNull private Revocation revocation = new Revocation();
 }
@@ -0,0 +1,61 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.config;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import io.oigres.ecomm.gateway.services.CacheNames;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+
+/**
+ * Loads the entries of the local blocked users cache from redis without blocking. Caffeine runs a
+ * single load per key, so all the requests which miss the same user at the same time wait for one
+ * redis read, and it reloads entries in the background when they are refreshed.
+ *
+ * <p>An user which is not in redis is loaded as {@link NullValue}, so it is cached as not blocked.
+ * A failed or timed out read completes exceptionally and nothing is cached.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+public class BlockedUserCacheLoader implements AsyncCacheLoader<Object, Object> {
+
+  private final ReactiveRedisTemplate<String, BlockedUser> blockedUserReactiveRedisTemplate;
+  private final Duration timeout;
+
+  public BlockedUserCacheLoader(
+      ReactiveRedisTemplate<String, BlockedUser> blockedUserReactiveRedisTemplate,
+      Duration timeout) {
+    this.blockedUserReactiveRedisTemplate = blockedUserReactiveRedisTemplate;
+    this.timeout = timeout;
+  }
+
+  @Override
+  public CompletableFuture<Object> asyncLoad(Object userId, Executor executor) {
+    return this.blockedUserReactiveRedisTemplate
+        .opsForValue()
+        .get(CacheNames.BLOCKED_USERS_KEY_PREFIX + userId)
+        .<Object>map(blockedUser -> blockedUser)
+        .defaultIfEmpty(NullValue.INSTANCE)
+        .timeout(this.timeout)
+        .toFuture();
+  }
+}
@@ -0,0 +1,78 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.config;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Weigher;
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expiration and weight of the entries of the local blocked users cache. An entry of a blocked user
+ * expires exactly when its block is over, and an user which is not blocked is cached for a fixed
+ * time. Weights are an estimation of the bytes which are retained by each entry, so the cache is
+ * bounded by memory instead of by number of entries.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+final class BlockedUserCachePolicy implements Expiry<Object, Object>, Weigher<Object, Object> {
+  /** Cache node and its references, plus the headers of the key string and its array. */
+  private static final int ENTRY_OVERHEAD = 64 + 40;
+
+  /** BlockedUser, headers of its user id string and two LocalDateTime with their date and time. */
+  private static final int BLOCKED_USER_OVERHEAD = 24 + 40 + 2 * 72;
+
+  private final long negativeTtlNanos;
+
+  BlockedUserCachePolicy(Duration negativeTtl) {
+    this.negativeTtlNanos = negativeTtl.toNanos();
+  }
+
+  @Override
+  public long expireAfterCreate(Object key, Object value, long currentTime) {
+    if (value instanceof BlockedUser blockedUser) {
+      long remaining = blockedUser.getToEpochMilli() - System.currentTimeMillis();
+      if (remaining > 0) {
+        return TimeUnit.MILLISECONDS.toNanos(remaining);
+      }
+    }
+    // not blocked, or its block is already over
+    return this.negativeTtlNanos;
+  }
+
+  @Override
+  public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+    return expireAfterCreate(key, value, currentTime);
+  }
+
+  @Override
+  public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+    return currentDuration;
+  }
+
+  @Override
+  public int weigh(Object key, Object value) {
+    int weight = ENTRY_OVERHEAD + key.toString().length();
+    if (value instanceof BlockedUser blockedUser) {
+      String userId = blockedUser.getUserId();
+      weight += BLOCKED_USER_OVERHEAD + (userId != null ? userId.length() : 0);
+    }
+    return weight;
+  }
+}
@@ -0,0 +1,123 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.config;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import io.oigres.ecomm.gateway.services.BlockedUserCacheInvalidator;
+import io.oigres.ecomm.gateway.services.BlockedUserStore;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Loads all the users which are blocked now into the local blocked users cache when the gateway
+ * starts, so a new instance does not send every request of its first minutes to redis. It is also
+ * a health indicator of the readiness group, which is out of service until the warm-up is over, so
+ * the instance does not get traffic with an empty cache.
+ *
+ * <p>The warm-up starts once the instance is subscribed to the cache invalidations, because the
+ * cache is cleared on each subscription. If the warm-up fails or takes too long, the instance gets
+ * ready anyway and its cache is loaded on demand.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+@Order(0)
+@Slf4j
+public class BlockedUserCacheWarmUp
+    implements ApplicationListener<ApplicationStartedEvent>, HealthIndicator {
+
+  private final AsyncLoadingCache<Object, Object> blockedUsersNearCache;
+  private final BlockedUserStore blockedUserStore;
+  private final BlockedUserCacheInvalidator blockedUserCacheInvalidator;
+  private final LimiterServiceProperties.WarmUpProperties properties;
+  private final AtomicReference<Health> health;
+
+  public BlockedUserCacheWarmUp(
+      AsyncLoadingCache<Object, Object> blockedUsersNearCache,
+      BlockedUserStore blockedUserStore,
+      BlockedUserCacheInvalidator blockedUserCacheInvalidator,
+      LimiterServiceProperties limiterServiceProperties) {
+    this.blockedUsersNearCache = blockedUsersNearCache;
+    this.blockedUserStore = blockedUserStore;
+    this.blockedUserCacheInvalidator = blockedUserCacheInvalidator;
+    this.properties = limiterServiceProperties.getNearCache().getWarmUp();
+    this.health =
+        new AtomicReference<>(
+            this.properties.isEnabled()
+                ? Health.outOfService().withDetail("warmUp", "pending").build()
+                : Health.up().withDetail("warmUp", "disabled").build());
+  }
+
+  @Override
+  public void onApplicationEvent(ApplicationStartedEvent event) {
+    if (!this.properties.isEnabled()) {
+      return;
+    }
+    long start = System.nanoTime();
+    this.health.set(Health.outOfService().withDetail("warmUp", "running").build());
+    Mono.fromFuture(this.blockedUserCacheInvalidator.subscribed(), true)
+        .thenMany(
+            Flux.defer(
+                () ->
+                    this.blockedUserStore.findActive(
+                        this.properties.getBatchSize(), this.properties.getConcurrency())))
+        .doOnNext(
+            blockedUser ->
+                this.blockedUsersNearCache.synchronous().put(blockedUser.getUserId(), blockedUser))
+        .count()
+        .timeout(this.properties.getTimeout())
+        .subscribe(
+            count -> {
+              long took = (System.nanoTime() - start) / 1_000_000;
+              log.info("Blocked users cache warm-up loaded {} entries in {} ms", count, took);
+              this.health.set(
+                  Health.up()
+                      .withDetail("warmUp", "done")
+                      .withDetail("entries", count)
+                      .withDetail("tookMillis", took)
+                      .build());
+            },
+            e -> {
+              long took = (System.nanoTime() - start) / 1_000_000;
+              log.error(
+                  "Blocked users cache warm-up failed after {} ms, entries will be loaded on"
+                      + " demand: ",
+                  took,
+                  e);
+              this.health.set(
+                  Health.up()
+                      .withDetail("warmUp", "failed")
+                      .withDetail("tookMillis", took)
+                      .withException(e)
+                      .build());
+            });
+  }
+
+  @Override
+  public Health health() {
+    return this.health.get();
+  }
+}
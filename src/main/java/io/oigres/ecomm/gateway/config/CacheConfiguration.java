@@ -20,14 +20,19 @@ package io.oigres.ecomm.gateway.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import io.oigres.ecomm.cache.CacheLockFactory;
 import io.oigres.ecomm.cache.GzipRedisSerializer;
 import io.oigres.ecomm.cache.RedisLockAwareCacheManager;
 import io.oigres.ecomm.cache.RedissonCacheLockFactory;
 import io.oigres.ecomm.gateway.model.BlockedUser;
 import io.oigres.ecomm.gateway.services.CacheNames;
-import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -47,12 +52,14 @@ import org.springframework.data.redis.cache.CacheStatisticsCollector;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 /**
- * Configures two level cache (caffeine and redis). Also it defines a gzip serializer to send data
- * to redis.
+ * Configures two level cache (caffeine and redis). Also it defines a binary serializer to send
+ * data to redis, which still reads the gzip JSON entries.
  *
  * @author sergio.exposito (sjexpos@gmail.com)
  */
@@ -61,17 +68,53 @@ import org.springframework.data.redis.serializer.RedisSerializationContext;
 @EnableCaching(mode = AdviceMode.PROXY)
 public class CacheConfiguration {
 
+  /**
+   * Local cache of blocked users. Each entry expires when the block of its user is over, which is
+   * tracked by the timer wheel of caffeine, and the scheduler removes it at that moment instead of
+   * on a later access. Misses are loaded from redis once per key, and entries which are read after
+   * the refresh interval are reloaded in the background while the cached value is still returned.
+   */
+  @Bean
+  public AsyncLoadingCache<Object, Object> blockedUsersNearCache(
+      ReactiveRedisTemplate<String, BlockedUser> blockedUserReactiveRedisTemplate,
+      LimiterServiceProperties limiterServiceProperties,
+      MeterRegistry meterRegistry) {
+    LimiterServiceProperties.NearCacheProperties properties =
+        limiterServiceProperties.getNearCache();
+    BlockedUserCachePolicy policy = new BlockedUserCachePolicy(properties.getNegativeTtl());
+    Counter expiredCounter =
+        Counter.builder("gateway.blocked.users.cache.expired")
+            .description("Blocks removed from the local blocked users cache when they were over")
+            .register(meterRegistry);
+    AsyncLoadingCache<Object, Object> cache =
+        Caffeine.newBuilder()
+            .expireAfter(policy)
+            .refreshAfterWrite(properties.getRefreshAfterWrite())
+            .maximumWeight(properties.getMaximumWeight().toBytes())
+            .weigher(policy)
+            .scheduler(Scheduler.systemScheduler())
+            .evictionListener(
+                (key, value, cause) -> {
+                  // negative entries expire too, they are not counted
+                  if (cause == RemovalCause.EXPIRED && value instanceof BlockedUser) {
+                    expiredCounter.increment();
+                  }
+                })
+            .recordStats()
+            .buildAsync(
+                new BlockedUserCacheLoader(
+                    blockedUserReactiveRedisTemplate,
+                    limiterServiceProperties.getLookup().getTimeout()));
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, CacheNames.BLOCKED_USERS_CACHE_NAME);
+    return cache;
+  }
+
   @Bean
   @Primary
-  public CacheManager caffeineCacheManager() {
+  public CacheManager caffeineCacheManager(
+      AsyncLoadingCache<Object, Object> blockedUsersNearCache) {
     CaffeineCache caffeineCache =
-        new CaffeineCache(
-            CacheNames.BLOCKED_USERS_CACHE_NAME,
-            Caffeine.newBuilder()
-                .expireAfterWrite(Duration.ofMinutes(1))
-                .initialCapacity(1)
-                .maximumSize(10000)
-                .build());
+        new CaffeineCache(CacheNames.BLOCKED_USERS_CACHE_NAME, blockedUsersNearCache, true);
     SimpleCacheManager manager = new SimpleCacheManager();
     manager.setCaches(Arrays.asList(caffeineCache));
     return manager;
@@ -88,20 +131,46 @@ public class CacheConfiguration {
   }
 
   @Bean
-  public CacheManager redisCacheManager(
-      RedissonConnectionFactory connectionFactory, CacheLockFactory cacheLockFactory) {
+  public RedisSerializer<BlockedUser> blockedUserRedisSerializer(
+      LimiterServiceProperties limiterServiceProperties) {
     ObjectMapper objectMapper = new ObjectMapper();
     objectMapper.registerModule(new JavaTimeModule());
     objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    return new BlockedUserRedisSerializer(
+        new GzipRedisSerializer<>(
+            new Jackson2JsonRedisSerializer<>(objectMapper, BlockedUser.class)),
+        limiterServiceProperties.getRedis().getWriteFormat());
+  }
+
+  /**
+   * Reactive access to the blocked users which are stored by the redis cache manager, so they can
+   * be read on the event loops without blocking. Keys must have the cache key prefix.
+   */
+  @Bean
+  public ReactiveRedisTemplate<String, BlockedUser> blockedUserReactiveRedisTemplate(
+      RedissonConnectionFactory connectionFactory,
+      RedisSerializer<BlockedUser> blockedUserRedisSerializer) {
+    return new ReactiveRedisTemplate<>(
+        connectionFactory,
+        RedisSerializationContext.<String, BlockedUser>newSerializationContext(
+                RedisSerializer.string())
+            .value(blockedUserRedisSerializer)
+            .build());
+  }
+
+  @Bean
+  public CacheManager redisCacheManager(
+      RedissonConnectionFactory connectionFactory,
+      CacheLockFactory cacheLockFactory,
+      RedisSerializer<BlockedUser> blockedUserRedisSerializer) {
     Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
     cacheConfigurations.put(
         CacheNames.BLOCKED_USERS_CACHE_NAME,
         RedisCacheConfiguration.defaultCacheConfig()
             .serializeValuesWith(
                 RedisSerializationContext.SerializationPair.fromSerializer(
-                    new GzipRedisSerializer<>(
-                        new Jackson2JsonRedisSerializer<>(objectMapper, BlockedUser.class))))
-            .entryTtl(Duration.ofHours(12)));
+                    blockedUserRedisSerializer))
+            .entryTtl(CacheNames.BLOCKED_USERS_REDIS_TTL));
 
     RedisCacheWriter cacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory);
     cacheWriter.withStatisticsCollector(CacheStatisticsCollector.create());
@@ -45,6 +45,8 @@ public class GatewayConfig {
       RequestAuditFilter requestAuditFilter,
       ResponseAuditFilter responseAuditFilter,
       RequestLimiter requestLimiter,
+      ConcurrencyLimiter concurrencyLimiter,
+      FairQueueLimiter fairQueueLimiter,
       GatewayProperties gatewayProperties) {
     return builder
         .routes()
@@ -82,7 +84,9 @@ public class GatewayConfig {
                             f.filter(loggingFilter)
                                 .filter(authFilter)
                                 .filter(requestLimiter)
-                                .modifyRequestBody(String.class, String.class, requestAuditFilter)
+                                .filter(concurrencyLimiter)
+                                .filter(fairQueueLimiter)
+                                .filter(requestAuditFilter)
                                 .filter(responseAuditFilter))
                     .uri(gatewayProperties.getForward()))
         .build();
@@ -17,8 +17,13 @@
 
 package io.oigres.ecomm.gateway.config;
 
+import io.oigres.ecomm.gateway.validator.RouteValidator;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -31,6 +36,74 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "ecomm.service.gateway")
 public class GatewayProperties {
 
+  @Data
+  public static class Routes {
+    /** Path patterns which do not need authentication. */
+    @NotNull private List<String> unprotected = new ArrayList<>(List.of(RouteValidator.SIGNIN_PATH));
+
+    /** Path patterns which need authentication, even when they match an unprotected pattern. */
+    @NotNull private List<String> secured = new ArrayList<>();
+  }
+
+  @Data
+  public static class RateLimit {
+    /**
+     * When enabled, each user has a token bucket in the gateway, and requests beyond it are
+     * rejected with 429 status before the limiter service blacklists the user.
+     */
+    private boolean enabled = false;
+
+    /** Requests which an user can send at once on each gateway instance. */
+    @Positive private int capacity = 50;
+
+    /** Requests per second which an user can send across all the gateway instances. */
+    @Positive private double refillRate = 20;
+
+    /** How often the usage of each user is shared with the other instances through redis. */
+    @NotNull private Duration syncInterval = Duration.ofSeconds(1);
+
+    /** Maximum number of users whose bucket is kept in memory. */
+    @Positive private long maximumUsers = 100_000;
+  }
+
+  @Data
+  public static class ConcurrencyLimit {
+    /** When enabled, requests of an user beyond its maximum in flight are rejected with 429. */
+    private boolean enabled = false;
+
+    /** Requests of an user which can be in flight at once on each gateway instance. */
+    @Positive private int maxInFlight = 20;
+  }
+
+  @Data
+  public static class FairQueue {
+    /**
+     * When enabled, the requests which are forwarded at once are limited, and requests beyond it
+     * wait in a queue per user, which are served in turns, so a few users can not take all the
+     * upstream capacity.
+     */
+    private boolean enabled = false;
+
+    /** Requests which can be forwarded at once by each gateway instance. */
+    @Positive private int maxInFlight = 200;
+
+    /** Requests which can wait on each gateway instance, beyond it they are rejected with 503. */
+    @Positive private int maxQueued = 1000;
+
+    /** Requests of an user which can wait on each gateway instance. */
+    @Positive private int maxQueuedPerUser = 50;
+
+    /** Maximum time a request waits for its turn, after it the request is rejected with 503. */
+    @NotNull private Duration maxDelay = Duration.ofSeconds(2);
+
+    /** Requests of an user which are forwarded on each of its turns. */
+    @Positive private int quantum = 1;
+  }
+
   @NotNull @NotBlank private String forward;
   @NotNull @NotBlank private String authServerUri;
+  @NotNull private Routes routes = new Routes();
+  @NotNull private RateLimit rateLimit = new RateLimit();
+  @NotNull private ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+  @NotNull private FairQueue fairQueue = new FairQueue();
 }
@@ -18,6 +18,12 @@
 package io.oigres.ecomm.gateway.config;
 
 import io.micrometer.common.KeyValues;
+import io.oigres.ecomm.gateway.util.AuditSerializer;
+import io.oigres.ecomm.gateway.util.BinaryAuditCodec;
+import io.oigres.ecomm.gateway.util.JsonAuditCodec;
+import java.util.Map;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
@@ -61,7 +67,20 @@ public class KafkaConfig {
     // limiterServiceProperties.getTopics().getIncomingRequest().getReplicationFactor()
     //                )
     //        );
-    KafkaTemplate<String, Object> template = new KafkaTemplate<>(messageProducerFactory);
+    String codecName =
+        switch (limiterServiceProperties.getAudit().getCodec()) {
+          case JSON -> JsonAuditCodec.NAME;
+          case BINARY -> BinaryAuditCodec.NAME;
+        };
+    // the template owns the copy of the factory with the audit serializer, and closes it
+    KafkaTemplate<String, Object> template =
+        new KafkaTemplate<>(
+            messageProducerFactory,
+            Map.<String, Object>of(
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+                AuditSerializer.class,
+                AuditSerializer.CODEC_CONFIG,
+                codecName));
     template.setDefaultTopic(limiterServiceProperties.getTopics().getIncomingRequest().getName());
     template.setObservationEnabled(true);
     template.setObservationConvention(
@@ -91,4 +110,28 @@ public class KafkaConfig {
     factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.RECORD);
     return factory;
   }
+
+  /**
+   * Delivers all the records of a poll at once to the blacklisted users batch listener. Offsets are
+   * committed by the container after each batch, so auto commit is disabled for its consumers.
+   */
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<String, String>
+      blacklistedUsersBatchListenerContainerFactory(
+          ConsumerFactory<String, String> consumerFactory,
+          LimiterServiceProperties limiterServiceProperties) {
+    ConcurrentKafkaListenerContainerFactory<String, String> factory =
+        new ConcurrentKafkaListenerContainerFactory<>();
+    factory.setConsumerFactory(consumerFactory);
+    factory.setConcurrency(
+        limiterServiceProperties.getTopics().getBlacklistedUsers().getConcurrency());
+    factory.setBatchListener(true);
+    factory.getContainerProperties().setObservationEnabled(true);
+    factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+    factory
+        .getContainerProperties()
+        .getKafkaConsumerProperties()
+        .setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+    return factory;
+  }
 }
@@ -0,0 +1,65 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.config;
+
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Finds the partitions of a topic, for the listeners which are assigned all of them instead of
+ * joining a consumer group, because every gateway instance must receive every message.
+ *
+ * <p>Partitions are found when the listeners are created, so partitions which are added later are
+ * not consumed until the gateway is restarted.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+@Slf4j
+public class KafkaPartitionFinder {
+  private final ConsumerFactory<?, ?> consumerFactory;
+
+  public KafkaPartitionFinder(ConsumerFactory<?, ?> consumerFactory) {
+    this.consumerFactory = consumerFactory;
+  }
+
+  /**
+   * @param topic topic name
+   * @return the partitions of the topic, or only the first one when they cannot be found
+   */
+  public String[] partitions(String topic) {
+    try (Consumer<?, ?> consumer = this.consumerFactory.createConsumer()) {
+      List<PartitionInfo> partitions = consumer.partitionsFor(topic);
+      if (partitions != null && !partitions.isEmpty()) {
+        return partitions.stream()
+            .map(partition -> String.valueOf(partition.partition()))
+            .toArray(String[]::new);
+      }
+      log.warn("Topic '{}' has no partitions, only its first one will be consumed", topic);
+    } catch (KafkaException e) {
+      log.warn(
+          "Partitions of topic '{}' were not found, only its first one will be consumed", topic, e);
+    }
+    return new String[] {"0"};
+  }
+}
@@ -19,8 +19,11 @@ package io.oigres.ecomm.gateway.config;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * Properties to configure kafka topic when this gateway must send and receive messages.
@@ -38,17 +41,211 @@ public class LimiterServiceProperties {
     private short replicationFactor;
   }
 
+  @Data
+  public static class BatchListenerProperties {
+    /**
+     * When enabled, the records of each poll are processed together: the messages of each user are
+     * merged in memory, every user is written to redis once and offsets are committed per batch.
+     */
+    private boolean enabled = false;
+  }
+
   @Data
   public static class BlacklistedUsersTopicProperties {
     @NotNull @NotBlank private String name;
     private int concurrency;
+    @NotNull private BatchListenerProperties batch = new BatchListenerProperties();
+  }
+
+  @Data
+  public static class UsageTopicProperties {
+    @NotNull @NotBlank private String name;
   }
 
   @Data
   public static class Topics {
     @NotNull @NotBlank private IncomingRequestTopicProperties incomingRequest;
     @NotNull @NotBlank private BlacklistedUsersTopicProperties blacklistedUsers;
+    @NotNull private UsageTopicProperties usage;
+  }
+
+  @Data
+  public static class UsageProperties {
+    /**
+     * When enabled, the requests of each user are counted in memory, and one usage record per user
+     * is sent to the usage topic at the end of every window.
+     */
+    private boolean enabled = false;
+
+    /** Length of each window. */
+    @NotNull private Duration window = Duration.ofSeconds(1);
+  }
+
+  /** Which audits are lost when the audit buffer is full. */
+  public enum OverflowPolicy {
+    /** The oldest buffered audit is dropped to make room for the new one. */
+    DROP_OLDEST,
+    /** The new audit is dropped. */
+    DROP_NEWEST,
+    /**
+     * Past half of the buffer only one of every few new audits is kept, and the new audit is
+     * dropped when the buffer is full.
+     */
+    SAMPLE
+  }
+
+  /** How the audits of an exchange are sent. */
+  public enum AuditMode {
+    /** A RequestAudit and a ResponseAudit, for consumers which expect both records. */
+    SEPARATE,
+    /** A single ExchangeAudit with both of them, when the exchange completes. */
+    MERGED
+  }
+
+  /** Encoding of the audits which are sent to kafka. */
+  public enum AuditCodecType {
+    /** JSON, as the kafka JsonSerializer writes it. */
+    JSON,
+    /** Compact binary format, whose version is written first in each audit. */
+    BINARY
+  }
+
+  @Data
+  public static class AuditProperties {
+    /**
+     * When enabled, a full audit of every request and response is sent to the incoming request
+     * topic. It can be disabled when the limiter service only needs the usage records.
+     */
+    private boolean enabled = true;
+
+    @NotNull private AuditMode mode = AuditMode.SEPARATE;
+
+    /** Other messages to the limiter service, like the usage records, are always JSON. */
+    @NotNull private AuditCodecType codec = AuditCodecType.JSON;
+
+    /**
+     * Maximum bytes of the request body which are copied into its audit. The body is forwarded
+     * without buffering, whatever its size.
+     */
+    @NotNull private DataSize maxBodySize = DataSize.ofKilobytes(8);
+
+    /** Audits which can wait to be sent, it is rounded up to a power of two. */
+    @Positive private int bufferSize = 8192;
+
+    /** Maximum audits which are taken from the buffer at once. */
+    @Positive private int batchSize = 256;
+
+    /** How long the publisher waits when the buffer had less than a batch. */
+    @NotNull private Duration drainInterval = Duration.ofMillis(5);
+
+    @NotNull private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    /** With the SAMPLE policy, one of every this many audits is kept past half of the buffer. */
+    @Positive private int sampleEvery = 10;
+  }
+
+  /** What to do when a blocked user can not be looked up in time. */
+  public enum FailurePolicy {
+    /** The request is let through, as if the user was not blocked. */
+    FAIL_OPEN,
+    /** The request is rejected with 503 status. */
+    FAIL_CLOSED
+  }
+
+  @Data
+  public static class LookupProperties {
+    /** Maximum time to look up a blocked user in redis, on each request. */
+    @NotNull private Duration timeout = Duration.ofMillis(50);
+
+    @NotNull private FailurePolicy failurePolicy = FailurePolicy.FAIL_OPEN;
+  }
+
+  @Data
+  public static class LocalBlocklistProperties {
+    /**
+     * When enabled, every gateway instance keeps all the blocked users in memory, so users which
+     * are not blocked are let through without looking up any cache.
+     */
+    private boolean enabled = false;
+
+    /** Number of keys which are read from redis with each MGET when the snapshot is loaded. */
+    @Positive private int snapshotBatchSize = 500;
+
+    /** How often the users whose block is over are removed. */
+    @NotNull private Duration purgeInterval = Duration.ofMinutes(1);
+  }
+
+  @Data
+  public static class WarmUpProperties {
+    /** When enabled, the instance is not ready until the blocked users are loaded in its cache. */
+    private boolean enabled = true;
+
+    /** Number of keys which are read from redis with each SCAN and MGET. */
+    @Positive private int batchSize = 500;
+
+    /** Number of MGET which are pipelined at the same time. */
+    @Positive private int concurrency = 4;
+
+    /** Maximum time of the warm-up, the instance gets ready after it anyway. */
+    @NotNull private Duration timeout = Duration.ofSeconds(30);
+  }
+
+  @Data
+  public static class NearCacheProperties {
+    /** Estimated memory which can be retained by the local blocked users cache. */
+    @NotNull private DataSize maximumWeight = DataSize.ofMegabytes(8);
+
+    /**
+     * Entries which are read after this time are reloaded in the background, so a popular user does
+     * not wait for redis when its entry expires. It should be shorter than the negative TTL.
+     */
+    @NotNull private Duration refreshAfterWrite = Duration.ofSeconds(45);
+
+    /**
+     * How long an user which is not blocked is cached. Changes of blocked users are published to
+     * all the instances, so it can be long.
+     */
+    @NotNull private Duration negativeTtl = Duration.ofMinutes(1);
+
+    /** Redis topic where the users which must be evicted from the local caches are published. */
+    @NotNull @NotBlank private String invalidationTopic = "gateway:blocked-users:invalidations";
+
+    @NotNull private WarmUpProperties warmUp = new WarmUpProperties();
+  }
+
+  /** Format in which blocked users are written to redis. Both formats are always read. */
+  public enum RedisFormat {
+    /** Version byte, two epoch milliseconds and the user id. */
+    BINARY,
+    /** Gzip compressed JSON, which is read by older gateways. */
+    GZIP_JSON
+  }
+
+  /** How a blacklisted user message is merged into the block which is stored in redis. */
+  public enum MergeStrategy {
+    /** A lua script merges it in one round trip, without lock. It needs the BINARY format. */
+    SCRIPT,
+    /** The block is read, merged and written holding a distributed lock of the user. */
+    LOCK
+  }
+
+  @Data
+  public static class RedisProperties {
+    /**
+     * Write GZIP_JSON while there are gateways which can not read the binary format, e.g. during a
+     * rolling upgrade.
+     */
+    @NotNull private RedisFormat writeFormat = RedisFormat.BINARY;
+
+    /** SCRIPT is only used when the write format is BINARY, otherwise LOCK is used. */
+    @NotNull private MergeStrategy mergeStrategy = MergeStrategy.SCRIPT;
   }
 
   @NotNull private Topics topics;
+  @NotNull private LookupProperties lookup = new LookupProperties();
+  @NotNull private LocalBlocklistProperties localBlocklist = new LocalBlocklistProperties();
+  @NotNull private NearCacheProperties nearCache = new NearCacheProperties();
+  @NotNull private RedisProperties redis = new RedisProperties();
+  @NotNull private UsageProperties usage = new UsageProperties();
+  @NotNull private AuditProperties audit = new AuditProperties();
 }
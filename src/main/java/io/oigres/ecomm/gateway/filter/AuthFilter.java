@@ -17,10 +17,13 @@
 
 package io.oigres.ecomm.gateway.filter;
 
-import io.jsonwebtoken.Claims;
 import io.oigres.ecomm.gateway.config.AuthenticationProperties;
 import io.oigres.ecomm.gateway.exceptions.UnauthorizedException;
 import io.oigres.ecomm.gateway.util.JWTUtil;
+import io.oigres.ecomm.gateway.util.JwtPrincipal;
+import io.oigres.ecomm.gateway.util.RevokedTokenRegistry;
+import io.oigres.ecomm.gateway.util.TokenValidationResult;
+import io.oigres.ecomm.gateway.util.VerifiedTokenCache;
 import io.oigres.ecomm.gateway.validator.RouteValidator;
 import java.util.List;
 import java.util.Objects;
@@ -46,10 +49,12 @@ import reactor.core.publisher.Mono;
 @Slf4j
 @RequiredArgsConstructor
 public class AuthFilter implements GatewayFilter {
-  public static final String CURRENT_USER_CLAIMS_REQUEST_ATTR = "CURRENT_USER_CLAIMS_REQUEST_ATTR";
+  public static final String CURRENT_USER_REQUEST_ATTR = "CURRENT_USER_REQUEST_ATTR";
 
   private final RouteValidator routeValidator;
   private final JWTUtil jwtUtil;
+  private final VerifiedTokenCache verifiedTokenCache;
+  private final RevokedTokenRegistry revokedTokenRegistry;
   private final AuthenticationProperties authenticationProperties;
 
   @Override
@@ -84,11 +89,28 @@ public class AuthFilter implements GatewayFilter {
             String.format("%s header is malformed", HttpHeaders.AUTHORIZATION));
       }
       token = authParts[1];
-      if (jwtUtil.isInvalid(token)) {
+      JwtPrincipal principal = verifiedTokenCache.get(token);
+      if (principal != null && !jwtUtil.isKeyActive(principal)) {
+        // the key which signed the token was retired after the token was cached
+        principal = null;
+      }
+      if (principal == null) {
+        TokenValidationResult result = jwtUtil.validate(token);
+        if (!result.isValid()) {
+          log.info("Header {} was rejected: {}", HttpHeaders.AUTHORIZATION, result.getReason());
+          throw new UnauthorizedException(
+              String.format("%s header is invalid", HttpHeaders.AUTHORIZATION));
+        }
+        principal = result.getPrincipal();
+        verifiedTokenCache.put(token, principal);
+      }
+      if (principal.getTokenId() != null
+          && revokedTokenRegistry.isRevoked(principal.getTokenId())) {
+        log.info("Header {} was rejected: REVOKED", HttpHeaders.AUTHORIZATION);
         throw new UnauthorizedException(
             String.format("%s header is invalid", HttpHeaders.AUTHORIZATION));
       }
-      populateRequestWithHeaders(exchange, token);
+      populateRequestWithHeaders(exchange, principal);
     }
     return chain.filter(exchange);
   }
@@ -97,10 +119,9 @@ public class AuthFilter implements GatewayFilter {
    * Sticks user information to the current request/response interaction.
    *
    * @param exchange ServerWebExchange object
-   * @param token JWT token which was gotten from Authorization header
+   * @param principal principal of the JWT token which was gotten from Authorization header
    */
-  private void populateRequestWithHeaders(ServerWebExchange exchange, String token) {
-    Claims claims = jwtUtil.getAllClaims(token);
-    exchange.getAttributes().put(CURRENT_USER_CLAIMS_REQUEST_ATTR, claims);
+  private void populateRequestWithHeaders(ServerWebExchange exchange, JwtPrincipal principal) {
+    exchange.getAttributes().put(CURRENT_USER_REQUEST_ATTR, principal);
   }
 }
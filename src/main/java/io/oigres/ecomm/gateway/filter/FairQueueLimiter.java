@@ -0,0 +1,65 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.filter;
+
+import io.oigres.ecomm.gateway.util.FairAdmissionQueue;
+import io.oigres.ecomm.gateway.util.JwtPrincipal;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.context.config.annotation.RefreshScope;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Holds the requests of each user in the fair queue while the upstream is saturated. Requests which
+ * can not wait, or whose turn does not come in time, are rejected with 503 status. The turn is
+ * passed on when the rest of the chain completes, fails or is cancelled.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+@RefreshScope
+@Slf4j
+@RequiredArgsConstructor
+public class FairQueueLimiter implements GatewayFilter {
+  private final FairAdmissionQueue fairAdmissionQueue;
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    JwtPrincipal principal = exchange.getAttribute(AuthFilter.CURRENT_USER_REQUEST_ATTR);
+    if (principal == null) {
+      return chain.filter(exchange);
+    }
+    String userId = principal.getSubject();
+    return this.fairAdmissionQueue
+        .acquire(userId)
+        .flatMap(
+            admitted -> {
+              if (!admitted) {
+                log.debug("Request of user '{}' is rejected, upstream is saturated", userId);
+                exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                return exchange.getResponse().setComplete();
+              }
+              return chain.filter(exchange).doFinally(signal -> this.fairAdmissionQueue.release());
+            });
+  }
+}
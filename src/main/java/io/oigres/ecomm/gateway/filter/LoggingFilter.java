@@ -34,6 +34,8 @@ import reactor.core.publisher.Mono;
 @RefreshScope
 @Slf4j
 public class LoggingFilter implements GatewayFilter {
+  /** Exchange attribute with the System.nanoTime() when the request arrived to the gateway. */
+  public static final String REQUEST_STARTED_ATTR = "REQUEST_STARTED_ATTR";
 
   private final MemoryMXBean memoryBean;
 
@@ -47,6 +49,7 @@ public class LoggingFilter implements GatewayFilter {
     String method = Objects.isNull(request.getMethod()) ? "" : request.getMethod().name();
     String requestUri = Objects.isNull(request.getURI()) ? "" : request.getURI().getPath();
     String queryString = Objects.isNull(request.getURI()) ? "" : request.getURI().getQuery();
+    exchange.getAttributes().put(REQUEST_STARTED_ATTR, System.nanoTime());
     long start = System.currentTimeMillis();
     long startHeap = memoryBean.getHeapMemoryUsage().getUsed();
     log.info(String.format("BEGIN - %s %s %s", method, requestUri, queryString));
@@ -17,37 +17,72 @@
 
 package io.oigres.ecomm.gateway.filter;
 
-import io.jsonwebtoken.Claims;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.util.AuditPublisher;
+import io.oigres.ecomm.gateway.util.JwtPrincipal;
+import io.oigres.ecomm.gateway.util.UserUsageReporter;
 import io.oigres.ecomm.service.limiter.RequestAudit;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
-import org.reactivestreams.Publisher;
-import org.springframework.cloud.gateway.filter.factory.rewrite.RewriteFunction;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.server.reactive.ServerHttpRequest;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
 import org.springframework.stereotype.Component;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
- * Filter class which creates a RequestAudit object from the http request, and put it in a topic.
- * This message will be received by limiter service.
+ * Filter class which creates a RequestAudit object from the http request, and hands it to the
+ * audit publisher, which puts it in a topic. This message will be received by limiter service. The
+ * request is also counted in the usage of its user, which is reported once per window.
+ *
+ * <p>The request body is not buffered: its buffers are forwarded as they arrive, and only a prefix
+ * of them is copied into the audit, which is sent once the body was read or the exchange is over.
  *
  * @author sergio.exposito (sjexpos@gmail.com)
  */
 @Component
 @Slf4j
-public class RequestAuditFilter implements RewriteFunction<String, String> {
+public class RequestAuditFilter implements GatewayFilter {
+
+  /**
+   * Exchange attribute with a supplier of the audit of the request, which is set instead of sending
+   * it when audits are merged.
+   */
+  public static final String REQUEST_AUDIT_ATTR = "REQUEST_AUDIT_ATTR";
 
-  private final KafkaTemplate<String, Object> messageKafkaTemplate;
+  private final AuditPublisher auditPublisher;
+  private final UserUsageReporter userUsageReporter;
+  private final boolean auditEnabled;
+  private final boolean mergedAudits;
+  private final int maxBodySize;
 
-  public RequestAuditFilter(KafkaTemplate<String, Object> messageKafkaTemplate) {
-    this.messageKafkaTemplate = messageKafkaTemplate;
+  public RequestAuditFilter(
+      AuditPublisher auditPublisher,
+      UserUsageReporter userUsageReporter,
+      LimiterServiceProperties limiterServiceProperties) {
+    this.auditPublisher = auditPublisher;
+    this.userUsageReporter = userUsageReporter;
+    this.auditEnabled = limiterServiceProperties.getAudit().isEnabled();
+    this.mergedAudits =
+        limiterServiceProperties.getAudit().getMode() == LimiterServiceProperties.AuditMode.MERGED;
+    this.maxBodySize = (int) limiterServiceProperties.getAudit().getMaxBodySize().toBytes();
   }
 
   private Map<String, List<RequestAudit.HttpCookie>> getCookies(
@@ -66,26 +101,109 @@ public class RequestAuditFilter implements RewriteFunction<String, String> {
   }
 
   @Override
-  public Publisher<String> apply(ServerWebExchange exchange, String requestBody) {
-    Claims claims = exchange.getAttribute(AuthFilter.CURRENT_USER_CLAIMS_REQUEST_ATTR);
-    if (claims != null) {
-      ServerHttpRequest request = exchange.getRequest();
-      RequestAudit audit =
-          RequestAudit.builder()
-              .id(request.getId())
-              .userId(claims.getSubject())
-              .remoteAddr(String.valueOf(request.getRemoteAddress()))
-              .method(request.getMethod().name())
-              .path(request.getPath().value())
-              .query(request.getQueryParams())
-              .headers(request.getHeaders())
-              .cookies(getCookies(request.getCookies()))
-              .body(requestBody)
-              .arrived(LocalDateTime.now())
-              .build();
+  public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    JwtPrincipal principal = exchange.getAttribute(AuthFilter.CURRENT_USER_REQUEST_ATTR);
+    if (principal == null) {
+      return chain.filter(exchange);
+    }
+    this.userUsageReporter.record(principal.getSubject());
+    if (!this.auditEnabled) {
+      return chain.filter(exchange);
+    }
+    BodyTee tee = new BodyTee(exchange.getRequest(), principal.getSubject(), LocalDateTime.now());
+    if (this.mergedAudits) {
+      // the response audit filter sends it along with the response
+      Supplier<RequestAudit> audit = tee::toAudit;
+      exchange.getAttributes().put(REQUEST_AUDIT_ATTR, audit);
+      return chain.filter(exchange.mutate().request(tee).build());
+    }
+    if (!hasBody(exchange.getRequest())) {
+      tee.sendAudit();
+    }
+    return chain
+        .filter(exchange.mutate().request(tee).build())
+        .doFinally(signal -> tee.sendAudit());
+  }
+
+  private static boolean hasBody(ServerHttpRequest request) {
+    HttpHeaders headers = request.getHeaders();
+    return headers.getContentLength() > 0 || headers.containsKey(HttpHeaders.TRANSFER_ENCODING);
+  }
+
+  /** Forwards the request body untouched, and keeps a copy of its first bytes for the audit. */
+  private class BodyTee extends ServerHttpRequestDecorator {
+    private final String userId;
+    private final LocalDateTime arrived;
+    private final AtomicBoolean sent = new AtomicBoolean();
+    private byte[] prefix;
+    private int prefixLength;
+
+    BodyTee(ServerHttpRequest delegate, String userId, LocalDateTime arrived) {
+      super(delegate);
+      this.userId = userId;
+      this.arrived = arrived;
+    }
+
+    @Override
+    public Flux<DataBuffer> getBody() {
+      Flux<DataBuffer> body = super.getBody().doOnNext(this::copyPrefix);
+      return mergedAudits ? body : body.doFinally(signal -> sendAudit());
+    }
+
+    private void copyPrefix(DataBuffer buffer) {
+      if (this.prefix == null) {
+        long contentLength = getHeaders().getContentLength();
+        this.prefix =
+            new byte[contentLength < 0 ? maxBodySize : (int) Math.min(contentLength, maxBodySize)];
+      }
+      if (this.prefixLength >= this.prefix.length) {
+        return;
+      }
+      try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+        while (iterator.hasNext() && this.prefixLength < this.prefix.length) {
+          ByteBuffer byteBuffer = iterator.next();
+          int length = Math.min(byteBuffer.remaining(), this.prefix.length - this.prefixLength);
+          byteBuffer.get(this.prefix, this.prefixLength, length);
+          this.prefixLength += length;
+        }
+      }
+    }
+
+    private String body() {
+      if (this.prefixLength == 0) {
+        return null;
+      }
+      Charset charset =
+          Optional.ofNullable(getHeaders().getContentType())
+              .map(MediaType::getCharset)
+              .orElse(StandardCharsets.UTF_8);
+      return new String(this.prefix, 0, this.prefixLength, charset);
+    }
+
+    /** Sends the audit the first time the body ends or the exchange ends. */
+    void sendAudit() {
+      if (!this.sent.compareAndSet(false, true)) {
+        return;
+      }
+      RequestAudit audit = toAudit();
       log.info("Auditing request '{}' for user '{}'", audit.getId(), audit.getUserId());
-      this.messageKafkaTemplate.sendDefault(audit.getUserId(), audit);
+      auditPublisher.publish(audit.getUserId(), audit);
+    }
+
+    /** Creates the audit with the prefix of the body which was read so far. */
+    RequestAudit toAudit() {
+      return RequestAudit.builder()
+          .id(getId())
+          .userId(this.userId)
+          .remoteAddr(String.valueOf(getRemoteAddress()))
+          .method(getMethod().name())
+          .path(getPath().value())
+          .query(getQueryParams())
+          .headers(getHeaders())
+          .cookies(RequestAuditFilter.this.getCookies(getDelegate().getCookies()))
+          .body(body())
+          .arrived(this.arrived)
+          .build();
     }
-    return requestBody == null ? Mono.empty() : Mono.just(requestBody);
   }
 }
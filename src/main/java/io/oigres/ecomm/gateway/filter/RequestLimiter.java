@@ -17,10 +17,10 @@
 
 package io.oigres.ecomm.gateway.filter;
 
-import io.jsonwebtoken.Claims;
-import io.oigres.ecomm.gateway.model.BlockedUser;
+import io.oigres.ecomm.gateway.exceptions.BlockedUserLookupException;
 import io.oigres.ecomm.gateway.services.BlockedUserService;
-import java.time.LocalDateTime;
+import io.oigres.ecomm.gateway.util.JwtPrincipal;
+import io.oigres.ecomm.gateway.util.UserRateLimiter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
@@ -37,18 +37,35 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class RequestLimiter implements GatewayFilter {
   private final BlockedUserService blockedUserService;
+  private final UserRateLimiter userRateLimiter;
 
   @Override
   public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-    Claims claims = exchange.getAttribute(AuthFilter.CURRENT_USER_CLAIMS_REQUEST_ATTR);
-    if (claims != null) {
-      String userId = claims.getSubject();
-      BlockedUser blockedUser = this.blockedUserService.retrieveBlockedUserFor(userId);
-      if (blockedUser != null && blockedUser.isBlock(LocalDateTime.now())) {
-        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
-        return exchange.getResponse().setComplete();
-      }
+    JwtPrincipal principal = exchange.getAttribute(AuthFilter.CURRENT_USER_REQUEST_ATTR);
+    if (principal == null) {
+      return chain.filter(exchange);
     }
-    return chain.filter(exchange);
+    String userId = principal.getSubject();
+    if (!this.userRateLimiter.tryAcquire(userId)) {
+      exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+      return exchange.getResponse().setComplete();
+    }
+    return this.blockedUserService
+        .findBlockedUserFor(userId)
+        .filter(blockedUser -> blockedUser.isBlock(System.currentTimeMillis()))
+        .map(blockedUser -> HttpStatus.TOO_MANY_REQUESTS)
+        .onErrorResume(
+            BlockedUserLookupException.class,
+            e -> {
+              log.warn("Request of user '{}' is rejected: {}", userId, e.getMessage());
+              return Mono.just(HttpStatus.SERVICE_UNAVAILABLE);
+            })
+        .flatMap(
+            status -> {
+              exchange.getResponse().setStatusCode(status);
+              return exchange.getResponse().setComplete().then(Mono.just(status));
+            })
+        .hasElement()
+        .flatMap(rejected -> rejected ? Mono.empty() : chain.filter(exchange));
   }
 }
@@ -17,29 +17,49 @@
 
 package io.oigres.ecomm.gateway.filter;
 
-import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.model.ExchangeAudit;
+import io.oigres.ecomm.gateway.util.AuditPublisher;
+import io.oigres.ecomm.gateway.util.JwtPrincipal;
+import io.oigres.ecomm.service.limiter.RequestAudit;
 import io.oigres.ecomm.service.limiter.ResponseAudit;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.stereotype.Component;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
- * Filter class which creates a ResponseAudit object from the http response, and put it in a topic.
- * This message will be received by limiter service.
+ * Filter class which creates a ResponseAudit object from the http response, and hands it to the
+ * audit publisher, which puts it in a topic. This message will be received by limiter service.
+ *
+ * <p>The audit is created when the response is complete, so its status and headers are the ones
+ * which were sent to the client. The time spent by the gateway before forwarding the request, the
+ * time until the upstream answered, and the bytes of the response body are recorded as metrics.
+ * When audits are merged, the audit of the request and these measures are sent along with it in an
+ * ExchangeAudit; the headers of the audit are always the ones of the response.
  *
  * @author sergio.exposito (sjexpos@gmail.com)
  */
@@ -47,10 +67,34 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class ResponseAuditFilter implements GatewayFilter {
 
-  private final KafkaTemplate<String, Object> messageKafkaTemplate;
+  private final AuditPublisher auditPublisher;
+  private final boolean auditEnabled;
+  private final boolean mergedAudits;
+  private final Timer gatewayTimer;
+  private final Timer upstreamTimer;
+  private final DistributionSummary bytesSummary;
 
-  public ResponseAuditFilter(KafkaTemplate<String, Object> messageKafkaTemplate) {
-    this.messageKafkaTemplate = messageKafkaTemplate;
+  public ResponseAuditFilter(
+      AuditPublisher auditPublisher,
+      LimiterServiceProperties limiterServiceProperties,
+      MeterRegistry meterRegistry) {
+    this.auditPublisher = auditPublisher;
+    this.auditEnabled = limiterServiceProperties.getAudit().isEnabled();
+    this.mergedAudits =
+        limiterServiceProperties.getAudit().getMode() == LimiterServiceProperties.AuditMode.MERGED;
+    this.gatewayTimer =
+        Timer.builder("gateway.exchange.overhead")
+            .description("Time since the request arrived until it was forwarded to the upstream")
+            .register(meterRegistry);
+    this.upstreamTimer =
+        Timer.builder("gateway.exchange.upstream")
+            .description("Time since the request was forwarded until the upstream answered")
+            .register(meterRegistry);
+    this.bytesSummary =
+        DistributionSummary.builder("gateway.exchange.response.bytes")
+            .baseUnit("bytes")
+            .description("Bytes of the response bodies sent to the clients")
+            .register(meterRegistry);
   }
 
   private Map<String, List<ResponseAudit.HttpCookie>> getCookies(
@@ -81,28 +125,101 @@ public class ResponseAuditFilter implements GatewayFilter {
 
   @Override
   public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    if (!this.auditEnabled) {
+      return chain.filter(exchange);
+    }
+    Long started = exchange.getAttribute(LoggingFilter.REQUEST_STARTED_ATTR);
+    ExchangeTimer timer =
+        new ExchangeTimer(exchange.getResponse(), started == null ? System.nanoTime() : started);
+    return chain
+        .filter(exchange.mutate().response(timer).build())
+        .doFinally(signal -> sendAudit(exchange, timer));
+  }
+
+  private void sendAudit(ServerWebExchange exchange, ExchangeTimer timer) {
+    long completed = System.nanoTime();
+    JwtPrincipal principal = exchange.getAttribute(AuthFilter.CURRENT_USER_REQUEST_ATTR);
+    if (principal == null) {
+      return;
+    }
     ServerHttpRequest request = exchange.getRequest();
     ServerHttpResponse response = exchange.getResponse();
-    try {
-      return chain.filter(exchange);
-    } finally {
-      Claims claims = exchange.getAttribute(AuthFilter.CURRENT_USER_CLAIMS_REQUEST_ATTR);
-      if (claims != null) {
-        ResponseAudit audit =
-            ResponseAudit.builder()
-                .id(request.getId())
-                .userId(claims.getSubject())
-                .headers(response.getHeaders())
-                .cookies(getCookies(response.getCookies()))
-                .status(
-                    Optional.ofNullable(response.getStatusCode())
-                        .map(HttpStatusCode::value)
-                        .orElse(-1))
-                .arrived(LocalDateTime.now())
-                .build();
-        log.info("Auditing response '{}' for user '{}'", audit.getId(), audit.getUserId());
-        this.messageKafkaTemplate.sendDefault(audit.getUserId(), audit);
-      }
+    // upstream did not answer when the response was not committed
+    long answered = timer.committed == 0 ? completed : timer.committed;
+    // and the request was not forwarded when the gateway answered on its own
+    Long forwarded = exchange.getAttribute(UpstreamTimingFilter.REQUEST_FORWARDED_ATTR);
+    long gatewayNanos = (forwarded == null ? answered : forwarded) - timer.started;
+    long upstreamNanos = forwarded == null ? 0 : answered - forwarded;
+    long totalNanos = completed - timer.started;
+    this.gatewayTimer.record(gatewayNanos, TimeUnit.NANOSECONDS);
+    this.upstreamTimer.record(upstreamNanos, TimeUnit.NANOSECONDS);
+    long bytes = timer.bytes.sum();
+    this.bytesSummary.record(bytes);
+    ResponseAudit audit =
+        ResponseAudit.builder()
+            .id(request.getId())
+            .userId(principal.getSubject())
+            .headers(response.getHeaders())
+            .cookies(getCookies(response.getCookies()))
+            .status(
+                Optional.ofNullable(response.getStatusCode()).map(HttpStatusCode::value).orElse(-1))
+            .arrived(LocalDateTime.now())
+            .build();
+    if (this.mergedAudits) {
+      Supplier<RequestAudit> requestAudit =
+          exchange.getAttribute(RequestAuditFilter.REQUEST_AUDIT_ATTR);
+      ExchangeAudit exchangeAudit =
+          ExchangeAudit.builder()
+              .id(audit.getId())
+              .userId(audit.getUserId())
+              .request(requestAudit == null ? null : requestAudit.get())
+              .response(audit)
+              .gatewayTime(Duration.ofNanos(gatewayNanos))
+              .upstreamTime(Duration.ofNanos(upstreamNanos))
+              .totalTime(Duration.ofNanos(totalNanos))
+              .responseBytes(bytes)
+              .build();
+      log.info("Auditing exchange '{}' for user '{}'", audit.getId(), audit.getUserId());
+      this.auditPublisher.publish(audit.getUserId(), exchangeAudit);
+      return;
+    }
+    log.info("Auditing response '{}' for user '{}'", audit.getId(), audit.getUserId());
+    this.auditPublisher.publish(audit.getUserId(), audit);
+  }
+
+  /**
+   * Takes the time when the upstream answer is committed, and counts the bytes of the response body
+   * as they are written. The time when the exchange is forwarded is kept by the
+   * UpstreamTimingFilter.
+   */
+  private static class ExchangeTimer extends ServerHttpResponseDecorator {
+    private final long started;
+    private volatile long committed;
+    private final LongAdder bytes = new LongAdder();
+
+    ExchangeTimer(ServerHttpResponse delegate, long started) {
+      super(delegate);
+      this.started = started;
+      delegate.beforeCommit(
+          () -> {
+            this.committed = System.nanoTime();
+            return Mono.empty();
+          });
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+      return super.writeWith(Flux.from(body).doOnNext(this::count));
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+      return super.writeAndFlushWith(
+          Flux.from(body).map(buffers -> Flux.from(buffers).doOnNext(this::count)));
+    }
+
+    private void count(DataBuffer buffer) {
+      this.bytes.add(buffer.readableByteCount());
     }
   }
 }
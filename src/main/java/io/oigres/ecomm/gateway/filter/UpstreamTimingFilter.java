@@ -0,0 +1,50 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.filter;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Global filter which runs right before the request is sent to the upstream, and keeps the time
+ * when it was forwarded, so the time spent by the gateway can be told apart from the time spent by
+ * the upstream.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+public class UpstreamTimingFilter implements GlobalFilter, Ordered {
+  /** Exchange attribute with the System.nanoTime() when the request was forwarded upstream. */
+  public static final String REQUEST_FORWARDED_ATTR = "REQUEST_FORWARDED_ATTR";
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+    exchange.getAttributes().put(REQUEST_FORWARDED_ATTR, System.nanoTime());
+    return chain.filter(exchange);
+  }
+
+  @Override
+  public int getOrder() {
+    return NettyRoutingFilter.ORDER - 1;
+  }
+}
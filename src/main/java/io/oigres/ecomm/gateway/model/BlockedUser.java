@@ -17,27 +17,81 @@
 
 package io.oigres.ecomm.gateway.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import lombok.AllArgsConstructor;
+import java.time.ZoneId;
 import lombok.Builder;
 import lombok.Getter;
-import lombok.NoArgsConstructor;
 
 /**
- * DTO class which will be stored in cache when the user reaches its rate limit.
+ * DTO class which will be stored in cache when the user reaches its rate limit. The block window is
+ * also kept as epoch milliseconds, in the system time zone, so it can be checked on each request
+ * without allocating.
  *
  * @author sergio.exposito (sjexpos@gmail.com)
  */
-@Builder
 @Getter
-@NoArgsConstructor
-@AllArgsConstructor
 public class BlockedUser {
-  private String userId;
-  private LocalDateTime from;
-  private LocalDateTime to;
+  private final String userId;
+  private final LocalDateTime from;
+  private final LocalDateTime to;
+
+  /** Start of the block, or Long.MIN_VALUE if it has not one. */
+  @JsonIgnore private final long fromEpochMilli;
+
+  /** End of the block, or Long.MIN_VALUE if it has not one, so it never blocks. */
+  @JsonIgnore private final long toEpochMilli;
+
+  @Builder
+  @JsonCreator
+  public BlockedUser(
+      @JsonProperty("userId") String userId,
+      @JsonProperty("from") LocalDateTime from,
+      @JsonProperty("to") LocalDateTime to) {
+    this.userId = userId;
+    this.from = from;
+    this.to = to;
+    this.fromEpochMilli = toEpochMilli(from);
+    this.toEpochMilli = toEpochMilli(to);
+  }
+
+  /**
+   * @param userId an user identifier
+   * @param fromEpochMilli start of the block, or Long.MIN_VALUE if it has not one
+   * @param toEpochMilli end of the block, or Long.MIN_VALUE if it has not one
+   */
+  public BlockedUser(String userId, long fromEpochMilli, long toEpochMilli) {
+    this.userId = userId;
+    this.from = toLocalDateTime(fromEpochMilli);
+    this.to = toLocalDateTime(toEpochMilli);
+    this.fromEpochMilli = fromEpochMilli;
+    this.toEpochMilli = toEpochMilli;
+  }
+
+  private static long toEpochMilli(LocalDateTime time) {
+    return time == null
+        ? Long.MIN_VALUE
+        : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  private static LocalDateTime toLocalDateTime(long epochMilli) {
+    return epochMilli == Long.MIN_VALUE
+        ? null
+        : LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMilli), ZoneId.systemDefault());
+  }
 
   public boolean isBlock(LocalDateTime time) {
     return !time.isBefore(getFrom()) && !time.isAfter(getTo());
   }
+
+  /**
+   * @param epochMilli a time as epoch milliseconds, e.g. System.currentTimeMillis()
+   * @return true if the user is blocked at that time
+   */
+  public boolean isBlock(long epochMilli) {
+    return epochMilli >= this.fromEpochMilli && epochMilli <= this.toEpochMilli;
+  }
 }
@@ -0,0 +1,61 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.model;
+
+import io.oigres.ecomm.service.limiter.RequestAudit;
+import io.oigres.ecomm.service.limiter.ResponseAudit;
+import java.time.Duration;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO class which is sent to kafka once an exchange completes, with the audits of its request and
+ * its response, instead of sending each of them on its own.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Builder
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExchangeAudit {
+  /** Identifier of the request. */
+  private String id;
+
+  private String userId;
+
+  /** Audit of the request, with the prefix of its body. */
+  private RequestAudit request;
+
+  /** Audit of the response which was sent to the client. */
+  private ResponseAudit response;
+
+  /** Time since the request arrived until it was forwarded to the upstream. */
+  private Duration gatewayTime;
+
+  /** Time since the request was forwarded until the upstream answered. */
+  private Duration upstreamTime;
+
+  /** Time since the request arrived until the response was complete. */
+  private Duration totalTime;
+
+  /** Bytes of the response body which were sent to the client. */
+  private long responseBytes;
+}
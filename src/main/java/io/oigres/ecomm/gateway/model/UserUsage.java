@@ -0,0 +1,47 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.model;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO class which is sent to kafka with the number of requests of an user in a short window. The
+ * limiter service receives one of them per user and window, instead of one audit per request.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Builder
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserUsage {
+  private String userId;
+
+  /** Start of the window, inclusive. */
+  private Instant windowStart;
+
+  /** End of the window, exclusive. */
+  private Instant windowEnd;
+
+  /** Requests of the user which arrived in the window. */
+  private long requests;
+}
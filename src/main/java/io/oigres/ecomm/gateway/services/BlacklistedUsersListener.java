@@ -17,9 +17,13 @@
 
 package io.oigres.ecomm.gateway.services;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.oigres.ecomm.service.limiter.BlackedInfo;
+import java.util.List;
 import java.util.Objects;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
@@ -27,11 +31,32 @@ import org.springframework.stereotype.Component;
 
 @Component
 @Slf4j
-@RequiredArgsConstructor
 public class BlacklistedUsersListener {
   private final BlockedUserService blockedUserService;
+  private final Timer lagTimer;
+  private final Timer batchTimer;
+  private final DistributionSummary batchSizeSummary;
 
-  @KafkaListener(topics = "${ecomm.service.limiter.topics.blacklisted-users.name}")
+  public BlacklistedUsersListener(
+      BlockedUserService blockedUserService, MeterRegistry meterRegistry) {
+    this.blockedUserService = blockedUserService;
+    this.lagTimer =
+        Timer.builder("gateway.blacklisted.users.lag")
+            .description("Time since the oldest blacklisted user message of a batch was produced")
+            .register(meterRegistry);
+    this.batchTimer =
+        Timer.builder("gateway.blacklisted.users.batch")
+            .description("Time to process a batch of blacklisted user messages")
+            .register(meterRegistry);
+    this.batchSizeSummary =
+        DistributionSummary.builder("gateway.blacklisted.users.batch.size")
+            .description("Blacklisted user messages in each batch")
+            .register(meterRegistry);
+  }
+
+  @KafkaListener(
+      topics = "${ecomm.service.limiter.topics.blacklisted-users.name}",
+      autoStartup = "#{!${ecomm.service.limiter.topics.blacklisted-users.batch.enabled:false}}")
   public void consumeMessage(ConsumerRecord<String, BlackedInfo> record) {
     if (record != null) {
       log.info(
@@ -50,4 +75,39 @@ public class BlacklistedUsersListener {
       }
     }
   }
+
+  /**
+   * Errors are not caught here: the batch container commits the offsets of a batch once this
+   * method returns, so a failing batch must be thrown back to the container to be retried instead
+   * of being lost.
+   */
+  @KafkaListener(
+      topics = "${ecomm.service.limiter.topics.blacklisted-users.name}",
+      containerFactory = "blacklistedUsersBatchListenerContainerFactory",
+      autoStartup = "${ecomm.service.limiter.topics.blacklisted-users.batch.enabled:false}")
+  public void consumeMessages(List<ConsumerRecord<String, BlackedInfo>> records) {
+    if (records == null || records.isEmpty()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    records.stream()
+        .mapToLong(ConsumerRecord::timestamp)
+        .filter(timestamp -> timestamp >= 0)
+        .min()
+        .ifPresent(timestamp -> this.lagTimer.record(now - timestamp, TimeUnit.MILLISECONDS));
+    this.batchSizeSummary.record(records.size());
+    List<BlackedInfo> blackedInfos =
+        records.stream().map(ConsumerRecord::value).filter(Objects::nonNull).toList();
+    long start = System.nanoTime();
+    try {
+      int changed = blockedUserService.processBlackedInfos(blackedInfos);
+      log.info(
+          "Consumed {} kafka messages from '{}', {} blocked users were changed",
+          records.size(),
+          records.get(0).topic(),
+          changed);
+    } finally {
+      this.batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
 }
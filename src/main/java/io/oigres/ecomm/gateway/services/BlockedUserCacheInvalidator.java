@@ -0,0 +1,110 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+
+/**
+ * Invalidates the local blocked users cache of all the gateway instances when a blocked user
+ * changes. The instance which stores the change in redis publishes the user id in a redis topic,
+ * and every instance evicts that user from its local cache, so no instance keeps serving a stale
+ * answer until its entry expires.
+ *
+ * <p>Messages which are published while an instance is disconnected from redis are lost, so the
+ * whole local cache is cleared each time the instance subscribes to the topic. The cache warm-up
+ * waits for the first subscription, so the entries it loads are not cleared by it.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+@Slf4j
+public class BlockedUserCacheInvalidator {
+  private final AsyncLoadingCache<Object, Object> blockedUsersNearCache;
+  private final RTopic topic;
+  private final CompletableFuture<Void> subscribed = new CompletableFuture<>();
+  private int messageListenerId;
+  private int statusListenerId;
+
+  public BlockedUserCacheInvalidator(
+      AsyncLoadingCache<Object, Object> blockedUsersNearCache,
+      RedissonClient redissonClient,
+      LimiterServiceProperties limiterServiceProperties) {
+    this.blockedUsersNearCache = blockedUsersNearCache;
+    this.topic =
+        redissonClient.getTopic(
+            limiterServiceProperties.getNearCache().getInvalidationTopic(), StringCodec.INSTANCE);
+  }
+
+  @PostConstruct
+  public void subscribe() {
+    this.statusListenerId =
+        this.topic.addListener(
+            new BaseStatusListener() {
+              @Override
+              public void onSubscribe(String channel) {
+                // invalidations could have been missed while this instance was not subscribed
+                blockedUsersNearCache.synchronous().invalidateAll();
+                subscribed.complete(null);
+                log.info("Subscribed to '{}', local blocked users cache was cleared", channel);
+              }
+            });
+    this.messageListenerId =
+        this.topic.addListener(
+            String.class,
+            (channel, userId) -> this.blockedUsersNearCache.synchronous().invalidate(userId));
+  }
+
+  /**
+   * @return completes when this instance is subscribed to the topic for the first time, and its
+   *     local cache has been cleared
+   */
+  public CompletableFuture<Void> subscribed() {
+    return this.subscribed;
+  }
+
+  @PreDestroy
+  public void unsubscribe() {
+    this.topic.removeListener(this.messageListenerId, this.statusListenerId);
+  }
+
+  /**
+   * Asks all the gateway instances, including this one, to evict an user from their local cache.
+   *
+   * @param userId an user identifier
+   */
+  public void publish(String userId) {
+    this.topic
+        .publishAsync(userId)
+        .whenComplete(
+            (receivers, e) -> {
+              if (e != null) {
+                log.error("Invalidation of blocked user '{}' was not published: ", userId, e);
+              }
+            });
+  }
+}
@@ -0,0 +1,49 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Merges a new block of an user into the one which is stored in redis, as an atomic
+ * read-merge-write, following the rules of {@link BlockedUserServiceImpl#merge}.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+public interface BlockedUserMerger {
+
+  /**
+   * @param incoming the new block
+   * @return the block which was stored, or null if the stored block already covered the new one
+   */
+  BlockedUser merge(BlockedUser incoming);
+
+  /**
+   * Merges the new blocks of several users, one block per user.
+   *
+   * @param incoming the new blocks
+   * @return the blocks which were stored, users whose stored block already covered the new one are
+   *     missing
+   */
+  default List<BlockedUser> mergeAll(Collection<BlockedUser> incoming) {
+    return incoming.stream().map(this::merge).filter(Objects::nonNull).toList();
+  }
+}
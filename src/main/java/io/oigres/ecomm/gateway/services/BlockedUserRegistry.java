@@ -0,0 +1,139 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.model.BlackInfoBlockedUserMapper;
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import io.oigres.ecomm.service.limiter.BlackedInfo;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * In-memory set of all the users which are blocked now. Almost no user is blocked at any moment, so
+ * once it is loaded, looking up this set replaces the cache tiers and the users which are not
+ * blocked are let through without any round trip to redis.
+ *
+ * <p>It is loaded from a snapshot of the blocked users which are stored in redis, and then it is
+ * kept up to date by every blacklisted user message. Until the snapshot is loaded, it is not
+ * authoritative and blocked users are looked up in the cache tiers.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+@Slf4j
+public class BlockedUserRegistry {
+  private final BlockedUserStore blockedUserStore;
+  private final BlackInfoBlockedUserMapper mapper;
+  private final LimiterServiceProperties.LocalBlocklistProperties properties;
+  private final Map<String, BlockedUser> blockedUsers;
+  private volatile boolean authoritative;
+
+  public BlockedUserRegistry(
+      BlockedUserStore blockedUserStore,
+      BlackInfoBlockedUserMapper mapper,
+      LimiterServiceProperties limiterServiceProperties,
+      MeterRegistry meterRegistry) {
+    this.blockedUserStore = blockedUserStore;
+    this.mapper = mapper;
+    this.properties = limiterServiceProperties.getLocalBlocklist();
+    this.blockedUsers = new ConcurrentHashMap<>();
+    Gauge.builder("gateway.blocked.users", this.blockedUsers, Map::size)
+        .description("Blocked users which are kept in memory")
+        .register(meterRegistry);
+  }
+
+  /**
+   * @return true if all the blocked users are in memory, so an user which is not found is not
+   *     blocked
+   */
+  public boolean isAuthoritative() {
+    return this.authoritative;
+  }
+
+  /**
+   * @param userId an user identifier
+   * @return the block of the user, or null if the user is not blocked
+   */
+  public BlockedUser find(String userId) {
+    return this.blockedUsers.get(userId);
+  }
+
+  /**
+   * Merges a new block of an user, in the same way it is merged in redis.
+   *
+   * @param info the blacklisted user message
+   */
+  public void apply(BlackedInfo info) {
+    if (!StringUtils.hasText(info.getUserId())) {
+      return;
+    }
+    BlockedUser incoming = this.mapper.from(info);
+    LocalDateTime now = LocalDateTime.now();
+    this.blockedUsers.compute(
+        info.getUserId(),
+        (userId, current) -> {
+          BlockedUser merged = BlockedUserServiceImpl.merge(current, incoming, now);
+          return merged != null ? merged : current;
+        });
+  }
+
+  /**
+   * Loads the blocked users which are stored in redis, scanning their keys and reading them in
+   * batches. Messages which were applied before are newer than the snapshot, so they are kept. If
+   * the snapshot can not be loaded, the cache tiers keep being used.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadSnapshot() {
+    if (!this.properties.isEnabled()) {
+      return;
+    }
+    this.blockedUserStore
+        .findActive(this.properties.getSnapshotBatchSize(), 1)
+        .doOnNext(
+            blockedUser -> this.blockedUsers.putIfAbsent(blockedUser.getUserId(), blockedUser))
+        .count()
+        .subscribe(
+            count -> {
+              this.authoritative = true;
+              log.info(
+                  "{} blocked users were loaded from redis, {} are kept in memory",
+                  count,
+                  this.blockedUsers.size());
+            },
+            e -> log.error("Blocked users snapshot was not loaded, caches will be used: ", e));
+  }
+
+  /** Forgets the users whose block is over, since they are let through anyway. */
+  @Scheduled(
+      fixedDelayString = "${ecomm.service.limiter.local-blocklist.purge-interval:PT1M}",
+      initialDelayString = "${ecomm.service.limiter.local-blocklist.purge-interval:PT1M}")
+  public void purge() {
+    long now = System.currentTimeMillis();
+    this.blockedUsers.values().removeIf(blockedUser -> blockedUser.getToEpochMilli() < now);
+  }
+}
@@ -17,8 +17,11 @@
 
 package io.oigres.ecomm.gateway.services;
 
+import io.oigres.ecomm.gateway.exceptions.BlockedUserLookupException;
 import io.oigres.ecomm.gateway.model.BlockedUser;
 import io.oigres.ecomm.service.limiter.BlackedInfo;
+import java.util.Collection;
+import reactor.core.publisher.Mono;
 
 /**
  * Service class to store and retrieve blocked users
@@ -34,6 +37,16 @@ public interface BlockedUserService {
    */
   void processBlackedInfo(BlackedInfo info);
 
+  /**
+   * Stores information about several blacklisted users at once. Messages of the same user are
+   * merged in memory in the order they are given, and each user is merged into the stored block
+   * only once.
+   *
+   * @param infos blacklisted user messages, in the order they were received
+   * @return number of users whose block was changed
+   */
+  int processBlackedInfos(Collection<BlackedInfo> infos);
+
   /**
    * Retrieves information about rate limit violation by userid. If there is not a violation, this
    * method will return null.
@@ -42,4 +55,15 @@ public interface BlockedUserService {
    * @return rate limit violation if the user has one, null otherwise.
    */
   BlockedUser retrieveBlockedUserFor(String userId);
+
+  /**
+   * Retrieves information about rate limit violation by userid without blocking. It looks up the
+   * local cache first, and then redis, within the configured time budget. If redis does not answer
+   * in time, it completes empty (fail-open) or with a {@link BlockedUserLookupException}
+   * (fail-closed), depending on the configured policy.
+   *
+   * @param userId an user identifier
+   * @return rate limit violation if the user has one, empty otherwise.
+   */
+  Mono<BlockedUser> findBlockedUserFor(String userId);
 }
@@ -17,11 +17,17 @@
 
 package io.oigres.ecomm.gateway.services;
 
-import io.oigres.ecomm.cache.annotations.CacheLock;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.exceptions.BlockedUserLookupException;
 import io.oigres.ecomm.gateway.model.BlackInfoBlockedUserMapper;
 import io.oigres.ecomm.gateway.model.BlockedUser;
 import io.oigres.ecomm.service.limiter.BlackedInfo;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
@@ -32,6 +38,7 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
 
 /**
  * Service class to store and retrieve blocked users from cache.
@@ -42,62 +49,106 @@ import org.springframework.util.StringUtils;
 @Service
 public class BlockedUserServiceImpl implements BlockedUserService {
   private final CacheManager caffeineCacheManager;
-  private final CacheManager redisCacheManager;
   private final BlackInfoBlockedUserMapper mapper;
+  private final AsyncLoadingCache<Object, Object> blockedUsersNearCache;
+  private final LimiterServiceProperties.LookupProperties lookupProperties;
+  private final BlockedUserRegistry blockedUserRegistry;
+  private final BlockedUserCacheInvalidator blockedUserCacheInvalidator;
+  private final BlockedUserMerger blockedUserMerger;
 
   public BlockedUserServiceImpl(
       @Qualifier("caffeineCacheManager") CacheManager caffeineCacheManager,
-      @Qualifier("redisCacheManager") CacheManager redisCacheManager,
-      BlackInfoBlockedUserMapper mapper) {
+      BlackInfoBlockedUserMapper mapper,
+      AsyncLoadingCache<Object, Object> blockedUsersNearCache,
+      LimiterServiceProperties limiterServiceProperties,
+      BlockedUserRegistry blockedUserRegistry,
+      BlockedUserCacheInvalidator blockedUserCacheInvalidator,
+      LockingBlockedUserMerger lockingBlockedUserMerger,
+      ScriptBlockedUserMerger scriptBlockedUserMerger) {
     this.caffeineCacheManager = caffeineCacheManager;
-    this.redisCacheManager = redisCacheManager;
     this.mapper = mapper;
+    this.blockedUsersNearCache = blockedUsersNearCache;
+    this.lookupProperties = limiterServiceProperties.getLookup();
+    this.blockedUserRegistry = blockedUserRegistry;
+    this.blockedUserCacheInvalidator = blockedUserCacheInvalidator;
+    LimiterServiceProperties.RedisProperties redisProperties = limiterServiceProperties.getRedis();
+    // the script writes the binary format only
+    this.blockedUserMerger =
+        redisProperties.getMergeStrategy() == LimiterServiceProperties.MergeStrategy.SCRIPT
+                && redisProperties.getWriteFormat() == LimiterServiceProperties.RedisFormat.BINARY
+            ? scriptBlockedUserMerger
+            : lockingBlockedUserMerger;
   }
 
-  private void updateCachedBlockedUser(BlockedUser blockedUser) {
+  private void evictCachedBlockedUser(BlockedUser blockedUser) {
     log.info(
         "User '{}' will be blocked from {} to {}",
         blockedUser.getUserId(),
         blockedUser.getFrom(),
         blockedUser.getTo());
-    Cache redisCache =
-        Optional.ofNullable(this.redisCacheManager.getCache(CacheNames.BLOCKED_USERS_CACHE_NAME))
-            .orElseThrow(IllegalStateException::new);
-    redisCache.put(blockedUser.getUserId(), blockedUser);
     Cache caffeineCache =
         Optional.ofNullable(this.caffeineCacheManager.getCache(CacheNames.BLOCKED_USERS_CACHE_NAME))
             .orElseThrow(IllegalStateException::new);
     caffeineCache.evict(blockedUser.getUserId()); // refresh first cache level
+    this.blockedUserCacheInvalidator.publish(blockedUser.getUserId()); // and on other instances
   }
 
-  @CacheLock
   public void processBlackedInfo(BlackedInfo info) {
     if (!StringUtils.hasText(info.getUserId())) {
       return;
     }
-    Cache redisCache =
-        Optional.ofNullable(this.redisCacheManager.getCache(CacheNames.BLOCKED_USERS_CACHE_NAME))
-            .orElseThrow(IllegalStateException::new);
-    BlockedUser cachedBlockedUser = redisCache.get(info.getUserId(), BlockedUser.class);
-    if (cachedBlockedUser == null || !cachedBlockedUser.isBlock(LocalDateTime.now())) {
-      cachedBlockedUser = this.mapper.from(info);
-      updateCachedBlockedUser(cachedBlockedUser);
-    } else if (!cachedBlockedUser.isBlock(info.getFrom())
-        || !cachedBlockedUser.isBlock(info.getTo())) {
-      cachedBlockedUser =
-          BlockedUser.builder()
-              .userId(info.getUserId())
-              .from(
-                  Stream.of(info.getFrom(), cachedBlockedUser.getFrom())
-                      .min(LocalDateTime::compareTo)
-                      .orElse(null))
-              .to(
-                  Stream.of(info.getTo(), cachedBlockedUser.getTo())
-                      .min(LocalDateTime::compareTo)
-                      .orElse(null))
-              .build();
-      updateCachedBlockedUser(cachedBlockedUser);
+    BlockedUser mergedBlockedUser = this.blockedUserMerger.merge(this.mapper.from(info));
+    if (mergedBlockedUser != null) {
+      evictCachedBlockedUser(mergedBlockedUser);
+    }
+  }
+
+  /**
+   * Messages of the same user are folded in memory first, so each user goes through the merger
+   * only once per batch. The merger still applies the result atomically, because other gateway
+   * deployments and the record listener may write the same users at the same time, and the script
+   * merger pipelines the users of the batch.
+   */
+  public int processBlackedInfos(Collection<BlackedInfo> infos) {
+    Map<String, BlockedUser> incomingByUser = new LinkedHashMap<>();
+    LocalDateTime now = LocalDateTime.now();
+    infos.stream()
+        .filter(info -> StringUtils.hasText(info.getUserId()))
+        .map(this.mapper::from)
+        .forEach(
+            blockedUser ->
+                incomingByUser.compute(
+                    blockedUser.getUserId(),
+                    (userId, current) ->
+                        Optional.ofNullable(merge(current, blockedUser, now)).orElse(current)));
+    List<BlockedUser> mergedBlockedUsers = this.blockedUserMerger.mergeAll(incomingByUser.values());
+    mergedBlockedUsers.forEach(this::evictCachedBlockedUser);
+    return mergedBlockedUsers.size();
+  }
+
+  /**
+   * Merges a new block of an user into the one which is already known.
+   *
+   * @param current the known block, or null if there is not one
+   * @param incoming the new block
+   * @param now current time
+   * @return the merged block, or null if the known block already covers the new one
+   */
+  static BlockedUser merge(BlockedUser current, BlockedUser incoming, LocalDateTime now) {
+    if (current == null || !current.isBlock(now)) {
+      return incoming;
+    }
+    if (current.isBlock(incoming.getFrom()) && current.isBlock(incoming.getTo())) {
+      return null;
     }
+    return BlockedUser.builder()
+        .userId(incoming.getUserId())
+        .from(
+            Stream.of(incoming.getFrom(), current.getFrom())
+                .min(LocalDateTime::compareTo)
+                .orElse(null))
+        .to(Stream.of(incoming.getTo(), current.getTo()).max(LocalDateTime::compareTo).orElse(null))
+        .build();
   }
 
   @Caching(
@@ -105,13 +156,43 @@ public class BlockedUserServiceImpl implements BlockedUserService {
         @Cacheable(
             key = "#userId",
             cacheNames = CacheNames.BLOCKED_USERS_CACHE_NAME,
-            cacheManager = "caffeineCacheManager"),
+            cacheManager = "caffeineCacheManager",
+            condition = "!@blockedUserRegistry.authoritative"),
         @Cacheable(
             key = "#userId",
             cacheNames = CacheNames.BLOCKED_USERS_CACHE_NAME,
-            cacheManager = "redisCacheManager")
+            cacheManager = "redisCacheManager",
+            condition = "!@blockedUserRegistry.authoritative")
       })
   public BlockedUser retrieveBlockedUserFor(String userId) {
+    if (this.blockedUserRegistry.isAuthoritative()) {
+      return this.blockedUserRegistry.find(userId);
+    }
     return null;
   }
+
+  public Mono<BlockedUser> findBlockedUserFor(String userId) {
+    if (this.blockedUserRegistry.isAuthoritative()) {
+      return Mono.justOrEmpty(this.blockedUserRegistry.find(userId));
+    }
+    // concurrent misses of the same user share one redis read, which is not cancelled when a
+    // request gives up, so the other requests still get it
+    return Mono.fromFuture(this.blockedUsersNearCache.get(userId), true)
+        .timeout(this.lookupProperties.getTimeout())
+        .filter(BlockedUser.class::isInstance)
+        .cast(BlockedUser.class)
+        .onErrorResume(
+            e -> {
+              // not cached, so next request looks up redis again
+              if (this.lookupProperties.getFailurePolicy()
+                  == LimiterServiceProperties.FailurePolicy.FAIL_OPEN) {
+                log.warn(
+                    "Blocked user '{}' lookup failed, it is let through: {}", userId, e.toString());
+                return Mono.empty();
+              }
+              return Mono.error(
+                  new BlockedUserLookupException(
+                      String.format("Blocked user '%s' lookup failed", userId), e));
+            });
+  }
 }
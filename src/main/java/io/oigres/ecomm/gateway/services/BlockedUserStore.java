@@ -0,0 +1,70 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import java.util.Objects;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * Bulk reads of the blocked users which are stored in redis by the redis cache manager.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+public class BlockedUserStore {
+
+  private final ReactiveRedisTemplate<String, BlockedUser> blockedUserReactiveRedisTemplate;
+
+  public BlockedUserStore(
+      ReactiveRedisTemplate<String, BlockedUser> blockedUserReactiveRedisTemplate) {
+    this.blockedUserReactiveRedisTemplate = blockedUserReactiveRedisTemplate;
+  }
+
+  /**
+   * Scans the keys of the stored blocked users and reads them with one MGET per batch. Several
+   * batches are read at the same time, so their commands are pipelined on the connection.
+   *
+   * @param batchSize number of keys of each SCAN and MGET
+   * @param concurrency number of MGET which can be in flight at the same time
+   * @return the users whose block is not over yet
+   */
+  public Flux<BlockedUser> findActive(int batchSize, int concurrency) {
+    long now = System.currentTimeMillis();
+    return this.blockedUserReactiveRedisTemplate
+        .scan(
+            ScanOptions.scanOptions()
+                .match(CacheNames.BLOCKED_USERS_KEY_PREFIX + "*")
+                .count(batchSize)
+                .build())
+        .buffer(batchSize)
+        .flatMapSequential(
+            keys ->
+                this.blockedUserReactiveRedisTemplate
+                    .opsForValue()
+                    .multiGet(keys)
+                    // keys which expired after they were scanned are read as null
+                    .flatMapMany(
+                        values -> Flux.fromStream(values.stream().filter(Objects::nonNull))),
+            concurrency)
+        .filter(blockedUser -> blockedUser.getToEpochMilli() > now);
+  }
+}
@@ -17,9 +17,19 @@
 
 package io.oigres.ecomm.gateway.services;
 
+import java.time.Duration;
+import org.springframework.data.redis.cache.CacheKeyPrefix;
+
 public class CacheNames {
 
   public static final String BLOCKED_USERS_CACHE_NAME = "BLOCKED_USERS";
 
+  /** Prefix of the redis keys of the blocked users, which are followed by the user id. */
+  public static final String BLOCKED_USERS_KEY_PREFIX =
+      CacheKeyPrefix.simple().compute(BLOCKED_USERS_CACHE_NAME);
+
+  /** Time to live of the blocked users which are stored in redis. */
+  public static final Duration BLOCKED_USERS_REDIS_TTL = Duration.ofHours(12);
+
   private CacheNames() {}
 }
@@ -0,0 +1,67 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import io.oigres.ecomm.service.limiter.BlackedInfo;
+import java.util.Objects;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.PartitionOffset;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds the in-memory blocked users of this gateway instance. Every instance must receive every
+ * blacklisted user, so each one is assigned all the partitions of the topic instead of joining a
+ * consumer group, and reads them from the beginning when it starts. The group id is only used to
+ * commit offsets, which are never read back.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class LocalBlocklistListener {
+  private final BlockedUserRegistry blockedUserRegistry;
+
+  @KafkaListener(
+      topicPartitions =
+          @TopicPartition(
+              topic = "${ecomm.service.limiter.topics.blacklisted-users.name}",
+              partitions =
+                  "#{@kafkaPartitionFinder.partitions('${ecomm.service.limiter.topics.blacklisted-users.name}')}",
+              partitionOffsets =
+                  @PartitionOffset(
+                      partition = "*",
+                      initialOffset = "0",
+                      seekPosition = "BEGINNING")),
+      groupId = "${spring.application.name}-blocklist",
+      autoStartup = "${ecomm.service.limiter.local-blocklist.enabled:false}",
+      properties = {"enable.auto.commit=false"})
+  public void consumeMessage(ConsumerRecord<String, BlackedInfo> record) {
+    BlackedInfo blackedInfo = Objects.isNull(record) ? null : record.value();
+    if (blackedInfo == null) {
+      return;
+    }
+    try {
+      blockedUserRegistry.apply(blackedInfo);
+    } catch (Throwable t) {
+      log.error("Unexpected error: ", t);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import io.oigres.ecomm.cache.CacheLockFactory;
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Merges blocked users holding a distributed lock of the user while the stored block is read,
+ * merged and written back through the redis cache manager. It takes several round trips to redis
+ * per message, but it works with any redis format.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+public class LockingBlockedUserMerger implements BlockedUserMerger {
+  private final CacheManager redisCacheManager;
+  private final CacheLockFactory cacheLockFactory;
+
+  public LockingBlockedUserMerger(
+      @Qualifier("redisCacheManager") CacheManager redisCacheManager,
+      CacheLockFactory cacheLockFactory) {
+    this.redisCacheManager = redisCacheManager;
+    this.cacheLockFactory = cacheLockFactory;
+  }
+
+  @Override
+  public BlockedUser merge(BlockedUser incoming) {
+    Cache redisCache =
+        Optional.ofNullable(this.redisCacheManager.getCache(CacheNames.BLOCKED_USERS_CACHE_NAME))
+            .orElseThrow(IllegalStateException::new);
+    Lock lock =
+        this.cacheLockFactory.create(
+            CacheNames.BLOCKED_USERS_KEY_PREFIX + incoming.getUserId() + ":lock");
+    lock.lock();
+    try {
+      BlockedUser cachedBlockedUser = redisCache.get(incoming.getUserId(), BlockedUser.class);
+      BlockedUser mergedBlockedUser =
+          BlockedUserServiceImpl.merge(cachedBlockedUser, incoming, LocalDateTime.now());
+      if (mergedBlockedUser != null) {
+        redisCache.put(mergedBlockedUser.getUserId(), mergedBlockedUser);
+      }
+      return mergedBlockedUser;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
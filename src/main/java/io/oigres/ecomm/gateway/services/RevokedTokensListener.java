@@ -0,0 +1,85 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import io.oigres.ecomm.gateway.model.RevokedToken;
+import io.oigres.ecomm.gateway.util.RevokedTokenRegistry;
+import java.util.Objects;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.PartitionOffset;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds the revocation list of this gateway instance. Every instance must receive every revoked
+ * token, so each one is assigned all the partitions of the topic instead of joining a consumer
+ * group, and reads them from the beginning when it starts. The group id is only used to commit
+ * offsets, which are never read back.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RevokedTokensListener {
+  private final RevokedTokenRegistry revokedTokenRegistry;
+
+  @KafkaListener(
+      topicPartitions =
+          @TopicPartition(
+              topic = "${ecomm.service.authentication.revocation.topic}",
+              partitions =
+                  "#{@kafkaPartitionFinder.partitions('${ecomm.service.authentication.revocation.topic}')}",
+              partitionOffsets =
+                  @PartitionOffset(
+                      partition = "*",
+                      initialOffset = "0",
+                      seekPosition = "BEGINNING")),
+      groupId = "${spring.application.name}-revocation",
+      autoStartup = "${ecomm.service.authentication.revocation.enabled:true}",
+      properties = {
+        "enable.auto.commit=false",
+        "spring.json.value.default.type=io.oigres.ecomm.gateway.model.RevokedToken",
+        "spring.json.use.type.headers=false"
+      })
+  public void consumeMessage(ConsumerRecord<String, RevokedToken> record) {
+    if (record != null) {
+      log.info(
+          "Consumed kafka message from '{}'/'{}' in offset '{}' with key '{}'  ",
+          record.topic(),
+          record.partition(),
+          record.offset(),
+          record.key());
+    }
+    RevokedToken revokedToken = Objects.isNull(record) ? null : record.value();
+    if (revokedToken == null
+        || revokedToken.getTokenId() == null
+        || revokedToken.getExpiresAt() == null) {
+      return;
+    }
+    try {
+      revokedTokenRegistry.revoke(
+          revokedToken.getTokenId(), revokedToken.getExpiresAt().toEpochMilli());
+      log.info(
+          "Token '{}' of '{}' was revoked", revokedToken.getTokenId(), revokedToken.getSubject());
+    } catch (Throwable t) {
+      log.error("Unexpected error: ", t);
+    }
+  }
+}
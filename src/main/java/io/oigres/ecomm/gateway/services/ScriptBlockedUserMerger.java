@@ -0,0 +1,190 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.redisson.api.RFuture;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Merges blocked users with a lua script, so redis reads, merges and writes the block in one round
+ * trip and no lock is needed. The script understands the binary format only, so it writes binary
+ * entries.
+ *
+ * <p>Entries which are still stored as gzip JSON are returned to the gateway, which merges them and
+ * runs the script again with the merged block and the entry it read. The script writes it only if
+ * the entry did not change in the meantime, otherwise the merge starts over.
+ *
+ * <p>The scripts of several users are sent without waiting for the previous ones, so they are
+ * pipelined on the connection.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+public class ScriptBlockedUserMerger implements BlockedUserMerger {
+  static final long STORED = 1;
+  static final long UNCHANGED = 2;
+  static final long LEGACY = 3;
+  static final long CHANGED = 4;
+
+  // KEYS[1] = key, ARGV = from, to, now, user id, ttl millis, legacy entry which was merged or ''
+  static final String MERGE_SCRIPT =
+      """
+      local current = redis.call('GET', KEYS[1])
+      local from = tonumber(ARGV[1])
+      local to = tonumber(ARGV[2])
+      local now = tonumber(ARGV[3])
+      if ARGV[6] ~= '' then
+        if current ~= ARGV[6] then
+          return {4}
+        end
+        current = false
+      elseif current and string.byte(current, 1) ~= 1 then
+        return {3, current}
+      end
+      if current then
+        local _, currentFrom, currentTo = struct.unpack('>Bi8i8', current)
+        if now >= currentFrom and now <= currentTo then
+          if from >= currentFrom and from <= currentTo and to >= currentFrom and to <= currentTo then
+            return {2}
+          end
+          from = math.min(from, currentFrom)
+          to = math.max(to, currentTo)
+        end
+      end
+      local value = struct.pack('>Bi8i8', 1, from, to) .. ARGV[4]
+      redis.call('SET', KEYS[1], value, 'PX', ARGV[5])
+      return {1, value}
+      """;
+
+  private final RedissonClient redissonClient;
+  private final RedisSerializer<BlockedUser> blockedUserRedisSerializer;
+
+  public ScriptBlockedUserMerger(
+      RedissonClient redissonClient, RedisSerializer<BlockedUser> blockedUserRedisSerializer) {
+    this.redissonClient = redissonClient;
+    this.blockedUserRedisSerializer = blockedUserRedisSerializer;
+  }
+
+  @Override
+  public BlockedUser merge(BlockedUser incoming) {
+    RScript script = this.redissonClient.getScript(ByteArrayCodec.INSTANCE);
+    long now = System.currentTimeMillis();
+    BlockedUser block = incoming;
+    byte[] mergedLegacyEntry = new byte[0];
+    while (true) {
+      List<Object> result =
+          script.eval(
+              RScript.Mode.READ_WRITE,
+              MERGE_SCRIPT,
+              RScript.ReturnType.MULTI,
+              keys(incoming),
+              values(incoming, block, now, mergedLegacyEntry));
+      long status = (Long) result.get(0);
+      if (status == STORED) {
+        return this.blockedUserRedisSerializer.deserialize((byte[]) result.get(1));
+      }
+      if (status == UNCHANGED) {
+        return null;
+      }
+      if (status == CHANGED) {
+        block = incoming;
+        mergedLegacyEntry = new byte[0];
+        continue;
+      }
+      byte[] legacyEntry = (byte[]) result.get(1);
+      BlockedUser merged =
+          BlockedUserServiceImpl.merge(
+              this.blockedUserRedisSerializer.deserialize(legacyEntry),
+              incoming,
+              LocalDateTime.now());
+      if (merged == null) {
+        return null;
+      }
+      block = merged;
+      mergedLegacyEntry = legacyEntry;
+    }
+  }
+
+  @Override
+  public List<BlockedUser> mergeAll(Collection<BlockedUser> incoming) {
+    RScript script = this.redissonClient.getScript(ByteArrayCodec.INSTANCE);
+    long now = System.currentTimeMillis();
+    Map<BlockedUser, RFuture<List<Object>>> results = new LinkedHashMap<>();
+    for (BlockedUser blockedUser : incoming) {
+      results.put(
+          blockedUser,
+          script.evalAsync(
+              RScript.Mode.READ_WRITE,
+              MERGE_SCRIPT,
+              RScript.ReturnType.MULTI,
+              keys(blockedUser),
+              values(blockedUser, blockedUser, now, new byte[0])));
+    }
+    List<BlockedUser> stored = new ArrayList<>();
+    results.forEach(
+        (blockedUser, future) -> {
+          List<Object> result = future.toCompletableFuture().join();
+          long status = (Long) result.get(0);
+          BlockedUser merged;
+          if (status == STORED) {
+            merged = this.blockedUserRedisSerializer.deserialize((byte[]) result.get(1));
+          } else if (status == UNCHANGED) {
+            merged = null;
+          } else {
+            // legacy entries and entries which changed are merged on their own
+            merged = merge(blockedUser);
+          }
+          if (merged != null) {
+            stored.add(merged);
+          }
+        });
+    return stored;
+  }
+
+  private static List<Object> keys(BlockedUser incoming) {
+    return List.of(CacheNames.BLOCKED_USERS_KEY_PREFIX + incoming.getUserId());
+  }
+
+  private static Object[] values(
+      BlockedUser incoming, BlockedUser block, long now, byte[] mergedLegacyEntry) {
+    return new Object[] {
+      number(block.getFromEpochMilli()),
+      number(block.getToEpochMilli()),
+      number(now),
+      incoming.getUserId().getBytes(StandardCharsets.UTF_8),
+      number(CacheNames.BLOCKED_USERS_REDIS_TTL.toMillis()),
+      mergedLegacyEntry
+    };
+  }
+
+  private static byte[] number(long value) {
+    return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,60 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import org.apache.kafka.common.header.Headers;
+
+/**
+ * Encodes the audits which are sent to the limiter service: RequestAudit, ResponseAudit and
+ * ExchangeAudit.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+public interface AuditCodec {
+  /** Kafka header with the name of the codec which encoded an audit. */
+  String CODEC_HEADER = "audit-codec";
+
+  /**
+   * @return name of the codec, which is put in the CODEC_HEADER of each audit
+   */
+  String name();
+
+  /**
+   * @param audit audit to encode
+   * @return the encoded audit
+   */
+  byte[] encode(Object audit);
+
+  /**
+   * Encodes an audit which is sent in a kafka record, whose headers the codec can use to describe
+   * it.
+   *
+   * @param headers headers of the record
+   * @param audit audit to encode
+   * @return the encoded audit
+   */
+  default byte[] encode(Headers headers, Object audit) {
+    return encode(audit);
+  }
+
+  /**
+   * @param data an audit which was encoded by this codec
+   * @return the decoded audit
+   */
+  Object decode(byte[] data);
+}
@@ -0,0 +1,205 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends the audits to the limiter service from a dedicated thread, so a kafka producer which is
+ * full or waiting for metadata never blocks the thread which handles the request.
+ *
+ * <p>The filters put the audits in a bounded ring buffer, without locks, and the publisher thread
+ * takes them in batches. When the buffer is full, the overflow policy decides which audits are
+ * lost.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+@Slf4j
+public class AuditPublisher {
+  private final KafkaTemplate<String, Object> messageKafkaTemplate;
+  private final RingBuffer<Entry> buffer;
+  private final LimiterServiceProperties.OverflowPolicy overflowPolicy;
+  private final int sampleThreshold;
+  private final int sampleEvery;
+  private final int batchSize;
+  private final long drainIntervalNanos;
+  private final AtomicLong sampled = new AtomicLong();
+  private final Counter droppedCounter;
+  private final Timer latencyTimer;
+  private final DistributionSummary batchSummary;
+  private volatile boolean running;
+  private Thread thread;
+
+  public AuditPublisher(
+      LimiterServiceProperties limiterServiceProperties,
+      KafkaTemplate<String, Object> messageKafkaTemplate,
+      MeterRegistry meterRegistry) {
+    LimiterServiceProperties.AuditProperties properties = limiterServiceProperties.getAudit();
+    this.messageKafkaTemplate = messageKafkaTemplate;
+    this.buffer = new RingBuffer<>(properties.getBufferSize());
+    this.overflowPolicy = properties.getOverflowPolicy();
+    this.sampleThreshold = this.buffer.capacity() / 2;
+    this.sampleEvery = properties.getSampleEvery();
+    this.batchSize = properties.getBatchSize();
+    this.drainIntervalNanos = properties.getDrainInterval().toNanos();
+    this.droppedCounter =
+        Counter.builder("gateway.audit.dropped")
+            .tag("policy", this.overflowPolicy.name().toLowerCase())
+            .description("Audits which were lost because the audit buffer was full")
+            .register(meterRegistry);
+    this.latencyTimer =
+        Timer.builder("gateway.audit.publish.latency")
+            .description("Time since an audit was buffered until kafka acknowledged it")
+            .register(meterRegistry);
+    this.batchSummary =
+        DistributionSummary.builder("gateway.audit.batch.size")
+            .description("Audits which were taken from the buffer at once")
+            .register(meterRegistry);
+    Gauge.builder("gateway.audit.queue.depth", this.buffer, RingBuffer::size)
+        .description("Audits which are waiting in the buffer")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Buffers an audit to be sent to the incoming request topic. It never blocks.
+   *
+   * @param userId key of the message
+   * @param audit request or response audit
+   */
+  public void publish(String userId, Object audit) {
+    Entry entry = new Entry(userId, audit, System.nanoTime());
+    switch (this.overflowPolicy) {
+      case DROP_NEWEST -> offerOrDrop(entry);
+      case DROP_OLDEST -> {
+        while (!this.buffer.offer(entry)) {
+          if (this.buffer.poll() != null) {
+            this.droppedCounter.increment();
+          }
+        }
+      }
+      case SAMPLE -> {
+        // past half of the buffer, only one of every few audits is kept
+        if (this.buffer.size() >= this.sampleThreshold
+            && this.sampled.getAndIncrement() % this.sampleEvery != 0) {
+          this.droppedCounter.increment();
+          return;
+        }
+        offerOrDrop(entry);
+      }
+    }
+  }
+
+  private void offerOrDrop(Entry entry) {
+    if (!this.buffer.offer(entry)) {
+      this.droppedCounter.increment();
+    }
+  }
+
+  @PostConstruct
+  public void start() {
+    this.running = true;
+    this.thread = new Thread(this::run, "audit-publisher");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    this.running = false;
+    if (this.thread != null) {
+      LockSupport.unpark(this.thread);
+      this.thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    // audits which were buffered while stopping
+    int drained;
+    do {
+      drained = drain();
+    } while (drained > 0);
+  }
+
+  private void run() {
+    while (this.running) {
+      try {
+        if (drain() < this.batchSize) {
+          LockSupport.parkNanos(this.drainIntervalNanos);
+        }
+      } catch (RuntimeException e) {
+        log.warn("Audits were not published: {}", e.toString());
+      }
+    }
+  }
+
+  /**
+   * Sends one batch of the buffered audits.
+   *
+   * @return number of audits which were taken from the buffer
+   */
+  int drain() {
+    int count = 0;
+    Entry entry;
+    while (count < this.batchSize && (entry = this.buffer.poll()) != null) {
+      count++;
+      send(entry);
+    }
+    if (count > 0) {
+      this.batchSummary.record(count);
+    }
+    return count;
+  }
+
+  private void send(Entry entry) {
+    try {
+      this.messageKafkaTemplate
+          .sendDefault(entry.userId, entry.audit)
+          .whenComplete(
+              (result, e) -> {
+                if (e == null) {
+                  this.latencyTimer.record(
+                      System.nanoTime() - entry.bufferedAt, TimeUnit.NANOSECONDS);
+                } else {
+                  log.warn("Audit of user '{}' was not sent: {}", entry.userId, e.toString());
+                }
+              });
+    } catch (RuntimeException e) {
+      log.warn("Audit of user '{}' was not sent: {}", entry.userId, e.toString());
+    }
+  }
+
+  /**
+   * @return audits which are waiting in the buffer
+   */
+  public int depth() {
+    return this.buffer.size();
+  }
+
+  private record Entry(String userId, Object audit, long bufferedAt) {}
+}
@@ -0,0 +1,116 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.oigres.ecomm.gateway.model.ExchangeAudit;
+import io.oigres.ecomm.service.limiter.RequestAudit;
+import io.oigres.ecomm.service.limiter.ResponseAudit;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+/**
+ * Kafka serializer of the messages to the limiter service, which encodes the audits with an audit
+ * codec and any other message, like the usage records, with the JsonSerializer. The name of the
+ * codec is put in the CODEC_HEADER of each audit.
+ *
+ * <p>It is configured by class name, so the codec is chosen by its name with the CODEC_CONFIG
+ * property, and it is JSON when the property is not set.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+public class AuditSerializer implements Serializer<Object> {
+  /** Producer property with the name of the codec of the audits. */
+  public static final String CODEC_CONFIG = "ecomm.audit.codec";
+
+  private static final Map<String, Supplier<AuditCodec>> CODECS =
+      Map.of(
+          JsonAuditCodec.NAME,
+          () -> new JsonAuditCodec(Object.class),
+          BinaryAuditCodec.NAME,
+          BinaryAuditCodec::new);
+
+  private final JsonSerializer<Object> jsonSerializer = new JsonSerializer<>();
+  private AuditCodec codec;
+  private byte[] codecName;
+
+  public AuditSerializer() {
+    this(codec(JsonAuditCodec.NAME));
+  }
+
+  public AuditSerializer(AuditCodec codec) {
+    setCodec(codec);
+  }
+
+  /**
+   * @param name name of an audit codec
+   * @return a new instance of the codec
+   */
+  public static AuditCodec codec(String name) {
+    Supplier<AuditCodec> codec = CODECS.get(name);
+    if (codec == null) {
+      throw new IllegalArgumentException("Unknown audit codec: " + name);
+    }
+    return codec.get();
+  }
+
+  private void setCodec(AuditCodec codec) {
+    this.codec = codec;
+    this.codecName = codec.name().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+    this.jsonSerializer.configure(configs, isKey);
+    Object name = configs.get(CODEC_CONFIG);
+    if (name != null) {
+      setCodec(codec(name.toString()));
+    }
+  }
+
+  private static boolean isAudit(Object data) {
+    return data instanceof RequestAudit
+        || data instanceof ResponseAudit
+        || data instanceof ExchangeAudit;
+  }
+
+  @Override
+  public byte[] serialize(String topic, Object data) {
+    return serialize(topic, null, data);
+  }
+
+  @Override
+  public byte[] serialize(String topic, Headers headers, Object data) {
+    if (!isAudit(data)) {
+      return this.jsonSerializer.serialize(topic, headers, data);
+    }
+    if (headers == null) {
+      return this.codec.encode(data);
+    }
+    headers.add(AuditCodec.CODEC_HEADER, this.codecName);
+    return this.codec.encode(headers, data);
+  }
+
+  @Override
+  public void close() {
+    this.jsonSerializer.close();
+  }
+}
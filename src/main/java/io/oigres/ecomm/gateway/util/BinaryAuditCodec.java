@@ -0,0 +1,496 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.oigres.ecomm.gateway.model.ExchangeAudit;
+import io.oigres.ecomm.service.limiter.RequestAudit;
+import io.oigres.ecomm.service.limiter.ResponseAudit;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Encodes the audits in a compact binary format. Each audit starts with the version of the format
+ * and its type. Numbers are variable length, strings are UTF-8 with their length, and the names of
+ * the usual http headers are written as their index in a dictionary.
+ *
+ * <p>The dictionary belongs to the version of the format and is frozen with it: an older reader
+ * does not know names appended later, so any change to the dictionary needs a new version. Header
+ * names which are not in the dictionary are written in full.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+public class BinaryAuditCodec implements AuditCodec {
+  public static final String NAME = "binary";
+  public static final byte VERSION = 1;
+
+  private static final byte REQUEST = 1;
+  private static final byte RESPONSE = 2;
+  private static final byte EXCHANGE = 3;
+
+  /** Header names of version 1, index 0 means the name is written in full. Do not change it. */
+  private static final List<String> HEADER_NAMES =
+      List.of(
+          HttpHeaders.ACCEPT,
+          HttpHeaders.ACCEPT_ENCODING,
+          HttpHeaders.ACCEPT_LANGUAGE,
+          HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN,
+          HttpHeaders.AUTHORIZATION,
+          HttpHeaders.CACHE_CONTROL,
+          HttpHeaders.CONNECTION,
+          HttpHeaders.CONTENT_ENCODING,
+          HttpHeaders.CONTENT_LENGTH,
+          HttpHeaders.CONTENT_TYPE,
+          HttpHeaders.COOKIE,
+          HttpHeaders.DATE,
+          HttpHeaders.ETAG,
+          HttpHeaders.EXPECT,
+          HttpHeaders.EXPIRES,
+          "Forwarded",
+          HttpHeaders.HOST,
+          HttpHeaders.IF_MODIFIED_SINCE,
+          HttpHeaders.IF_NONE_MATCH,
+          "Keep-Alive",
+          HttpHeaders.LAST_MODIFIED,
+          HttpHeaders.LOCATION,
+          HttpHeaders.ORIGIN,
+          HttpHeaders.PRAGMA,
+          HttpHeaders.REFERER,
+          "Server",
+          HttpHeaders.SET_COOKIE,
+          "Strict-Transport-Security",
+          HttpHeaders.TRANSFER_ENCODING,
+          HttpHeaders.USER_AGENT,
+          HttpHeaders.VARY,
+          "X-Content-Type-Options",
+          "X-Forwarded-For",
+          "X-Forwarded-Host",
+          "X-Forwarded-Port",
+          "X-Forwarded-Proto",
+          "X-Frame-Options",
+          "X-Request-Id",
+          "traceparent",
+          "tracestate");
+
+  private static final Map<String, Integer> HEADER_INDEXES = new HashMap<>();
+
+  static {
+    for (int i = 0; i < HEADER_NAMES.size(); i++) {
+      HEADER_INDEXES.put(HEADER_NAMES.get(i).toLowerCase(Locale.ROOT), i + 1);
+    }
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte[] encode(Object audit) {
+    Writer writer = new Writer();
+    writer.writeByte(VERSION);
+    if (audit instanceof RequestAudit request) {
+      writer.writeByte(REQUEST);
+      writeRequest(writer, request);
+    } else if (audit instanceof ResponseAudit response) {
+      writer.writeByte(RESPONSE);
+      writeResponse(writer, response);
+    } else if (audit instanceof ExchangeAudit exchange) {
+      writer.writeByte(EXCHANGE);
+      writeExchange(writer, exchange);
+    } else {
+      throw new IllegalArgumentException("Not an audit: " + audit);
+    }
+    return writer.toByteArray();
+  }
+
+  @Override
+  public Object decode(byte[] data) {
+    Reader reader = new Reader(data);
+    byte version = reader.readByte();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unknown audit format version " + version);
+    }
+    byte type = reader.readByte();
+    return switch (type) {
+      case REQUEST -> readRequest(reader);
+      case RESPONSE -> readResponse(reader);
+      case EXCHANGE -> readExchange(reader);
+      default -> throw new IllegalArgumentException("Unknown audit type " + type);
+    };
+  }
+
+  private static void writeRequest(Writer writer, RequestAudit audit) {
+    writer.writeString(audit.getId());
+    writer.writeString(audit.getUserId());
+    writer.writeString(audit.getRemoteAddr());
+    writer.writeString(audit.getMethod());
+    writer.writeString(audit.getPath());
+    writeMultiValueMap(writer, audit.getQuery(), Writer::writeString);
+    writeMultiValueMap(writer, audit.getHeaders(), BinaryAuditCodec::writeHeaderName);
+    writeCookies(
+        writer,
+        audit.getCookies(),
+        (w, cookie) -> {
+          w.writeString(cookie.getName());
+          w.writeString(cookie.getValue());
+        });
+    writer.writeString(audit.getBody());
+    writeDateTime(writer, audit.getArrived());
+  }
+
+  private static RequestAudit readRequest(Reader reader) {
+    return RequestAudit.builder()
+        .id(reader.readString())
+        .userId(reader.readString())
+        .remoteAddr(reader.readString())
+        .method(reader.readString())
+        .path(reader.readString())
+        .query(readMultiValueMap(reader, Reader::readString, new LinkedMultiValueMap<>()))
+        .headers(readMultiValueMap(reader, BinaryAuditCodec::readHeaderName, new HttpHeaders()))
+        .cookies(
+            readCookies(reader, r -> new RequestAudit.HttpCookie(r.readString(), r.readString())))
+        .body(reader.readString())
+        .arrived(readDateTime(reader))
+        .build();
+  }
+
+  private static void writeResponse(Writer writer, ResponseAudit audit) {
+    writer.writeString(audit.getId());
+    writer.writeString(audit.getUserId());
+    writeMultiValueMap(writer, audit.getHeaders(), BinaryAuditCodec::writeHeaderName);
+    writeCookies(
+        writer,
+        audit.getCookies(),
+        (w, cookie) -> {
+          w.writeString(cookie.getName());
+          w.writeString(cookie.getValue());
+          writeDuration(w, cookie.getMaxAge());
+          w.writeString(cookie.getDomain());
+          w.writeString(cookie.getPath());
+          w.writeByte((byte) ((cookie.isSecure() ? 1 : 0) | (cookie.isHttpOnly() ? 2 : 0)));
+          w.writeString(cookie.getSameSite());
+        });
+    writer.writeSignedLong(audit.getStatus());
+    writeDateTime(writer, audit.getArrived());
+  }
+
+  private static ResponseAudit readResponse(Reader reader) {
+    return ResponseAudit.builder()
+        .id(reader.readString())
+        .userId(reader.readString())
+        .headers(readMultiValueMap(reader, BinaryAuditCodec::readHeaderName, new HttpHeaders()))
+        .cookies(
+            readCookies(
+                reader,
+                r -> {
+                  ResponseAudit.HttpCookie.HttpCookieBuilder cookie =
+                      ResponseAudit.HttpCookie.builder()
+                          .name(r.readString())
+                          .value(r.readString())
+                          .maxAge(readDuration(r))
+                          .domain(r.readString())
+                          .path(r.readString());
+                  byte flags = r.readByte();
+                  return cookie
+                      .secure((flags & 1) != 0)
+                      .httpOnly((flags & 2) != 0)
+                      .sameSite(r.readString())
+                      .build();
+                }))
+        .status((int) reader.readSignedLong())
+        .arrived(readDateTime(reader))
+        .build();
+  }
+
+  private static void writeExchange(Writer writer, ExchangeAudit audit) {
+    writer.writeString(audit.getId());
+    writer.writeString(audit.getUserId());
+    writer.writeBoolean(audit.getRequest() != null);
+    if (audit.getRequest() != null) {
+      writeRequest(writer, audit.getRequest());
+    }
+    writer.writeBoolean(audit.getResponse() != null);
+    if (audit.getResponse() != null) {
+      writeResponse(writer, audit.getResponse());
+    }
+    writeDuration(writer, audit.getGatewayTime());
+    writeDuration(writer, audit.getUpstreamTime());
+    writeDuration(writer, audit.getTotalTime());
+    writer.writeLong(audit.getResponseBytes());
+  }
+
+  private static ExchangeAudit readExchange(Reader reader) {
+    return ExchangeAudit.builder()
+        .id(reader.readString())
+        .userId(reader.readString())
+        .request(reader.readBoolean() ? readRequest(reader) : null)
+        .response(reader.readBoolean() ? readResponse(reader) : null)
+        .gatewayTime(readDuration(reader))
+        .upstreamTime(readDuration(reader))
+        .totalTime(readDuration(reader))
+        .responseBytes(reader.readLong())
+        .build();
+  }
+
+  private static void writeHeaderName(Writer writer, String name) {
+    Integer index = HEADER_INDEXES.get(name.toLowerCase(Locale.ROOT));
+    if (index == null) {
+      writer.writeLong(0);
+      writer.writeString(name);
+    } else {
+      writer.writeLong(index);
+    }
+  }
+
+  private static String readHeaderName(Reader reader) {
+    long index = reader.readLong();
+    if (index == 0) {
+      return reader.readString();
+    }
+    if (index > HEADER_NAMES.size()) {
+      throw new IllegalArgumentException("Unknown header name index " + index);
+    }
+    return HEADER_NAMES.get((int) index - 1);
+  }
+
+  private static void writeMultiValueMap(
+      Writer writer, MultiValueMap<String, String> map, BiConsumer<Writer, String> keyWriter) {
+    if (map == null) {
+      writer.writeLong(0);
+      return;
+    }
+    writer.writeLong(map.size() + 1L);
+    map.forEach(
+        (key, values) -> {
+          keyWriter.accept(writer, key);
+          writer.writeLong(values.size());
+          values.forEach(writer::writeString);
+        });
+  }
+
+  private static MultiValueMap<String, String> readMultiValueMap(
+      Reader reader, Function<Reader, String> keyReader, MultiValueMap<String, String> map) {
+    long size = reader.readLong() - 1;
+    if (size < 0) {
+      return null;
+    }
+    for (long i = 0; i < size; i++) {
+      String key = keyReader.apply(reader);
+      int count = reader.readCount();
+      List<String> values = new ArrayList<>(count);
+      for (int j = 0; j < count; j++) {
+        values.add(reader.readString());
+      }
+      map.addAll(key, values);
+    }
+    return map;
+  }
+
+  private static <C> void writeCookies(
+      Writer writer, Map<String, List<C>> cookies, BiConsumer<Writer, C> cookieWriter) {
+    if (cookies == null) {
+      writer.writeLong(0);
+      return;
+    }
+    writer.writeLong(cookies.size() + 1L);
+    cookies.forEach(
+        (name, values) -> {
+          writer.writeString(name);
+          writer.writeLong(values.size());
+          values.forEach(cookie -> cookieWriter.accept(writer, cookie));
+        });
+  }
+
+  private static <C> Map<String, List<C>> readCookies(
+      Reader reader, Function<Reader, C> cookieReader) {
+    long size = reader.readLong() - 1;
+    if (size < 0) {
+      return null;
+    }
+    Map<String, List<C>> cookies = new LinkedHashMap<>();
+    for (long i = 0; i < size; i++) {
+      String name = reader.readString();
+      int count = reader.readCount();
+      List<C> values = new ArrayList<>(count);
+      for (int j = 0; j < count; j++) {
+        values.add(cookieReader.apply(reader));
+      }
+      cookies.put(name, values);
+    }
+    return cookies;
+  }
+
+  private static void writeDateTime(Writer writer, LocalDateTime dateTime) {
+    writer.writeBoolean(dateTime != null);
+    if (dateTime != null) {
+      writer.writeSignedLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+      writer.writeLong(dateTime.getNano());
+    }
+  }
+
+  private static LocalDateTime readDateTime(Reader reader) {
+    if (!reader.readBoolean()) {
+      return null;
+    }
+    long seconds = reader.readSignedLong();
+    return LocalDateTime.ofEpochSecond(seconds, (int) reader.readLong(), ZoneOffset.UTC);
+  }
+
+  private static void writeDuration(Writer writer, Duration duration) {
+    writer.writeBoolean(duration != null);
+    if (duration != null) {
+      writer.writeSignedLong(duration.getSeconds());
+      writer.writeLong(duration.getNano());
+    }
+  }
+
+  private static Duration readDuration(Reader reader) {
+    if (!reader.readBoolean()) {
+      return null;
+    }
+    long seconds = reader.readSignedLong();
+    return Duration.ofSeconds(seconds, reader.readLong());
+  }
+
+  /** Growable buffer of the encoded audit. */
+  private static final class Writer {
+    private byte[] buffer = new byte[512];
+    private int length;
+
+    private void ensure(int bytes) {
+      if (this.length + bytes > this.buffer.length) {
+        this.buffer =
+            Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.length + bytes));
+      }
+    }
+
+    void writeByte(byte value) {
+      ensure(1);
+      this.buffer[this.length++] = value;
+    }
+
+    void writeBoolean(boolean value) {
+      writeByte((byte) (value ? 1 : 0));
+    }
+
+    /** Unsigned variable length number, 7 bits per byte. */
+    void writeLong(long value) {
+      ensure(10);
+      while ((value & ~0x7FL) != 0) {
+        this.buffer[this.length++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      this.buffer[this.length++] = (byte) value;
+    }
+
+    /** Zig-zag encoded, so small negative numbers are short too. */
+    void writeSignedLong(long value) {
+      writeLong((value << 1) ^ (value >> 63));
+    }
+
+    /** Length plus one, so null is a single zero byte, and the UTF-8 bytes. */
+    void writeString(String value) {
+      if (value == null) {
+        writeLong(0);
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeLong(bytes.length + 1L);
+      ensure(bytes.length);
+      System.arraycopy(bytes, 0, this.buffer, this.length, bytes.length);
+      this.length += bytes.length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(this.buffer, this.length);
+    }
+  }
+
+  private static final class Reader {
+    private final byte[] data;
+    private int position;
+
+    Reader(byte[] data) {
+      this.data = data;
+    }
+
+    byte readByte() {
+      if (this.position >= this.data.length) {
+        throw new IllegalArgumentException("Truncated audit");
+      }
+      return this.data[this.position++];
+    }
+
+    boolean readBoolean() {
+      return readByte() != 0;
+    }
+
+    long readLong() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        byte b = readByte();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Malformed number in audit");
+    }
+
+    /** Number of elements which follow, each of them takes one byte at least. */
+    int readCount() {
+      long count = readLong();
+      if (count < 0 || count > this.data.length - this.position) {
+        throw new IllegalArgumentException("Truncated audit");
+      }
+      return (int) count;
+    }
+
+    long readSignedLong() {
+      long value = readLong();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    String readString() {
+      long length = readLong() - 1;
+      if (length < 0) {
+        return null;
+      }
+      if (length > this.data.length - this.position) {
+        throw new IllegalArgumentException("Truncated audit");
+      }
+      String value = new String(this.data, this.position, (int) length, StandardCharsets.UTF_8);
+      this.position += (int) length;
+      return value;
+    }
+  }
+}
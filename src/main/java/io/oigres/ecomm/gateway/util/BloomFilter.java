@@ -0,0 +1,94 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Bloom filter of strings. Probing it neither locks nor allocates, so it can be checked
+ * on every request. It may report false positives, which must be confirmed by an exact lookup, but
+ * never false negatives.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+class BloomFilter {
+  private static final double LN2 = Math.log(2);
+  private static final long MAX_BITS = 1L << 30;
+  private static final long MAX_HASHES = 16;
+
+  private final AtomicLongArray bits;
+  private final int mask;
+  private final int hashes;
+
+  /**
+   * @param expectedInsertions number of strings which are expected to be added
+   * @param falsePositiveProbability expected probability of false positives
+   */
+  BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+    long insertions = Math.max(expectedInsertions, 1);
+    long optimalBits =
+        (long) Math.ceil(-insertions * Math.log(falsePositiveProbability) / (LN2 * LN2));
+    // rounded up to a power of two, so positions are computed with a mask
+    int size =
+        (int) Math.min(Long.highestOneBit(Math.max(optimalBits, Long.SIZE) - 1) << 1, MAX_BITS);
+    this.bits = new AtomicLongArray(size / Long.SIZE);
+    this.mask = size - 1;
+    this.hashes =
+        (int) Math.max(1, Math.min(Math.round((double) size / insertions * LN2), MAX_HASHES));
+  }
+
+  void put(String value) {
+    int h1 = spread(value.hashCode());
+    int h2 = secondHash(value);
+    for (int i = 0; i < this.hashes; i++) {
+      int bit = (h1 + i * h2) & this.mask;
+      long flag = 1L << bit;
+      int index = bit >>> 6;
+      long current;
+      while (((current = this.bits.get(index)) & flag) == 0
+          && !this.bits.compareAndSet(index, current, current | flag)) {
+        // retry, another bit of the same word was set concurrently
+      }
+    }
+  }
+
+  boolean mightContain(String value) {
+    int h1 = spread(value.hashCode());
+    int h2 = secondHash(value);
+    for (int i = 0; i < this.hashes; i++) {
+      int bit = (h1 + i * h2) & this.mask;
+      if ((this.bits.get(bit >>> 6) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  /** FNV-1a over the chars of the string. It is always odd, so it walks all the positions. */
+  private static int secondHash(String value) {
+    int hash = 0x811c9dc5;
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * 0x01000193;
+    }
+    return hash | 1;
+  }
+}
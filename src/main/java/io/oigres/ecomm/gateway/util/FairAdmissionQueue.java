@@ -0,0 +1,287 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.oigres.ecomm.gateway.config.GatewayProperties;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Limits the requests which are forwarded at once. While the limit is reached, new requests wait
+ * in a queue of their user, and each released request is handed to the next user in deficit round
+ * robin order: users take turns, and each turn forwards up to a quantum of requests of the user.
+ * So an user with many waiting requests delays its own requests, not the ones of other users.
+ *
+ * <p>Memory is bounded by the maximum requests which can wait, in total and per user, and a
+ * request which waits longer than the maximum delay is rejected. Requests are not queued while
+ * there is capacity and nobody is waiting, so the queue costs nothing until the upstream is
+ * saturated.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+public class FairAdmissionQueue {
+  private final boolean enabled;
+  private final int maxInFlight;
+  private final int maxQueued;
+  private final int maxQueuedPerUser;
+  private final Duration maxDelay;
+  private final int quantum;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Map<String, UserQueue> queues = new HashMap<>();
+  private final ArrayDeque<UserQueue> turns = new ArrayDeque<>();
+  private int inFlight;
+  private volatile int queued;
+
+  private final Counter fullCounter;
+  private final Counter expiredCounter;
+  private final Timer delayTimer;
+
+  public FairAdmissionQueue(GatewayProperties gatewayProperties, MeterRegistry meterRegistry) {
+    GatewayProperties.FairQueue properties = gatewayProperties.getFairQueue();
+    this.enabled = properties.isEnabled();
+    this.maxInFlight = properties.getMaxInFlight();
+    this.maxQueued = properties.getMaxQueued();
+    this.maxQueuedPerUser = properties.getMaxQueuedPerUser();
+    this.maxDelay = properties.getMaxDelay();
+    this.quantum = properties.getQuantum();
+    this.fullCounter =
+        Counter.builder("gateway.fair.queue.rejected")
+            .tag("reason", "full")
+            .description("Requests rejected by the fair queue")
+            .register(meterRegistry);
+    this.expiredCounter =
+        Counter.builder("gateway.fair.queue.rejected")
+            .tag("reason", "expired")
+            .description("Requests rejected by the fair queue")
+            .register(meterRegistry);
+    this.delayTimer =
+        Timer.builder("gateway.fair.queue.delay")
+            .description("Time which requests waited for their turn in the fair queue")
+            .register(meterRegistry);
+    Gauge.builder("gateway.fair.queue.queued", this, queue -> queue.queued)
+        .description("Requests which are waiting in the fair queue")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Waits for the turn of a request of an user. Each admitted request must be released once.
+   *
+   * @param userId an user identifier
+   * @return true when the request is admitted, false when there is no room to wait or its turn did
+   *     not come within the maximum delay
+   */
+  public Mono<Boolean> acquire(String userId) {
+    if (!this.enabled) {
+      return Mono.just(true);
+    }
+    return Mono.create(sink -> enqueue(userId, sink));
+  }
+
+  private void enqueue(String userId, MonoSink<Boolean> sink) {
+    Waiter waiter;
+    this.lock.lock();
+    try {
+      if (this.inFlight < this.maxInFlight && this.queued == 0) {
+        this.inFlight++;
+        waiter = null;
+      } else {
+        UserQueue queue = this.queues.get(userId);
+        if (this.queued >= this.maxQueued
+            || (queue != null && queue.waiters.size() >= this.maxQueuedPerUser)) {
+          this.fullCounter.increment();
+          sink.success(false);
+          return;
+        }
+        if (queue == null) {
+          queue = new UserQueue(userId);
+          this.queues.put(userId, queue);
+          this.turns.addLast(queue);
+        }
+        waiter = new Waiter(queue, sink, System.nanoTime());
+        queue.waiters.addLast(waiter);
+        this.queued++;
+      }
+    } finally {
+      this.lock.unlock();
+    }
+    if (waiter == null) {
+      sink.success(true);
+      return;
+    }
+    Waiter queuedWaiter = waiter;
+    sink.onCancel(() -> cancel(queuedWaiter));
+    waiter.expiration =
+        Schedulers.parallel()
+            .schedule(() -> expire(queuedWaiter), this.maxDelay.toNanos(), TimeUnit.NANOSECONDS);
+    if (waiter.state != State.WAITING) {
+      // it left the queue before its expiration was scheduled
+      waiter.expiration.dispose();
+    }
+  }
+
+  /** Releases an admitted request, and admits the next waiting request, if any. */
+  public void release() {
+    if (!this.enabled) {
+      return;
+    }
+    Waiter next;
+    this.lock.lock();
+    try {
+      next = pollNext();
+      if (next == null) {
+        this.inFlight--;
+      } else {
+        next.state = State.GRANTED;
+      }
+    } finally {
+      this.lock.unlock();
+    }
+    if (next != null) {
+      grant(next);
+    }
+  }
+
+  private void grant(Waiter waiter) {
+    waiter.disposeExpiration();
+    this.delayTimer.record(System.nanoTime() - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+    waiter.sink.success(true);
+  }
+
+  /** Takes the first request of the user whose turn it is, under the lock. */
+  private Waiter pollNext() {
+    UserQueue queue = this.turns.peekFirst();
+    if (queue == null) {
+      return null;
+    }
+    if (queue.deficit == 0) {
+      queue.deficit = this.quantum;
+    }
+    Waiter waiter = queue.waiters.pollFirst();
+    queue.deficit--;
+    this.queued--;
+    if (queue.waiters.isEmpty()) {
+      this.turns.pollFirst();
+      this.queues.remove(queue.userId);
+    } else if (queue.deficit == 0) {
+      this.turns.addLast(this.turns.pollFirst());
+    }
+    return waiter;
+  }
+
+  private void expire(Waiter waiter) {
+    if (remove(waiter, State.EXPIRED)) {
+      this.expiredCounter.increment();
+      waiter.sink.success(false);
+    }
+  }
+
+  private void cancel(Waiter waiter) {
+    if (remove(waiter, State.CANCELLED)) {
+      waiter.disposeExpiration();
+    } else if (waiter.state == State.GRANTED) {
+      // the turn came while the request was cancelled, so it is passed on
+      release();
+    }
+  }
+
+  private boolean remove(Waiter waiter, State state) {
+    this.lock.lock();
+    try {
+      if (waiter.state != State.WAITING) {
+        return false;
+      }
+      waiter.state = state;
+      UserQueue queue = waiter.queue;
+      queue.waiters.remove(waiter);
+      this.queued--;
+      if (queue.waiters.isEmpty()) {
+        this.turns.remove(queue);
+        this.queues.remove(queue.userId);
+      }
+      return true;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * @return requests which are waiting their turn
+   */
+  public int queued() {
+    return this.queued;
+  }
+
+  private enum State {
+    WAITING,
+    GRANTED,
+    EXPIRED,
+    CANCELLED
+  }
+
+  /** Requests of an user which are waiting, only used under the lock. */
+  private static final class UserQueue {
+    private final String userId;
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+    /** Requests which the user can still forward in its current turn. */
+    private int deficit;
+
+    private UserQueue(String userId) {
+      this.userId = userId;
+    }
+  }
+
+  private static final class Waiter {
+    private final UserQueue queue;
+    private final MonoSink<Boolean> sink;
+    private final long enqueuedAt;
+
+    /** Changed under the lock, read outside it only after the waiter left the queue. */
+    private volatile State state = State.WAITING;
+
+    private volatile Disposable expiration;
+
+    private Waiter(UserQueue queue, MonoSink<Boolean> sink, long enqueuedAt) {
+      this.queue = queue;
+      this.sink = sink;
+      this.enqueuedAt = enqueuedAt;
+    }
+
+    private void disposeExpiration() {
+      Disposable current = this.expiration;
+      if (current != null) {
+        current.dispose();
+      }
+    }
+  }
+}
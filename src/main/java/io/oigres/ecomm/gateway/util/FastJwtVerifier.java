@@ -0,0 +1,335 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Arrays;
+import javax.crypto.Mac;
+
+/**
+ * Allocation-light verifier for the HS256, RS256 and ES256 tokens which are created by this
+ * gateway. It decodes and checks the token over per-thread byte buffers, and reads only the claims
+ * the gateway needs (sub, exp and scope) with a streaming parser. The key is looked up by the "kid"
+ * header in the key ring.
+ *
+ * <p>Mac and Signature instances are expensive to create and to initialize, mainly for asymmetric
+ * keys, so each thread keeps its own instances and initializes them again only when the key
+ * changes. Tokens are validated on the reactor-netty event loops, so there are as many instances
+ * as event loops (see LoopResources.DEFAULT_IO_WORKER_COUNT).
+ *
+ * <p>Any token which is not a plain JWS (other algorithms, extra header parameters, "nbf" claim,
+ * unexpected claim types, etc.) is not handled here, and it must be validated by jjwt.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+class FastJwtVerifier {
+  static final int MAX_TOKEN_LENGTH = 4096;
+
+  private static final int MAC_LENGTH = 32;
+  private static final JwtAlgorithm[] ALGORITHMS = JwtAlgorithm.values();
+  private static final int[] BASE64URL = new int[128];
+
+  static {
+    Arrays.fill(BASE64URL, -1);
+    String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+    for (int i = 0; i < alphabet.length(); i++) {
+      BASE64URL[alphabet.charAt(i)] = i;
+    }
+  }
+
+  /** Instances and buffers which are reused by each thread, so verifying does not allocate them. */
+  private static class Context {
+    private final Mac mac;
+    private final Signature[] signatures = new Signature[ALGORITHMS.length];
+    private final Key[] keys = new Key[ALGORITHMS.length];
+    private JwtAlgorithm algorithm;
+    private final byte[] signingInput = new byte[MAX_TOKEN_LENGTH];
+    private final byte[] decoded = new byte[MAX_TOKEN_LENGTH];
+    private final byte[] signature = new byte[MAX_TOKEN_LENGTH];
+    private final byte[] expected = new byte[MAC_LENGTH];
+
+    private Context() {
+      try {
+        this.mac = Mac.getInstance(JwtAlgorithm.HS256.getJcaName());
+        for (JwtAlgorithm algorithm : ALGORITHMS) {
+          if (algorithm.isAsymmetric()) {
+            this.signatures[algorithm.ordinal()] = Signature.getInstance(algorithm.getJcaName());
+          }
+        }
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    /** Checks the signature, initializing the mac or signature only when the key changes. */
+    private boolean verify(JwtAlgorithm algorithm, Key key, int inputLength, int signatureLength)
+        throws GeneralSecurityException {
+      int index = algorithm.ordinal();
+      if (!algorithm.isAsymmetric()) {
+        if (this.keys[index] != key) {
+          this.mac.init(key);
+          this.keys[index] = key;
+        }
+        this.mac.update(this.signingInput, 0, inputLength);
+        this.mac.doFinal(this.expected, 0);
+        return constantTimeEquals(this.expected, this.signature, MAC_LENGTH);
+      }
+      Signature verifier = this.signatures[index];
+      if (this.keys[index] != key) {
+        verifier.initVerify((PublicKey) key);
+        this.keys[index] = key;
+      }
+      verifier.update(this.signingInput, 0, inputLength);
+      return verifier.verify(this.signature, 0, signatureLength);
+    }
+  }
+
+  private final JsonFactory jsonFactory;
+  private final JwtKeyRing keyRing;
+  private final String scope;
+  private final ThreadLocal<Context> contexts;
+
+  FastJwtVerifier(JwtKeyRing keyRing, String scope) {
+    this.jsonFactory = new JsonFactory();
+    this.keyRing = keyRing;
+    this.scope = scope;
+    this.contexts = ThreadLocal.withInitial(Context::new);
+  }
+
+  /**
+   * Validates a JWT token without building a claims map.
+   *
+   * @param token a JWT token
+   * @return the validation result, or null if the token must be validated by jjwt.
+   */
+  TokenValidationResult verify(String token) {
+    int length = token.length();
+    if (length > MAX_TOKEN_LENGTH) {
+      return null;
+    }
+    int firstDot = token.indexOf('.');
+    int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+    if (secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+      return null;
+    }
+    Context context = this.contexts.get();
+    try {
+      int headerLength = decode(token, 0, firstDot, context.decoded);
+      String keyId = headerLength < 0 ? null : readHeader(context, headerLength);
+      if (keyId == null) {
+        return null;
+      }
+      Key key = this.keyRing.find(keyId);
+      if (key == null) {
+        return TokenValidationResult.invalid(TokenValidationResult.Reason.UNKNOWN_KEY);
+      }
+      JwtAlgorithm algorithm = context.algorithm;
+      if (!algorithm.accepts(key)) {
+        // jjwt reports the tokens whose algorithm does not match the key
+        return null;
+      }
+      int signatureLength = decode(token, secondDot + 1, length, context.signature);
+      int payloadLength = decode(token, firstDot + 1, secondDot, context.decoded);
+      if (signatureLength < 0
+          || payloadLength < 0
+          || !algorithm.isAsymmetric() && signatureLength != MAC_LENGTH) {
+        return null;
+      }
+      for (int i = 0; i < secondDot; i++) {
+        context.signingInput[i] = (byte) token.charAt(i);
+      }
+      if (!context.verify(algorithm, key, secondDot, signatureLength)) {
+        return TokenValidationResult.invalid(TokenValidationResult.Reason.INVALID_SIGNATURE);
+      }
+      return readClaims(context.decoded, payloadLength, keyId);
+    } catch (IOException | GeneralSecurityException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads the header of a plain JWS, which only may have "alg", "typ" and "kid" parameters. The
+   * algorithm is left in the context.
+   *
+   * @return the "kid" header, an empty string if the token has not it, or null if it is not a
+   *     plain JWS of a supported algorithm.
+   */
+  private String readHeader(Context context, int length) throws IOException {
+    try (JsonParser parser = this.jsonFactory.createParser(context.decoded, 0, length)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return null;
+      }
+      context.algorithm = null;
+      String keyId = JwtKeySet.DEFAULT_KEY_ID;
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+        String name = parser.currentName();
+        JsonToken value = parser.nextToken();
+        if (value != JsonToken.VALUE_STRING) {
+          return null;
+        }
+        switch (name) {
+          case "alg" -> context.algorithm = algorithm(parser);
+          case "kid" -> keyId = parser.getText();
+          case "typ" -> {}
+          default -> {
+            return null;
+          }
+        }
+      }
+      boolean plain =
+          token == JsonToken.END_OBJECT && context.algorithm != null && parser.nextToken() == null;
+      return plain ? keyId : null;
+    }
+  }
+
+  private static JwtAlgorithm algorithm(JsonParser parser) throws IOException {
+    for (JwtAlgorithm algorithm : ALGORITHMS) {
+      if (textEquals(parser, algorithm.name())) {
+        return algorithm;
+      }
+    }
+    return null;
+  }
+
+  private TokenValidationResult readClaims(byte[] json, int length, String keyId)
+      throws IOException {
+    String subject = null;
+    String tokenId = null;
+    long expiration = -1;
+    boolean scopeMatches = false;
+    try (JsonParser parser = this.jsonFactory.createParser(json, 0, length)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return null;
+      }
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+        String name = parser.currentName();
+        JsonToken value = parser.nextToken();
+        switch (name) {
+          case "sub" -> {
+            if (value != JsonToken.VALUE_STRING) {
+              return null;
+            }
+            subject = parser.getText();
+          }
+          case "jti" -> {
+            if (value != JsonToken.VALUE_STRING) {
+              return null;
+            }
+            tokenId = parser.getText();
+          }
+          case "exp" -> {
+            if (value != JsonToken.VALUE_NUMBER_INT
+                || parser.getNumberType() != JsonParser.NumberType.INT
+                    && parser.getNumberType() != JsonParser.NumberType.LONG) {
+              return null;
+            }
+            expiration = parser.getLongValue();
+          }
+          case "scope" ->
+              scopeMatches = value == JsonToken.VALUE_STRING && textEquals(parser, scope);
+          case "nbf" -> {
+            return null;
+          }
+          default -> parser.skipChildren();
+        }
+      }
+      if (token != JsonToken.END_OBJECT || parser.nextToken() != null) {
+        return null;
+      }
+    }
+    if (subject == null || expiration < 0 || expiration > Long.MAX_VALUE / 1000) {
+      return null;
+    }
+    long expiresAt = expiration * 1000;
+    if (expiresAt < System.currentTimeMillis()) {
+      return TokenValidationResult.invalid(TokenValidationResult.Reason.EXPIRED);
+    }
+    if (!scopeMatches) {
+      return TokenValidationResult.invalid(TokenValidationResult.Reason.INVALID_SCOPE);
+    }
+    return TokenValidationResult.valid(
+        JwtPrincipal.builder()
+            .subject(subject)
+            .scope(this.scope)
+            .expiresAt(expiresAt)
+            .keyId(keyId.isEmpty() ? null : keyId)
+            .tokenId(tokenId)
+            .build());
+  }
+
+  private static boolean textEquals(JsonParser parser, String expected) throws IOException {
+    int length = parser.getTextLength();
+    if (length != expected.length()) {
+      return false;
+    }
+    char[] text = parser.getTextCharacters();
+    int offset = parser.getTextOffset();
+    for (int i = 0; i < length; i++) {
+      if (text[offset + i] != expected.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean constantTimeEquals(byte[] a, byte[] b, int length) {
+    int result = 0;
+    for (int i = 0; i < length; i++) {
+      result |= a[i] ^ b[i];
+    }
+    return result == 0;
+  }
+
+  /**
+   * Decodes an unpadded base64url section of a string into the given buffer.
+   *
+   * @return the number of decoded bytes, or -1 if the section is not valid base64url.
+   */
+  static int decode(String source, int from, int to, byte[] target) {
+    int length = to - from;
+    if (length <= 0 || length % 4 == 1) {
+      return -1;
+    }
+    int buffer = 0;
+    int bits = 0;
+    int count = 0;
+    for (int i = from; i < to; i++) {
+      char c = source.charAt(i);
+      int value = c < 128 ? BASE64URL[c] : -1;
+      if (value < 0) {
+        return -1;
+      }
+      buffer = (buffer << 6) | value;
+      bits += 6;
+      if (bits >= 8) {
+        bits -= 8;
+        target[count++] = (byte) (buffer >> bits);
+      }
+    }
+    return count;
+  }
+}
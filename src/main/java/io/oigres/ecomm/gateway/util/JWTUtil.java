@@ -18,16 +18,24 @@
 package io.oigres.ecomm.gateway.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.MalformedJwtException;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.security.SecurityException;
+import io.oigres.ecomm.gateway.config.AuthenticationProperties;
 import io.oigres.ecomm.service.users.api.model.ValidateUserResponse;
+import java.security.Key;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Date;
-import javax.crypto.SecretKey;
-import org.springframework.beans.factory.annotation.Value;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -38,14 +46,65 @@ import org.springframework.stereotype.Component;
 @Component
 public class JWTUtil {
 
-  private final SecretKey secret;
+  private static final String SCOPE_CLAIM = "scope";
+
+  /** Thrown when a token was signed with a key which is not in the key set. */
+  private static class UnknownKeyException extends JwtException {
+    private UnknownKeyException(String keyId) {
+      super("JWT key '" + keyId + "' is unknown");
+    }
+  }
+
+  private final JwtKeyRing keyRing;
   private final String scope;
+  private final JwtParser parser;
+  private final FastJwtVerifier fastJwtVerifier;
 
-  public JWTUtil(
-      @Value("${ecomm.service.authentication.jwt.secret}") String secretString,
-      @Value("${ecomm.service.authentication.scope}") String scope) {
-    this.secret = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretString));
-    this.scope = scope;
+  public JWTUtil(String secretString, String scope) {
+    this(secretString, scope, false);
+  }
+
+  public JWTUtil(String secretString, String scope, boolean fastPath) {
+    this(properties(secretString, scope, fastPath));
+  }
+
+  private JWTUtil(AuthenticationProperties authenticationProperties) {
+    this(new JwtKeyRing(authenticationProperties), authenticationProperties);
+  }
+
+  @Autowired
+  public JWTUtil(JwtKeyRing keyRing, AuthenticationProperties authenticationProperties) {
+    this.keyRing = keyRing;
+    this.scope = authenticationProperties.getScope();
+    this.parser =
+        Jwts.parser()
+            .keyLocator(
+                new LocatorAdapter<>() {
+                  @Override
+                  protected Key locate(JwsHeader header) {
+                    Key key = keyRing.find(header.getKeyId());
+                    if (key == null) {
+                      throw new UnknownKeyException(header.getKeyId());
+                    }
+                    return key;
+                  }
+                })
+            .build();
+    this.fastJwtVerifier =
+        authenticationProperties.getJwt().isFastPath()
+            ? new FastJwtVerifier(keyRing, this.scope)
+            : null;
+  }
+
+  private static AuthenticationProperties properties(
+      String secretString, String scope, boolean fastPath) {
+    AuthenticationProperties.Jwt jwt = new AuthenticationProperties.Jwt();
+    jwt.setSecret(secretString);
+    jwt.setFastPath(fastPath);
+    AuthenticationProperties authenticationProperties = new AuthenticationProperties();
+    authenticationProperties.setScope(scope);
+    authenticationProperties.setJwt(jwt);
+    return authenticationProperties;
   }
 
   /**
@@ -55,49 +114,101 @@ public class JWTUtil {
    * @return a Claims object
    */
   public Claims getAllClaims(String token) {
-    return (Claims) Jwts.parser().verifyWith(secret).build().parse(token).getPayload();
+    return this.parser.parseSignedClaims(token).getPayload();
   }
 
   /**
-   * Checks if a token has expired or not.
+   * Validates a JWT token in a single pass. It checks the format, the sign, the expiration and the
+   * scope of the token. When the fast path is enabled, plain HS256, RS256 and ES256 tokens are
+   * validated without building a claims map, and any other token falls back to jjwt.
    *
-   * @param token a valid JWT token as string
-   * @return true if the token have not expired, false otherwise.
+   * @param token a JWT token
+   * @return the authenticated principal if the token is valid, the rejection reason otherwise.
    */
-  private boolean isTokenExpired(String token) {
-    return this.getAllClaims(token).getExpiration().before(new Date());
+  public TokenValidationResult validate(String token) {
+    if (this.fastJwtVerifier != null) {
+      TokenValidationResult result = this.fastJwtVerifier.verify(token);
+      if (result != null) {
+        return result;
+      }
+    }
+    Jws<Claims> jws;
+    try {
+      jws = this.parser.parseSignedClaims(token);
+    } catch (UnknownKeyException e) {
+      return TokenValidationResult.invalid(TokenValidationResult.Reason.UNKNOWN_KEY);
+    } catch (ExpiredJwtException e) {
+      return TokenValidationResult.invalid(TokenValidationResult.Reason.EXPIRED);
+    } catch (SecurityException e) {
+      return TokenValidationResult.invalid(TokenValidationResult.Reason.INVALID_SIGNATURE);
+    } catch (UnsupportedJwtException e) {
+      return TokenValidationResult.invalid(TokenValidationResult.Reason.UNSUPPORTED);
+    } catch (JwtException | IllegalArgumentException e) {
+      return TokenValidationResult.invalid(TokenValidationResult.Reason.MALFORMED);
+    }
+    Claims claims = jws.getPayload();
+    Date expiration = claims.getExpiration();
+    if (expiration == null || claims.getSubject() == null) {
+      return TokenValidationResult.invalid(TokenValidationResult.Reason.MALFORMED);
+    }
+    Object tokenScope = claims.get(SCOPE_CLAIM);
+    if (!this.scope.equals(tokenScope)) {
+      return TokenValidationResult.invalid(TokenValidationResult.Reason.INVALID_SCOPE);
+    }
+    return TokenValidationResult.valid(
+        JwtPrincipal.builder()
+            .subject(claims.getSubject())
+            .scope(this.scope)
+            .expiresAt(expiration.getTime())
+            .keyId(jws.getHeader().getKeyId())
+            .tokenId(claims.getId())
+            .build());
   }
 
   /**
-   * Checks if a JWT token is well formatted, has a good sign and is not expired.
+   * Checks if a JWT token is well formatted, has a good sign, is not expired and belongs to this
+   * gateway's scope.
    *
    * @param token a JWT token
    * @return true if the token has any error, false otherwise.
    */
   public boolean isInvalid(String token) {
-    try {
-      return this.isTokenExpired(token);
-    } catch (MalformedJwtException e) {
-      return true;
-    }
+    return !this.validate(token).isValid();
+  }
+
+  /**
+   * Checks if the key which signed a token is still accepted. Tokens signed with a key whose grace
+   * period is over must be rejected, even if they were verified before.
+   *
+   * @param principal principal of a verified token
+   * @return true if the key of the token is still in the key set.
+   */
+  public boolean isKeyActive(JwtPrincipal principal) {
+    return this.keyRing.isActive(principal.getKeyId());
   }
 
   /**
-   * Creates a JWT token from the ValidateUserResponse object.
+   * Creates a JWT token from the ValidateUserResponse object. It is signed with the current key of
+   * the key set.
    *
    * @param validateUserResponse a response from auth service.
    * @return a valid JWT token
    */
   public String createToken(ValidateUserResponse validateUserResponse) {
     LocalDate exp = LocalDate.now().plusMonths(3);
-    return Jwts.builder()
-        .issuer("Ecomm")
-        .subject(Long.toString(validateUserResponse.getUserId()))
-        .claim("name", "user's first name")
-        .claim("scope", this.scope)
-        .issuedAt(new Date())
-        .expiration(Date.from(exp.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant()))
-        .signWith(this.secret)
-        .compact();
+    JwtKeySet keySet = this.keyRing.current();
+    JwtBuilder builder =
+        Jwts.builder()
+            .header()
+            .keyId(keySet.getCurrentKeyId())
+            .and()
+            .id(UUID.randomUUID().toString())
+            .issuer("Ecomm")
+            .subject(Long.toString(validateUserResponse.getUserId()))
+            .claim("name", "user's first name")
+            .claim(SCOPE_CLAIM, this.scope)
+            .issuedAt(new Date())
+            .expiration(Date.from(exp.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant()));
+    return keySet.getCurrentAlgorithm().signWith(builder, keySet.getCurrentKey()).compact();
   }
 }
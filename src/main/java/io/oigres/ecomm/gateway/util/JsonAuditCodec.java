@@ -0,0 +1,81 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.kafka.support.mapping.DefaultJackson2JavaTypeMapper;
+import org.springframework.kafka.support.mapping.Jackson2JavaTypeMapper;
+
+/**
+ * Encodes the audits as JSON, with the same object mapper as the kafka JsonSerializer, which is how
+ * they have always been sent.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+public class JsonAuditCodec implements AuditCodec {
+  public static final String NAME = "json";
+
+  private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper();
+  private final Jackson2JavaTypeMapper typeMapper = new DefaultJackson2JavaTypeMapper();
+  private final Class<?> type;
+
+  /**
+   * @param type class of the audits which are decoded
+   */
+  public JsonAuditCodec(Class<?> type) {
+    this.type = type;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte[] encode(Object audit) {
+    try {
+      return this.objectMapper.writeValueAsBytes(audit);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Adds the type headers of the kafka JsonSerializer too, so the consumers which rely on them can
+   * still read the audits.
+   */
+  @Override
+  public byte[] encode(Headers headers, Object audit) {
+    this.typeMapper.fromJavaType(this.objectMapper.constructType(audit.getClass()), headers);
+    return encode(audit);
+  }
+
+  @Override
+  public Object decode(byte[] data) {
+    try {
+      return this.objectMapper.readValue(data, this.type);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
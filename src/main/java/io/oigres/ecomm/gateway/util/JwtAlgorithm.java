@@ -0,0 +1,105 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.Jwts;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import javax.crypto.SecretKey;
+
+/**
+ * Algorithms which are supported to sign JWT tokens.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+public enum JwtAlgorithm {
+  HS256("HmacSHA256", null, SecretKey.class) {
+    @Override
+    JwtBuilder signWith(JwtBuilder builder, Key key) {
+      return builder.signWith((SecretKey) key, Jwts.SIG.HS256);
+    }
+  },
+  RS256("SHA256withRSA", "RSA", RSAPublicKey.class) {
+    @Override
+    JwtBuilder signWith(JwtBuilder builder, Key key) {
+      return builder.signWith((PrivateKey) key, Jwts.SIG.RS256);
+    }
+  },
+  /** JWS signatures are the concatenation of R and S, which is the P1363 format. */
+  ES256("SHA256withECDSAinP1363Format", "EC", ECPublicKey.class) {
+    @Override
+    JwtBuilder signWith(JwtBuilder builder, Key key) {
+      return builder.signWith((PrivateKey) key, Jwts.SIG.ES256);
+    }
+  };
+
+  private final String jcaName;
+  private final String keyFactoryAlgorithm;
+  private final Class<? extends Key> verificationKeyType;
+
+  JwtAlgorithm(
+      String jcaName, String keyFactoryAlgorithm, Class<? extends Key> verificationKeyType) {
+    this.jcaName = jcaName;
+    this.keyFactoryAlgorithm = keyFactoryAlgorithm;
+    this.verificationKeyType = verificationKeyType;
+  }
+
+  /**
+   * @return name of the Mac or Signature algorithm in the JCA
+   */
+  String getJcaName() {
+    return this.jcaName;
+  }
+
+  /**
+   * @return name of the KeyFactory algorithm, or null for symmetric algorithms
+   */
+  String getKeyFactoryAlgorithm() {
+    return this.keyFactoryAlgorithm;
+  }
+
+  /**
+   * @return true if the algorithm signs with a private key and verifies with a public key
+   */
+  public boolean isAsymmetric() {
+    return this.keyFactoryAlgorithm != null;
+  }
+
+  /**
+   * Checks if a key can verify tokens of this algorithm, so a token can not pick a different
+   * algorithm than the one of its key.
+   *
+   * @param key a verification key
+   * @return true if the key belongs to this algorithm
+   */
+  boolean accepts(Key key) {
+    return this.verificationKeyType.isInstance(key);
+  }
+
+  /**
+   * Signs a token which is being built.
+   *
+   * @param builder a JWT builder
+   * @param key the signing key, a secret key or a private key
+   * @return the same builder
+   */
+  abstract JwtBuilder signWith(JwtBuilder builder, Key key);
+}
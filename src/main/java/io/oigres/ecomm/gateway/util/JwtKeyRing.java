@@ -0,0 +1,103 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.oigres.ecomm.gateway.config.AuthenticationProperties;
+import java.security.Key;
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the current {@link JwtKeySet}. The key set is rebuilt from the configuration when it is
+ * refreshed, and it is swapped atomically, so tokens are never validated against a half-loaded key
+ * set and no restart is needed to rotate keys.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+@Slf4j
+public class JwtKeyRing {
+
+  private final AuthenticationProperties authenticationProperties;
+  private final Clock clock;
+  private final AtomicReference<JwtKeySet> keySet;
+
+  @Autowired
+  public JwtKeyRing(AuthenticationProperties authenticationProperties) {
+    this(authenticationProperties, Clock.systemUTC());
+  }
+
+  JwtKeyRing(AuthenticationProperties authenticationProperties, Clock clock) {
+    this.authenticationProperties = authenticationProperties;
+    this.clock = clock;
+    this.keySet =
+        new AtomicReference<>(
+            JwtKeySet.from(authenticationProperties.getJwt(), null, clock.millis()));
+  }
+
+  /**
+   * @return the key set which is in use now
+   */
+  public JwtKeySet current() {
+    return this.keySet.get();
+  }
+
+  /**
+   * Finds the key which verifies the tokens signed with the given id.
+   *
+   * @param keyId the "kid" header of the token, or null if the token has not it
+   * @return the key, or null if the id is unknown or its grace period is over
+   */
+  public Key find(String keyId) {
+    return this.keySet.get().find(keyId, this.clock.millis());
+  }
+
+  /**
+   * @param keyId the "kid" header of a token, or null if the token has not it
+   * @return true if tokens signed with this id are still accepted
+   */
+  public boolean isActive(String keyId) {
+    return this.keySet.get().isActive(keyId, this.clock.millis());
+  }
+
+  /**
+   * Rebuilds the key set from the configuration. If the new configuration is wrong, the key set in
+   * use is kept.
+   */
+  @EventListener(RefreshScopeRefreshedEvent.class)
+  public void reload() {
+    JwtKeySet previous = this.keySet.get();
+    JwtKeySet next;
+    try {
+      next = JwtKeySet.from(this.authenticationProperties.getJwt(), previous, this.clock.millis());
+    } catch (IllegalArgumentException e) {
+      log.error("JWT keys were not reloaded: {}", e.getMessage());
+      return;
+    }
+    this.keySet.set(next);
+    log.info(
+        "JWT keys were reloaded, {} keys are accepted and new tokens are signed with '{}' key",
+        next.size(),
+        next.getCurrentKeyId());
+  }
+}
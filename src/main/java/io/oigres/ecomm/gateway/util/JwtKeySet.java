@@ -0,0 +1,206 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.oigres.ecomm.gateway.config.AuthenticationProperties;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.crypto.SecretKey;
+import org.springframework.util.StringUtils;
+
+/**
+ * Immutable snapshot of the keys which are used to sign and verify JWT tokens, indexed by the
+ * "kid" header. Keys are either HS256 secrets or RS256/ES256 key pairs, and tokens without "kid"
+ * are verified with the legacy secret. Keys which were removed
+ * from the configuration are kept until their grace period ends, so tokens signed with them are
+ * still accepted after a rotation.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+public final class JwtKeySet {
+  /** Index of the legacy secret, which verifies the tokens without "kid" header. */
+  static final String DEFAULT_KEY_ID = "";
+
+  private static final int ES256_KEY_SIZE = 256;
+
+  private record Entry(JwtAlgorithm algorithm, Key key, Key signingKey, long notAfter) {
+    private boolean isActive(long now) {
+      return this.notAfter >= now;
+    }
+  }
+
+  private final Map<String, Entry> keys;
+  private final String currentKeyId;
+  private final Entry current;
+
+  private JwtKeySet(Map<String, Entry> keys, String currentKeyId) {
+    this.keys = Collections.unmodifiableMap(keys);
+    this.currentKeyId = currentKeyId;
+    this.current = keys.get(currentKeyId);
+  }
+
+  /**
+   * Builds a key set from the configuration. Keys of the previous set which are not configured
+   * anymore are retired, and they stay valid until the grace period ends.
+   *
+   * @param jwt jwt configuration
+   * @param previous key set which is being replaced, or null
+   * @param now current time in milliseconds
+   * @return a new key set
+   * @throws IllegalArgumentException if a key is wrong, or there is no key to sign tokens with
+   */
+  static JwtKeySet from(AuthenticationProperties.Jwt jwt, JwtKeySet previous, long now) {
+    Map<String, Entry> keys = new HashMap<>();
+    if (StringUtils.hasText(jwt.getSecret())) {
+      keys.put(DEFAULT_KEY_ID, secretEntry(jwt.getSecret()));
+    }
+    for (AuthenticationProperties.Jwt.Key key : jwt.getKeys()) {
+      if (!StringUtils.hasText(key.getId())) {
+        throw new IllegalArgumentException("JWT keys must have an id");
+      }
+      if (keys.put(key.getId(), entry(key)) != null) {
+        throw new IllegalArgumentException("JWT key '" + key.getId() + "' is duplicated");
+      }
+    }
+    String currentKeyId =
+        StringUtils.hasText(jwt.getCurrentKeyId()) ? jwt.getCurrentKeyId() : DEFAULT_KEY_ID;
+    if (!keys.containsKey(currentKeyId)) {
+      throw new IllegalArgumentException(
+          "There is no JWT key to sign tokens with '" + currentKeyId + "' id");
+    }
+    if (keys.get(currentKeyId).signingKey() == null) {
+      throw new IllegalArgumentException(
+          "JWT key '" + currentKeyId + "' has not a private key to sign tokens with");
+    }
+    if (previous != null) {
+      Duration gracePeriod = jwt.getGracePeriod();
+      long retiredUntil = gracePeriod == null ? now : now + gracePeriod.toMillis();
+      previous.keys.forEach(
+          (id, entry) -> {
+            long notAfter = Math.min(entry.notAfter(), retiredUntil);
+            if (!keys.containsKey(id) && notAfter >= now) {
+              keys.put(id, new Entry(entry.algorithm(), entry.key(), entry.signingKey(), notAfter));
+            }
+          });
+    }
+    return new JwtKeySet(keys, currentKeyId);
+  }
+
+  private static Entry secretEntry(String secret) {
+    SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+    return new Entry(JwtAlgorithm.HS256, key, key, Long.MAX_VALUE);
+  }
+
+  private static Entry entry(AuthenticationProperties.Jwt.Key key) {
+    JwtAlgorithm algorithm = key.getAlgorithm();
+    if (!algorithm.isAsymmetric()) {
+      if (!StringUtils.hasText(key.getSecret())) {
+        throw new IllegalArgumentException("JWT key '" + key.getId() + "' has not a secret");
+      }
+      return secretEntry(key.getSecret());
+    }
+    if (!StringUtils.hasText(key.getPublicKey())) {
+      throw new IllegalArgumentException("JWT key '" + key.getId() + "' has not a public key");
+    }
+    try {
+      KeyFactory keyFactory = KeyFactory.getInstance(algorithm.getKeyFactoryAlgorithm());
+      PublicKey publicKey =
+          keyFactory.generatePublic(new X509EncodedKeySpec(decodePem(key.getPublicKey())));
+      if (publicKey instanceof ECPublicKey ecKey
+          && ecKey.getParams().getOrder().bitLength() != ES256_KEY_SIZE) {
+        throw new IllegalArgumentException("ES256 keys must be P-256 keys");
+      }
+      PrivateKey privateKey =
+          StringUtils.hasText(key.getPrivateKey())
+              ? keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decodePem(key.getPrivateKey())))
+              : null;
+      return new Entry(algorithm, publicKey, privateKey, Long.MAX_VALUE);
+    } catch (GeneralSecurityException | IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          "JWT key '" + key.getId() + "' is not a valid " + algorithm + " key", e);
+    }
+  }
+
+  /** Decodes a key which is either PEM or plain base64. */
+  private static byte[] decodePem(String value) {
+    String base64 = value.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s", "");
+    return Base64.getDecoder().decode(base64);
+  }
+
+  /**
+   * Finds the key which verifies the tokens signed with the given id.
+   *
+   * @param keyId the "kid" header of the token, or null if the token has not it
+   * @param now current time in milliseconds
+   * @return the key, or null if the id is unknown or its grace period is over
+   */
+  public Key find(String keyId, long now) {
+    Entry entry = this.keys.get(keyId == null ? DEFAULT_KEY_ID : keyId);
+    return entry != null && entry.isActive(now) ? entry.key() : null;
+  }
+
+  /**
+   * @param keyId the "kid" header of a token, or null if the token has not it
+   * @param now current time in milliseconds
+   * @return true if tokens signed with this id are still accepted
+   */
+  public boolean isActive(String keyId, long now) {
+    return find(keyId, now) != null;
+  }
+
+  /**
+   * @return the id which is set in the header of new tokens, or null for the legacy secret
+   */
+  public String getCurrentKeyId() {
+    return DEFAULT_KEY_ID.equals(this.currentKeyId) ? null : this.currentKeyId;
+  }
+
+  /**
+   * @return the algorithm of the key which signs new tokens
+   */
+  public JwtAlgorithm getCurrentAlgorithm() {
+    return this.current.algorithm();
+  }
+
+  /**
+   * @return the key which signs new tokens, a secret key or a private key
+   */
+  public Key getCurrentKey() {
+    return this.current.signingKey();
+  }
+
+  /**
+   * @return number of keys which are accepted, including the retired ones
+   */
+  public int size() {
+    return this.keys.size();
+  }
+}
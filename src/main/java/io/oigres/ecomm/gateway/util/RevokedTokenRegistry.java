@@ -0,0 +1,103 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.oigres.ecomm.gateway.config.AuthenticationProperties;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory list of revoked JWT tokens, indexed by their "jti" claim. Checking a token probes a
+ * Bloom filter first, so the tokens which were not revoked, almost all of them, are accepted
+ * without locking, allocating or calling a remote service. Positives are confirmed against the
+ * exact set. Revoked tokens are forgotten once they expire.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+@Slf4j
+public class RevokedTokenRegistry {
+  private final long expectedTokens;
+  private final double falsePositiveProbability;
+  private final Map<String, Long> revokedTokens;
+  private volatile BloomFilter filter;
+
+  public RevokedTokenRegistry(
+      AuthenticationProperties authenticationProperties, MeterRegistry meterRegistry) {
+    AuthenticationProperties.Revocation properties = authenticationProperties.getRevocation();
+    this.expectedTokens = properties.getExpectedTokens();
+    this.falsePositiveProbability = properties.getFalsePositiveProbability();
+    this.revokedTokens = new ConcurrentHashMap<>();
+    this.filter = new BloomFilter(this.expectedTokens, this.falsePositiveProbability);
+    Gauge.builder("gateway.revoked.tokens", this.revokedTokens, Map::size)
+        .description("Revoked JWT tokens which are not expired yet")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Checks if a token was revoked.
+   *
+   * @param tokenId "jti" claim of the token
+   * @return true if the token was revoked
+   */
+  public boolean isRevoked(String tokenId) {
+    return this.filter.mightContain(tokenId) && this.revokedTokens.containsKey(tokenId);
+  }
+
+  /**
+   * Revokes a token until it expires.
+   *
+   * @param tokenId "jti" claim of the token
+   * @param expiresAt expiration of the token in milliseconds
+   */
+  public synchronized void revoke(String tokenId, long expiresAt) {
+    if (expiresAt <= System.currentTimeMillis()) {
+      return;
+    }
+    this.revokedTokens.merge(tokenId, expiresAt, Math::max);
+    this.filter.put(tokenId);
+  }
+
+  /**
+   * Forgets the revoked tokens which already expired, since they are rejected anyway. A Bloom
+   * filter can not remove entries, so it is rebuilt from the remaining tokens and swapped.
+   */
+  @Scheduled(
+      fixedDelayString = "${ecomm.service.authentication.revocation.purge-interval:PT10M}",
+      initialDelayString = "${ecomm.service.authentication.revocation.purge-interval:PT10M}")
+  public synchronized void purge() {
+    long now = System.currentTimeMillis();
+    int before = this.revokedTokens.size();
+    this.revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+    int after = this.revokedTokens.size();
+    if (before == after) {
+      return;
+    }
+    BloomFilter rebuilt =
+        new BloomFilter(Math.max(this.expectedTokens, 2L * after), this.falsePositiveProbability);
+    this.revokedTokens.keySet().forEach(rebuilt::put);
+    this.filter = rebuilt;
+    log.info(
+        "{} expired tokens were removed from revoked tokens, {} remain", before - after, after);
+  }
+}
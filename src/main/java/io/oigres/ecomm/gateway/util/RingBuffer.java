@@ -0,0 +1,105 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded queue which many threads can offer to and poll from without locks. Each slot has a
+ * sequence which tells whether it is free for the producer or filled for the consumer of a given
+ * position, so producers and consumers only contend on their own position counter.
+ *
+ * @param <E> type of the elements
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+public class RingBuffer<E> {
+  private final int mask;
+  private final AtomicReferenceArray<E> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * @param capacity minimum number of elements, it is rounded up to a power of two
+   */
+  public RingBuffer(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.mask = size - 1;
+    this.elements = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      this.sequences.set(i, i);
+    }
+  }
+
+  /**
+   * @param element element to add at the tail
+   * @return false if the buffer is full
+   */
+  public boolean offer(E element) {
+    while (true) {
+      long position = this.tail.get();
+      int index = (int) (position & this.mask);
+      long difference = this.sequences.get(index) - position;
+      if (difference == 0) {
+        if (this.tail.compareAndSet(position, position + 1)) {
+          this.elements.lazySet(index, element);
+          this.sequences.lazySet(index, position + 1);
+          return true;
+        }
+      } else if (difference < 0) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * @return the element at the head, or null if the buffer is empty
+   */
+  public E poll() {
+    while (true) {
+      long position = this.head.get();
+      int index = (int) (position & this.mask);
+      long difference = this.sequences.get(index) - (position + 1);
+      if (difference == 0) {
+        if (this.head.compareAndSet(position, position + 1)) {
+          E element = this.elements.get(index);
+          this.elements.lazySet(index, null);
+          this.sequences.lazySet(index, position + this.mask + 1);
+          return element;
+        }
+      } else if (difference < 0) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * @return elements in the buffer, which can be outdated as soon as it is returned
+   */
+  public int size() {
+    long size = this.tail.get() - this.head.get();
+    return (int) Math.max(0, Math.min(size, capacity()));
+  }
+
+  public int capacity() {
+    return this.mask + 1;
+  }
+}
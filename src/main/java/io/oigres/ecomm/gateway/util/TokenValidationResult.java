@@ -0,0 +1,60 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * Result of validating a JWT token. It holds the authenticated principal when the token is valid,
+ * or the reason why it was rejected otherwise.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Getter
+public class TokenValidationResult {
+
+  public enum Reason {
+    MALFORMED,
+    UNSUPPORTED,
+    INVALID_SIGNATURE,
+    UNKNOWN_KEY,
+    EXPIRED,
+    INVALID_SCOPE
+  }
+
+  private final JwtPrincipal principal;
+  private final Reason reason;
+
+  private TokenValidationResult(JwtPrincipal principal, Reason reason) {
+    this.principal = principal;
+    this.reason = reason;
+  }
+
+  public static TokenValidationResult valid(JwtPrincipal principal) {
+    return new TokenValidationResult(Objects.requireNonNull(principal), null);
+  }
+
+  public static TokenValidationResult invalid(Reason reason) {
+    return new TokenValidationResult(null, Objects.requireNonNull(reason));
+  }
+
+  public boolean isValid() {
+    return this.principal != null;
+  }
+}
@@ -0,0 +1,128 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.oigres.ecomm.gateway.config.GatewayProperties;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the requests of each user which are in flight, and rejects new ones beyond the maximum.
+ * Only users with requests in flight have an entry, which is updated atomically by the map, so
+ * users do not contend with each other and the entry is removed when its count returns to zero.
+ *
+ * <p>When an entry is removed, the peak concurrency that its user reached is recorded.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+public class UserConcurrencyLimiter {
+  private final boolean enabled;
+  private final int maxInFlight;
+  private final Map<String, InFlight> inFlight;
+  private final Counter rejectedCounter;
+  private final DistributionSummary peakSummary;
+
+  public UserConcurrencyLimiter(GatewayProperties gatewayProperties, MeterRegistry meterRegistry) {
+    GatewayProperties.ConcurrencyLimit properties = gatewayProperties.getConcurrencyLimit();
+    this.enabled = properties.isEnabled();
+    this.maxInFlight = properties.getMaxInFlight();
+    this.inFlight = new ConcurrentHashMap<>();
+    this.rejectedCounter =
+        Counter.builder("gateway.concurrency.limit.rejected")
+            .description("Requests rejected because their user had too many requests in flight")
+            .register(meterRegistry);
+    this.peakSummary =
+        DistributionSummary.builder("gateway.concurrency.limit.peak")
+            .description("Peak requests in flight of an user, until all of them completed")
+            .register(meterRegistry);
+    Gauge.builder("gateway.concurrency.limit.users", this.inFlight, Map::size)
+        .description("Users with requests in flight")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Counts a new request of an user, unless the user has already the maximum in flight. Each
+   * acquired request must be released once.
+   *
+   * @param userId an user identifier
+   * @return true if the request is admitted
+   */
+  public boolean tryAcquire(String userId) {
+    if (!this.enabled) {
+      return true;
+    }
+    boolean[] admitted = new boolean[1];
+    this.inFlight.compute(
+        userId,
+        (key, current) -> {
+          InFlight next = current == null ? new InFlight() : current;
+          if (next.count < this.maxInFlight) {
+            next.count++;
+            next.peak = Math.max(next.peak, next.count);
+            admitted[0] = true;
+          }
+          return next;
+        });
+    if (!admitted[0]) {
+      this.rejectedCounter.increment();
+    }
+    return admitted[0];
+  }
+
+  /**
+   * Counts that an admitted request of an user completed.
+   *
+   * @param userId an user identifier
+   */
+  public void release(String userId) {
+    if (!this.enabled) {
+      return;
+    }
+    this.inFlight.computeIfPresent(
+        userId,
+        (key, current) -> {
+          current.count--;
+          if (current.count > 0) {
+            return current;
+          }
+          this.peakSummary.record(current.peak);
+          return null;
+        });
+  }
+
+  /**
+   * @param userId an user identifier
+   * @return requests of the user which are in flight
+   */
+  public int inFlight(String userId) {
+    InFlight entry = this.inFlight.get(userId);
+    return entry == null ? 0 : entry.count;
+  }
+
+  /** Mutable counters of an user, which are only changed inside the atomic map operations. */
+  private static final class InFlight {
+    private volatile int count;
+    private int peak;
+  }
+}
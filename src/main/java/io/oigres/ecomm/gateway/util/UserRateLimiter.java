@@ -0,0 +1,209 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.oigres.ecomm.gateway.config.GatewayProperties;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RAtomicLongAsync;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RedissonClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Token bucket of each user, which is checked in memory on every request, so a burst of an user is
+ * cut off without waiting for the limiter service to blacklist it.
+ *
+ * <p>Buckets follow the generic cell rate algorithm: each one is a single theoretical arrival time,
+ * which is advanced with compare-and-set, so no lock is taken on the request path.
+ *
+ * <p>The instances share the usage of their users through a redis counter per user, which each one
+ * increments in a single batch every sync interval. The requests which were admitted by the other
+ * instances since the previous sync are charged to the local bucket, so the refill rate holds for
+ * the whole cluster, within one sync interval. Users which were idle since the previous sync are
+ * left out of the batch, once the usage of the other instances was charged one last time.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+@Slf4j
+public class UserRateLimiter {
+  static final String KEY_PREFIX = "gateway:rate-limit:";
+
+  private final boolean enabled;
+  private final long emissionIntervalNanos;
+  private final long burstToleranceNanos;
+  private final Duration keyTimeToLive;
+  private final Cache<String, Bucket> buckets;
+  private final RedissonClient redissonClient;
+  private final Counter rejectedCounter;
+
+  public UserRateLimiter(
+      GatewayProperties gatewayProperties,
+      RedissonClient redissonClient,
+      MeterRegistry meterRegistry) {
+    GatewayProperties.RateLimit properties = gatewayProperties.getRateLimit();
+    this.enabled = properties.isEnabled();
+    this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / properties.getRefillRate());
+    this.burstToleranceNanos = (properties.getCapacity() - 1) * this.emissionIntervalNanos;
+    // idle users are forgotten once their bucket is full again
+    Duration idle =
+        Duration.ofNanos(properties.getCapacity() * this.emissionIntervalNanos)
+            .plus(properties.getSyncInterval());
+    this.keyTimeToLive = idle.multipliedBy(2);
+    this.buckets =
+        Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumUsers())
+            .expireAfterAccess(idle)
+            .build();
+    this.redissonClient = redissonClient;
+    this.rejectedCounter =
+        Counter.builder("gateway.rate.limit.rejected")
+            .description("Requests rejected by the token bucket of their user")
+            .register(meterRegistry);
+    Gauge.builder("gateway.rate.limit.users", this.buckets, Cache::estimatedSize)
+        .description("Users whose token bucket is kept in memory")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Takes a token from the bucket of an user.
+   *
+   * @param userId an user identifier
+   * @return true if the request is admitted, false if the bucket of the user is empty
+   */
+  public boolean tryAcquire(String userId) {
+    if (!this.enabled) {
+      return true;
+    }
+    return tryAcquire(userId, System.nanoTime());
+  }
+
+  boolean tryAcquire(String userId, long now) {
+    Bucket bucket = this.buckets.get(userId, key -> new Bucket());
+    while (true) {
+      long arrivalTime = bucket.arrivalTime.get();
+      long base = Math.max(arrivalTime, now);
+      if (base - now > this.burstToleranceNanos) {
+        this.rejectedCounter.increment();
+        return false;
+      }
+      if (bucket.arrivalTime.compareAndSet(arrivalTime, base + this.emissionIntervalNanos)) {
+        bucket.admitted.incrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Adds the requests which were admitted since the previous sync to the redis counter of each
+   * user, all in one batch, and charges the requests which were admitted by other instances.
+   * Idle users are skipped.
+   */
+  @Scheduled(
+      fixedDelayString = "${ecomm.service.gateway.rate-limit.sync-interval:PT1S}",
+      initialDelayString = "${ecomm.service.gateway.rate-limit.sync-interval:PT1S}")
+  public void synchronize() {
+    if (!this.enabled) {
+      return;
+    }
+    synchronize(System.nanoTime());
+  }
+
+  void synchronize(long now) {
+    Map<String, Bucket> snapshot = this.buckets.asMap();
+    if (snapshot.isEmpty()) {
+      return;
+    }
+    RBatch batch = this.redissonClient.createBatch(BatchOptions.defaults());
+    List<Sync> syncs = new ArrayList<>(snapshot.size());
+    snapshot.forEach(
+        (userId, bucket) -> {
+          long admitted = bucket.admitted.getAndSet(0);
+          if (admitted == 0 && !bucket.pending) {
+            // the counter is learnt again when the user comes back
+            bucket.lastSeenTotal = -1;
+            return;
+          }
+          // one more sync charges what the other instances admitted meanwhile
+          bucket.pending = admitted > 0;
+          RAtomicLongAsync counter = batch.getAtomicLong(KEY_PREFIX + userId);
+          syncs.add(new Sync(bucket, admitted, counter.addAndGetAsync(admitted)));
+          counter.expireAsync(this.keyTimeToLive);
+        });
+    if (syncs.isEmpty()) {
+      return;
+    }
+    try {
+      batch.execute();
+    } catch (RuntimeException e) {
+      // keep the usage, so it is sent on next sync
+      syncs.forEach(
+          sync -> {
+            sync.bucket.admitted.addAndGet(sync.admitted);
+            sync.bucket.pending = true;
+          });
+      log.warn("Rate limit usage was not synchronized: {}", e.toString());
+      return;
+    }
+    for (Sync sync : syncs) {
+      long total = sync.total.toCompletableFuture().join();
+      long others = total - sync.bucket.lastSeenTotal - sync.admitted;
+      boolean known = sync.bucket.lastSeenTotal >= 0;
+      sync.bucket.lastSeenTotal = total;
+      // the counter was created again when others is negative
+      if (known && others > 0) {
+        long penalty = others * this.emissionIntervalNanos;
+        long limit = now + this.burstToleranceNanos + this.emissionIntervalNanos;
+        sync.bucket.arrivalTime.accumulateAndGet(
+            penalty,
+            (arrivalTime, value) ->
+                Math.max(arrivalTime, Math.min(Math.max(arrivalTime, now) + value, limit)));
+      }
+    }
+  }
+
+  private static final class Bucket {
+    /** Theoretical arrival time of next request, in System.nanoTime() terms. */
+    private final AtomicLong arrivalTime = new AtomicLong(Long.MIN_VALUE);
+
+    /** Requests admitted since the previous sync. */
+    private final AtomicLong admitted = new AtomicLong();
+
+    /** Value of the redis counter on the previous sync, only used by the sync thread. */
+    private long lastSeenTotal = -1;
+
+    /** Whether next sync has to read the counter although nothing was admitted, ditto. */
+    private boolean pending;
+  }
+
+  private record Sync(Bucket bucket, long admitted, RFuture<Long> total) {}
+}
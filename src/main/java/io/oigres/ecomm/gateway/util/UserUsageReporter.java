@@ -0,0 +1,178 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.model.UserUsage;
+import jakarta.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the requests of each user in memory, and sends one usage record per user to the limiter
+ * service at the end of every window, instead of one kafka message per request.
+ *
+ * <p>Counting is a single atomic update of the counter of the user, so no lock is taken on the
+ * request path. Users without requests in a whole window are forgotten, and no record is sent for
+ * them: their counter is retired first, so a request which still finds it counts on a new one.
+ *
+ * <p>Records are sent from a thread of their own, so a kafka send which blocks does not delay the
+ * other scheduled tasks of the gateway.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+@Slf4j
+public class UserUsageReporter {
+  private final boolean enabled;
+  private final String topic;
+  private final KafkaTemplate<String, Object> messageKafkaTemplate;
+  private final Clock clock;
+  private static final long RETIRED = -1;
+
+  private final Map<String, AtomicLong> counters;
+  private final Executor sender;
+  private final Counter recordsCounter;
+  private Instant windowStart;
+
+  @Autowired
+  public UserUsageReporter(
+      LimiterServiceProperties limiterServiceProperties,
+      KafkaTemplate<String, Object> messageKafkaTemplate,
+      MeterRegistry meterRegistry) {
+    this(
+        limiterServiceProperties,
+        messageKafkaTemplate,
+        meterRegistry,
+        Clock.systemUTC(),
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "usage-sender");
+              thread.setDaemon(true);
+              return thread;
+            }));
+  }
+
+  UserUsageReporter(
+      LimiterServiceProperties limiterServiceProperties,
+      KafkaTemplate<String, Object> messageKafkaTemplate,
+      MeterRegistry meterRegistry,
+      Clock clock,
+      Executor sender) {
+    this.enabled = limiterServiceProperties.getUsage().isEnabled();
+    this.topic = limiterServiceProperties.getTopics().getUsage().getName();
+    this.messageKafkaTemplate = messageKafkaTemplate;
+    this.clock = clock;
+    this.sender = sender;
+    this.counters = new ConcurrentHashMap<>();
+    this.windowStart = clock.instant();
+    this.recordsCounter =
+        Counter.builder("gateway.usage.records")
+            .description("Usage records sent to the limiter service")
+            .register(meterRegistry);
+    Gauge.builder("gateway.usage.users", this.counters, Map::size)
+        .description("Users whose requests are counted in the current window")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Counts a request of an user in the current window.
+   *
+   * @param userId an user identifier
+   */
+  public void record(String userId) {
+    if (!this.enabled) {
+      return;
+    }
+    while (true) {
+      AtomicLong counter = this.counters.computeIfAbsent(userId, key -> new AtomicLong());
+      if (counter.getAndUpdate(requests -> requests == RETIRED ? RETIRED : requests + 1)
+          != RETIRED) {
+        return;
+      }
+      // flush retired the counter, which is replaced by a new one
+      this.counters.remove(userId, counter);
+    }
+  }
+
+  /** Closes the current window, and sends the usage of each user which had requests in it. */
+  @Scheduled(
+      fixedRateString = "${ecomm.service.limiter.usage.window:PT1S}",
+      initialDelayString = "${ecomm.service.limiter.usage.window:PT1S}")
+  public void flush() {
+    if (!this.enabled) {
+      return;
+    }
+    Instant windowEnd = this.clock.instant();
+    List<UserUsage> usages = new ArrayList<>();
+    this.counters.forEach(
+        (userId, counter) -> {
+          long requests = counter.getAndSet(0);
+          if (requests == 0) {
+            // a request counted since the reset keeps the counter for the next window
+            if (counter.compareAndSet(0, RETIRED)) {
+              this.counters.remove(userId, counter);
+            }
+            return;
+          }
+          usages.add(
+              UserUsage.builder()
+                  .userId(userId)
+                  .windowStart(this.windowStart)
+                  .windowEnd(windowEnd)
+                  .requests(requests)
+                  .build());
+        });
+    this.windowStart = windowEnd;
+    if (!usages.isEmpty()) {
+      this.sender.execute(() -> usages.forEach(this::send));
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (this.sender instanceof ExecutorService executorService) {
+      executorService.shutdown();
+    }
+  }
+
+  private void send(UserUsage usage) {
+    try {
+      this.messageKafkaTemplate.send(this.topic, usage.getUserId(), usage);
+      this.recordsCounter.increment();
+    } catch (RuntimeException e) {
+      log.warn("Usage of user '{}' was not sent: {}", usage.getUserId(), e.toString());
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.oigres.ecomm.gateway.config.AuthenticationProperties;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of already verified JWT tokens. Entries are keyed by a SHA-256 digest of the raw
+ * token, so tokens are never kept in memory, and each entry expires when its token does.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+@Component
+public class VerifiedTokenCache {
+  public static final String CACHE_NAME = "VERIFIED_TOKENS";
+
+  private static final ThreadLocal<MessageDigest> DIGESTS =
+      ThreadLocal.withInitial(VerifiedTokenCache::newDigest);
+
+  private final boolean enabled;
+  private final Cache<String, JwtPrincipal> cache;
+
+  public VerifiedTokenCache(
+      AuthenticationProperties authenticationProperties, MeterRegistry meterRegistry) {
+    AuthenticationProperties.TokenCache properties = authenticationProperties.getTokenCache();
+    this.enabled = properties.isEnabled();
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfter(new TokenExpiry())
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, this.cache, CACHE_NAME);
+  }
+
+  /**
+   * Gets the principal of a token which was already verified.
+   *
+   * @param token a JWT token as string
+   * @return principal of the token, or null if the token was not verified before or it has
+   *     expired.
+   */
+  public JwtPrincipal get(String token) {
+    if (!this.enabled) {
+      return null;
+    }
+    return this.cache.getIfPresent(digest(token));
+  }
+
+  /**
+   * Stores the principal of a verified token until the token expires.
+   *
+   * @param token a valid JWT token as string
+   * @param principal principal which was gotten from the token
+   */
+  public void put(String token, JwtPrincipal principal) {
+    if (!this.enabled || principal.getExpiresAt() <= System.currentTimeMillis()) {
+      return;
+    }
+    this.cache.put(digest(token), principal);
+  }
+
+  static String digest(String token) {
+    MessageDigest digest = DIGESTS.get();
+    return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Expires each entry at the expiration time of its token. */
+  private static class TokenExpiry implements Expiry<String, JwtPrincipal> {
+
+    @Override
+    public long expireAfterCreate(String key, JwtPrincipal principal, long currentTime) {
+      long remaining = principal.getExpiresAt() - System.currentTimeMillis();
+      return TimeUnit.MILLISECONDS.toNanos(Math.max(remaining, 0));
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        String key, JwtPrincipal principal, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, principal, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        String key, JwtPrincipal principal, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
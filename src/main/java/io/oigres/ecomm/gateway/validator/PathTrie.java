@@ -0,0 +1,209 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.validator;
+
+/**
+ * Trie of path patterns, which is built once and then only read. Patterns are made of literal
+ * segments, "*" which matches exactly one segment, and a trailing "**" which matches any number of
+ * segments. When several patterns match a path, literal segments win over "*", and "*" wins over
+ * "**".
+ *
+ * <p>Matching walks the path once per segment, comparing regions of the path against the children
+ * of each node, so it does not allocate. Paths with empty, "." or ".." segments match nothing.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
+final class PathTrie {
+
+  enum Access {
+    UNPROTECTED,
+    PROTECTED
+  }
+
+  private static final String WILDCARD = "*";
+  private static final String DOUBLE_WILDCARD = "**";
+
+  private static final class Node {
+    /** Children by literal segment, in an open addressing table whose size is a power of two. */
+    private String[] keys = new String[2];
+
+    private Node[] children = new Node[2];
+    private int size;
+    private Node wildcard;
+
+    /** Access of the pattern which ends at this node. */
+    private Access exact;
+
+    /** Access of the pattern which ends with "**" at this node. */
+    private Access rest;
+
+    private Node child(String path, int from, int to, int hash) {
+      int mask = this.keys.length - 1;
+      int length = to - from;
+      for (int index = hash & mask; ; index = (index + 1) & mask) {
+        String key = this.keys[index];
+        if (key == null) {
+          return null;
+        }
+        if (key.length() == length && path.regionMatches(from, key, 0, length)) {
+          return this.children[index];
+        }
+      }
+    }
+
+    private Node getOrAddChild(String segment) {
+      Node child = child(segment, 0, segment.length(), hash(segment, 0, segment.length()));
+      if (child != null) {
+        return child;
+      }
+      if ((this.size + 1) * 2 > this.keys.length) {
+        String[] keys = this.keys;
+        Node[] children = this.children;
+        this.keys = new String[keys.length * 2];
+        this.children = new Node[keys.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+          if (keys[i] != null) {
+            put(keys[i], children[i]);
+          }
+        }
+      }
+      child = new Node();
+      put(segment, child);
+      this.size++;
+      return child;
+    }
+
+    private void put(String segment, Node child) {
+      int mask = this.keys.length - 1;
+      int index = hash(segment, 0, segment.length()) & mask;
+      while (this.keys[index] != null) {
+        index = (index + 1) & mask;
+      }
+      this.keys[index] = segment;
+      this.children[index] = child;
+    }
+  }
+
+  private final Node root = new Node();
+
+  /**
+   * Adds a pattern to the trie. If the same pattern is added with different access, it is
+   * protected.
+   *
+   * @param pattern a path pattern which starts with "/"
+   * @param access access of the paths which match the pattern
+   * @throws IllegalArgumentException if the pattern is not valid
+   */
+  void add(String pattern, Access access) {
+    if (pattern == null || !pattern.startsWith("/")) {
+      throw new IllegalArgumentException("Route pattern '" + pattern + "' must start with '/'");
+    }
+    Node node = this.root;
+    String[] segments = pattern.substring(1).split("/", -1);
+    for (int i = 0; i < segments.length; i++) {
+      String segment = segments[i];
+      boolean last = i == segments.length - 1;
+      if (segment.isEmpty() && last) {
+        break;
+      }
+      if (segment.isEmpty() || ".".equals(segment) || "..".equals(segment)) {
+        throw new IllegalArgumentException("Route pattern '" + pattern + "' is not valid");
+      }
+      if (DOUBLE_WILDCARD.equals(segment)) {
+        if (!last) {
+          throw new IllegalArgumentException(
+              "Route pattern '" + pattern + "' only can have '**' at the end");
+        }
+        node.rest = merge(node.rest, access);
+        return;
+      }
+      if (WILDCARD.equals(segment)) {
+        if (node.wildcard == null) {
+          node.wildcard = new Node();
+        }
+        node = node.wildcard;
+      } else {
+        node = node.getOrAddChild(segment);
+      }
+    }
+    node.exact = merge(node.exact, access);
+  }
+
+  private static Access merge(Access current, Access access) {
+    return current == null || current == access ? access : Access.PROTECTED;
+  }
+
+  /**
+   * Finds the access of the most specific pattern which matches a path.
+   *
+   * @param path a request path
+   * @return access of the matching pattern, or null if no pattern matches the path.
+   */
+  Access match(String path) {
+    if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+      return null;
+    }
+    return match(this.root, path, 1);
+  }
+
+  private static Access match(Node node, String path, int from) {
+    int length = path.length();
+    if (from >= length) {
+      return node.exact != null ? node.exact : node.rest;
+    }
+    int to = path.indexOf('/', from);
+    if (to < 0) {
+      to = length;
+    }
+    if (to == from || isDotSegment(path, from, to)) {
+      return null;
+    }
+    Node child = node.child(path, from, to, hash(path, from, to));
+    if (child != null) {
+      Access access = match(child, path, to + 1);
+      if (access != null) {
+        return access;
+      }
+    }
+    if (node.wildcard != null) {
+      Access access = match(node.wildcard, path, to + 1);
+      if (access != null) {
+        return access;
+      }
+    }
+    return node.rest;
+  }
+
+  private static boolean isDotSegment(String path, int from, int to) {
+    int length = to - from;
+    return path.charAt(from) == '.' && (length == 1 || length == 2 && path.charAt(from + 1) == '.');
+  }
+
+  /**
+   * Hash of a region of a string. Segments such as "service1", "service2" have consecutive
+   * String.hashCode values, which would cluster in the open addressing tables, so it is mixed.
+   */
+  private static int hash(String value, int from, int to) {
+    int hash = 0;
+    for (int i = from; i < to; i++) {
+      hash = 31 * hash + value.charAt(i);
+    }
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -17,11 +17,21 @@
 
 package io.oigres.ecomm.gateway.validator;
 
+import io.oigres.ecomm.gateway.config.GatewayProperties;
+import java.util.Collection;
 import java.util.List;
 import java.util.function.Predicate;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
 
+/**
+ * Decides which requests must be authenticated. Unprotected and protected route patterns are taken
+ * from the configuration and compiled into a {@link PathTrie} at startup. A request is secured
+ * unless the most specific pattern which matches its path is an unprotected one.
+ *
+ * @author sergio.exposito (sjexpos@gmail.com)
+ */
 @Component
 public class RouteValidator {
 
@@ -35,7 +45,38 @@ public class RouteValidator {
 
   public static final List<String> unprotectedURLs = List.of(SIGNIN_PATH);
 
-  public Predicate<ServerHttpRequest> isSecured =
-      request ->
-          unprotectedURLs.stream().noneMatch(uri -> request.getURI().getPath().contains(uri));
+  private final PathTrie routes;
+
+  public final Predicate<ServerHttpRequest> isSecured =
+      request -> isSecured(request.getURI().getPath());
+
+  public RouteValidator() {
+    this(unprotectedURLs, List.of());
+  }
+
+  @Autowired
+  public RouteValidator(GatewayProperties gatewayProperties) {
+    this(
+        gatewayProperties.getRoutes().getUnprotected(), gatewayProperties.getRoutes().getSecured());
+  }
+
+  /**
+   * @param unprotected patterns of the routes which do not need authentication
+   * @param secured patterns of the routes which need authentication, even if they match an
+   *     unprotected pattern
+   * @throws IllegalArgumentException if a pattern is not valid
+   */
+  public RouteValidator(Collection<String> unprotected, Collection<String> secured) {
+    this.routes = new PathTrie();
+    unprotected.forEach(pattern -> this.routes.add(pattern, PathTrie.Access.UNPROTECTED));
+    secured.forEach(pattern -> this.routes.add(pattern, PathTrie.Access.PROTECTED));
+  }
+
+  /**
+   * @param path a request path
+   * @return true if requests to this path must be authenticated
+   */
+  public boolean isSecured(String path) {
+    return this.routes.match(path) != PathTrie.Access.UNPROTECTED;
+  }
 }
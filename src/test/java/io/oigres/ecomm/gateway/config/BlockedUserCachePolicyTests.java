@@ -0,0 +1,123 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.NullValue;
+
+public class BlockedUserCachePolicyTests {
+  private final BlockedUserCachePolicy policy = new BlockedUserCachePolicy(Duration.ofMinutes(1));
+
+  @Test
+  void test_blocked_user_expires_when_block_is_over() {
+    // given
+    BlockedUser blockedUser =
+        BlockedUser.builder()
+            .userId("15")
+            .from(LocalDateTime.now().minusMinutes(5))
+            .to(LocalDateTime.now().plusMinutes(10))
+            .build();
+
+    // when
+    long expiration = this.policy.expireAfterCreate("15", blockedUser, 0);
+
+    // then
+    Assertions.assertTrue(expiration > TimeUnit.MINUTES.toNanos(9));
+    Assertions.assertTrue(expiration <= TimeUnit.MINUTES.toNanos(10));
+  }
+
+  @Test
+  void test_not_blocked_user_expires_after_negative_ttl() {
+    // given
+    BlockedUser finishedBlock =
+        BlockedUser.builder()
+            .userId("15")
+            .from(LocalDateTime.now().minusMinutes(10))
+            .to(LocalDateTime.now().minusMinutes(5))
+            .build();
+
+    // when
+    long nullExpiration = this.policy.expireAfterCreate("15", NullValue.INSTANCE, 0);
+    long finishedExpiration = this.policy.expireAfterCreate("15", finishedBlock, 0);
+
+    // then
+    Assertions.assertEquals(TimeUnit.MINUTES.toNanos(1), nullExpiration);
+    Assertions.assertEquals(TimeUnit.MINUTES.toNanos(1), finishedExpiration);
+  }
+
+  @Test
+  void test_weight() {
+    // given
+    BlockedUser blockedUser =
+        BlockedUser.builder()
+            .userId("15")
+            .from(LocalDateTime.now())
+            .to(LocalDateTime.now().plusMinutes(10))
+            .build();
+
+    // when
+    int blockedWeight = this.policy.weigh("15", blockedUser);
+    int nullWeight = this.policy.weigh("15", NullValue.INSTANCE);
+
+    // then
+    Assertions.assertTrue(nullWeight > 0);
+    Assertions.assertTrue(blockedWeight > nullWeight);
+  }
+
+  @Test
+  void test_entries_expire_at_block_end() {
+    // given
+    AtomicLong nanos = new AtomicLong();
+    Cache<Object, Object> cache =
+        Caffeine.newBuilder()
+            .expireAfter(this.policy)
+            .maximumWeight(1024 * 1024)
+            .weigher(this.policy)
+            .ticker(nanos::get)
+            .executor(Runnable::run)
+            .build();
+    cache.put(
+        "15",
+        BlockedUser.builder()
+            .userId("15")
+            .from(LocalDateTime.now())
+            .to(LocalDateTime.now().plusMinutes(10))
+            .build());
+    cache.put("16", NullValue.INSTANCE);
+
+    // when
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+    Object afterTwoMinutes15 = cache.getIfPresent("15");
+    Object afterTwoMinutes16 = cache.getIfPresent("16");
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(9));
+    Object afterElevenMinutes15 = cache.getIfPresent("15");
+
+    // then
+    Assertions.assertNotNull(afterTwoMinutes15);
+    Assertions.assertNull(afterTwoMinutes16);
+    Assertions.assertNull(afterElevenMinutes15);
+  }
+}
@@ -0,0 +1,144 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.config;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import io.oigres.ecomm.gateway.services.BlockedUserCacheInvalidator;
+import io.oigres.ecomm.gateway.services.BlockedUserStore;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import reactor.core.publisher.Flux;
+
+public class BlockedUserCacheWarmUpTests {
+  private AsyncLoadingCache<Object, Object> nearCache;
+  private BlockedUserStore store;
+  private BlockedUserCacheInvalidator invalidator;
+  private LimiterServiceProperties properties;
+
+  @BeforeEach
+  void setup() {
+    this.nearCache = Caffeine.newBuilder().buildAsync(key -> "loaded");
+    this.store = mock(BlockedUserStore.class);
+    this.invalidator = mock(BlockedUserCacheInvalidator.class);
+    given(this.invalidator.subscribed()).willReturn(CompletableFuture.completedFuture(null));
+    this.properties = new LimiterServiceProperties();
+    this.properties.getNearCache().getWarmUp().setTimeout(Duration.ofSeconds(5));
+  }
+
+  private static BlockedUser blockedUser(String userId) {
+    return BlockedUser.builder()
+        .userId(userId)
+        .from(LocalDateTime.now().minusMinutes(5))
+        .to(LocalDateTime.now().plusMinutes(5))
+        .build();
+  }
+
+  @Test
+  void test_warm_up() {
+    // given
+    given(this.store.findActive(anyInt(), anyInt()))
+        .willReturn(
+            Flux.just(blockedUser("15"), blockedUser("16"))
+                .delaySubscription(Duration.ofMillis(50)));
+    BlockedUserCacheWarmUp warmUp =
+        new BlockedUserCacheWarmUp(this.nearCache, this.store, this.invalidator, this.properties);
+    Status before = warmUp.health().getStatus();
+
+    // when
+    warmUp.onApplicationEvent(mock(ApplicationStartedEvent.class));
+    Status during = warmUp.health().getStatus();
+
+    // then
+    Assertions.assertEquals(Status.OUT_OF_SERVICE, before);
+    Assertions.assertEquals(Status.OUT_OF_SERVICE, during);
+    long deadline = System.currentTimeMillis() + 5000;
+    while (warmUp.health().getStatus() != Status.UP && System.currentTimeMillis() < deadline) {
+      Thread.onSpinWait();
+    }
+    Assertions.assertEquals(Status.UP, warmUp.health().getStatus());
+    Assertions.assertEquals(2L, warmUp.health().getDetails().get("entries"));
+    Assertions.assertNotNull(this.nearCache.synchronous().getIfPresent("15"));
+    Assertions.assertNotNull(this.nearCache.synchronous().getIfPresent("16"));
+  }
+
+  @Test
+  void test_warm_up_waits_for_invalidations_subscription() {
+    // given
+    CompletableFuture<Void> subscribed = new CompletableFuture<>();
+    given(this.invalidator.subscribed()).willReturn(subscribed);
+    given(this.store.findActive(anyInt(), anyInt())).willReturn(Flux.just(blockedUser("15")));
+    BlockedUserCacheWarmUp warmUp =
+        new BlockedUserCacheWarmUp(this.nearCache, this.store, this.invalidator, this.properties);
+
+    // when
+    warmUp.onApplicationEvent(mock(ApplicationStartedEvent.class));
+    Status before = warmUp.health().getStatus();
+    then(this.store).should(never()).findActive(anyInt(), anyInt());
+    subscribed.complete(null);
+
+    // then
+    Assertions.assertEquals(Status.OUT_OF_SERVICE, before);
+    Assertions.assertEquals(Status.UP, warmUp.health().getStatus());
+    Assertions.assertNotNull(this.nearCache.synchronous().getIfPresent("15"));
+  }
+
+  @Test
+  void test_warm_up_failure() {
+    // given
+    given(this.store.findActive(anyInt(), anyInt()))
+        .willReturn(Flux.error(new IllegalStateException("redis is down")));
+    BlockedUserCacheWarmUp warmUp =
+        new BlockedUserCacheWarmUp(this.nearCache, this.store, this.invalidator, this.properties);
+
+    // when
+    warmUp.onApplicationEvent(mock(ApplicationStartedEvent.class));
+
+    // then
+    Assertions.assertEquals(Status.UP, warmUp.health().getStatus());
+    Assertions.assertEquals("failed", warmUp.health().getDetails().get("warmUp"));
+  }
+
+  @Test
+  void test_warm_up_disabled() {
+    // given
+    this.properties.getNearCache().getWarmUp().setEnabled(false);
+    BlockedUserCacheWarmUp warmUp =
+        new BlockedUserCacheWarmUp(this.nearCache, this.store, this.invalidator, this.properties);
+
+    // when
+    warmUp.onApplicationEvent(mock(ApplicationStartedEvent.class));
+
+    // then
+    Assertions.assertEquals(Status.UP, warmUp.health().getStatus());
+    then(this.store).should(never()).findActive(anyInt(), anyInt());
+  }
+}
@@ -0,0 +1,129 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.oigres.ecomm.cache.GzipRedisSerializer;
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+public class BlockedUserRedisSerializerTests {
+  private static final LocalDateTime FROM = LocalDateTime.of(2024, 3, 10, 12, 15, 30, 0);
+  private static final LocalDateTime TO = LocalDateTime.of(2024, 3, 10, 13, 15, 30, 0);
+
+  private static RedisSerializer<BlockedUser> legacySerializer() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    objectMapper.registerModule(new JavaTimeModule());
+    objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    return new GzipRedisSerializer<>(
+        new Jackson2JsonRedisSerializer<>(objectMapper, BlockedUser.class));
+  }
+
+  private static BlockedUserRedisSerializer serializer(
+      LimiterServiceProperties.RedisFormat format) {
+    return new BlockedUserRedisSerializer(legacySerializer(), format);
+  }
+
+  private static void assertBlockedUser(BlockedUser expected, BlockedUser actual) {
+    Assertions.assertNotNull(actual);
+    Assertions.assertEquals(expected.getUserId(), actual.getUserId());
+    Assertions.assertEquals(expected.getFrom(), actual.getFrom());
+    Assertions.assertEquals(expected.getTo(), actual.getTo());
+  }
+
+  @Test
+  void test_binary_round_trip() {
+    // given
+    BlockedUser blockedUser =
+        BlockedUser.builder().userId("user14@yopmail.com").from(FROM).to(TO).build();
+    BlockedUserRedisSerializer serializer = serializer(LimiterServiceProperties.RedisFormat.BINARY);
+
+    // when
+    byte[] bytes = serializer.serialize(blockedUser);
+    BlockedUser deserialized = serializer.deserialize(bytes);
+
+    // then
+    Assertions.assertEquals(BlockedUserRedisSerializer.VERSION_1, bytes[0]);
+    Assertions.assertEquals(17 + "user14@yopmail.com".length(), bytes.length);
+    Assertions.assertTrue(bytes.length < legacySerializer().serialize(blockedUser).length);
+    assertBlockedUser(blockedUser, deserialized);
+  }
+
+  @Test
+  void test_read_legacy_gzip_json() {
+    // given
+    BlockedUser blockedUser =
+        BlockedUser.builder().userId("user14@yopmail.com").from(FROM).to(TO).build();
+    byte[] legacyBytes = legacySerializer().serialize(blockedUser);
+
+    // when
+    BlockedUser deserialized =
+        serializer(LimiterServiceProperties.RedisFormat.BINARY).deserialize(legacyBytes);
+
+    // then
+    assertBlockedUser(blockedUser, deserialized);
+  }
+
+  @Test
+  void test_write_gzip_json() {
+    // given
+    BlockedUser blockedUser =
+        BlockedUser.builder().userId("user14@yopmail.com").from(FROM).to(TO).build();
+
+    // when
+    byte[] bytes =
+        serializer(LimiterServiceProperties.RedisFormat.GZIP_JSON).serialize(blockedUser);
+
+    // then
+    assertBlockedUser(blockedUser, legacySerializer().deserialize(bytes));
+  }
+
+  @Test
+  void test_block_without_window() {
+    // given
+    BlockedUser blockedUser = BlockedUser.builder().userId("15").build();
+    BlockedUserRedisSerializer serializer = serializer(LimiterServiceProperties.RedisFormat.BINARY);
+
+    // when
+    BlockedUser deserialized = serializer.deserialize(serializer.serialize(blockedUser));
+
+    // then
+    assertBlockedUser(blockedUser, deserialized);
+  }
+
+  @Test
+  void test_invalid_bytes() {
+    // given
+    BlockedUserRedisSerializer serializer = serializer(LimiterServiceProperties.RedisFormat.BINARY);
+
+    // when / then
+    Assertions.assertNull(serializer.deserialize(null));
+    Assertions.assertNull(serializer.deserialize(new byte[0]));
+    Assertions.assertThrows(
+        SerializationException.class, () -> serializer.deserialize(new byte[] {2, 0, 0}));
+    Assertions.assertThrows(
+        SerializationException.class, () -> serializer.deserialize(new byte[] {1, 0, 0}));
+  }
+}
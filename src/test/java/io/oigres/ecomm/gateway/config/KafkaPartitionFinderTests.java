@@ -0,0 +1,76 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.config;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.ConsumerFactory;
+
+public class KafkaPartitionFinderTests {
+  private Consumer<String, String> consumer;
+  private KafkaPartitionFinder finder;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setup() {
+    ConsumerFactory<String, String> consumerFactory = mock(ConsumerFactory.class);
+    this.consumer = mock(Consumer.class);
+    given(consumerFactory.createConsumer()).willReturn(this.consumer);
+    this.finder = new KafkaPartitionFinder(consumerFactory);
+  }
+
+  @Test
+  void test_all_partitions_are_found() {
+    // given
+    given(this.consumer.partitionsFor("revoked-tokens"))
+        .willReturn(
+            List.of(
+                new PartitionInfo("revoked-tokens", 0, null, null, null),
+                new PartitionInfo("revoked-tokens", 1, null, null, null),
+                new PartitionInfo("revoked-tokens", 2, null, null, null)));
+
+    // when
+    String[] partitions = this.finder.partitions("revoked-tokens");
+
+    // then
+    Assertions.assertArrayEquals(new String[] {"0", "1", "2"}, partitions);
+    then(this.consumer).should().close();
+  }
+
+  @Test
+  void test_first_partition_when_not_found() {
+    // given
+    given(this.consumer.partitionsFor("revoked-tokens")).willThrow(new TimeoutException());
+
+    // when
+    String[] partitions = this.finder.partitions("revoked-tokens");
+
+    // then
+    Assertions.assertArrayEquals(new String[] {"0"}, partitions);
+    then(this.consumer).should().close();
+  }
+}
@@ -0,0 +1,175 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.filter;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.util.AuditPublisher;
+import io.oigres.ecomm.gateway.util.JwtPrincipal;
+import io.oigres.ecomm.gateway.util.UserUsageReporter;
+import io.oigres.ecomm.service.limiter.RequestAudit;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class RequestAuditFilterTests {
+  private LimiterServiceProperties properties;
+  private AuditPublisher auditPublisher;
+  private UserUsageReporter userUsageReporter;
+
+  @BeforeEach
+  void setup() {
+    this.properties = new LimiterServiceProperties();
+    this.properties.getAudit().setMaxBodySize(DataSize.ofBytes(10));
+    this.auditPublisher = mock(AuditPublisher.class);
+    this.userUsageReporter = mock(UserUsageReporter.class);
+  }
+
+  private static MockServerWebExchange exchange(MockServerHttpRequest request) {
+    MockServerWebExchange exchange = MockServerWebExchange.from(request);
+    exchange
+        .getAttributes()
+        .put(AuthFilter.CURRENT_USER_REQUEST_ATTR, new JwtPrincipal("15", null, 0, null, null));
+    return exchange;
+  }
+
+  private static Flux<DataBuffer> chunks(String... chunks) {
+    return Flux.fromArray(chunks)
+        .map(
+            chunk ->
+                DefaultDataBufferFactory.sharedInstance.wrap(
+                    chunk.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /** Reads the body as the upstream would, and keeps what it received. */
+  private static GatewayFilterChain forwardingChain(AtomicReference<String> forwarded) {
+    return (ServerWebExchange exchange) ->
+        DataBufferUtils.join(exchange.getRequest().getBody())
+            .doOnNext(
+                buffer -> {
+                  forwarded.set(buffer.toString(StandardCharsets.UTF_8));
+                  DataBufferUtils.release(buffer);
+                })
+            .then();
+  }
+
+  private RequestAudit sentAudit() {
+    ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+    then(this.auditPublisher).should().publish(eq("15"), captor.capture());
+    return (RequestAudit) captor.getValue();
+  }
+
+  @Test
+  void test_body_is_forwarded_and_its_prefix_audited() {
+    // given
+    RequestAuditFilter filter =
+        new RequestAuditFilter(this.auditPublisher, this.userUsageReporter, this.properties);
+    MockServerWebExchange exchange =
+        exchange(
+            MockServerHttpRequest.post("/api/v1/products")
+                .header("Transfer-Encoding", "chunked")
+                .body(chunks("{\"name\":", "\"a long product name\"}")));
+    AtomicReference<String> forwarded = new AtomicReference<>();
+
+    // when
+    filter.filter(exchange, forwardingChain(forwarded)).block();
+
+    // then
+    Assertions.assertEquals("{\"name\":\"a long product name\"}", forwarded.get());
+    RequestAudit audit = sentAudit();
+    Assertions.assertEquals("{\"name\":\"a", audit.getBody());
+    Assertions.assertEquals("POST", audit.getMethod());
+    then(this.userUsageReporter).should().record("15");
+  }
+
+  @Test
+  void test_request_without_body_is_audited_before_forwarding() {
+    // given
+    RequestAuditFilter filter =
+        new RequestAuditFilter(this.auditPublisher, this.userUsageReporter, this.properties);
+    MockServerWebExchange exchange =
+        exchange(MockServerHttpRequest.get("/api/v1/products").build());
+
+    // when
+    filter
+        .filter(
+            exchange,
+            e -> {
+              sentAudit();
+              return Mono.empty();
+            })
+        .block();
+
+    // then
+    Assertions.assertNull(sentAudit().getBody());
+  }
+
+  @Test
+  void test_audit_is_sent_once() {
+    // given
+    RequestAuditFilter filter =
+        new RequestAuditFilter(this.auditPublisher, this.userUsageReporter, this.properties);
+    MockServerWebExchange exchange =
+        exchange(
+            MockServerHttpRequest.post("/api/v1/products").contentLength(5).body(chunks("hello")));
+
+    // when
+    filter.filter(exchange, forwardingChain(new AtomicReference<>())).block();
+
+    // then
+    Assertions.assertEquals("hello", sentAudit().getBody());
+  }
+
+  @Test
+  void test_audit_disabled() {
+    // given
+    this.properties.getAudit().setEnabled(false);
+    RequestAuditFilter filter =
+        new RequestAuditFilter(this.auditPublisher, this.userUsageReporter, this.properties);
+    MockServerWebExchange exchange =
+        exchange(MockServerHttpRequest.post("/api/v1/products").body(chunks("hello")));
+    AtomicReference<String> forwarded = new AtomicReference<>();
+
+    // when
+    filter.filter(exchange, forwardingChain(forwarded)).block();
+
+    // then
+    Assertions.assertEquals("hello", forwarded.get());
+    then(this.auditPublisher).should(never()).publish(anyString(), any());
+    then(this.userUsageReporter).should().record("15");
+  }
+}
@@ -0,0 +1,200 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.filter;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.model.ExchangeAudit;
+import io.oigres.ecomm.gateway.util.AuditPublisher;
+import io.oigres.ecomm.gateway.util.JwtPrincipal;
+import io.oigres.ecomm.gateway.util.UserUsageReporter;
+import io.oigres.ecomm.service.limiter.ResponseAudit;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class ResponseAuditFilterTests {
+  private LimiterServiceProperties properties;
+  private AuditPublisher auditPublisher;
+  private MeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setup() {
+    this.properties = new LimiterServiceProperties();
+    this.auditPublisher = mock(AuditPublisher.class);
+    this.meterRegistry = new SimpleMeterRegistry();
+  }
+
+  private static MockServerWebExchange exchange() {
+    MockServerWebExchange exchange =
+        MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/products").build());
+    exchange
+        .getAttributes()
+        .put(AuthFilter.CURRENT_USER_REQUEST_ATTR, new JwtPrincipal("15", null, 0, null, null));
+    exchange.getAttributes().put(LoggingFilter.REQUEST_STARTED_ATTR, System.nanoTime());
+    return exchange;
+  }
+
+  /**
+   * Spends some time in the gateway, forwards the request and answers as the upstream would, after
+   * some time, with a body in two buffers.
+   */
+  private static GatewayFilterChain upstreamChain() {
+    UpstreamTimingFilter upstreamTimingFilter = new UpstreamTimingFilter();
+    return exchange ->
+        Mono.delay(Duration.ofMillis(10))
+            .then(Mono.defer(() -> upstreamTimingFilter.filter(exchange, upstream())));
+  }
+
+  private static GatewayFilterChain upstream() {
+    return exchange ->
+        Mono.delay(Duration.ofMillis(20))
+            .then(
+                Mono.defer(
+                    () -> {
+                      ServerHttpResponse response = exchange.getResponse();
+                      response.setStatusCode(HttpStatus.CREATED);
+                      response.getHeaders().add("X-Upstream", "products");
+                      Flux<DataBuffer> body =
+                          Flux.just("{\"id\":", "15}")
+                              .map(
+                                  chunk ->
+                                      DefaultDataBufferFactory.sharedInstance.wrap(
+                                          chunk.getBytes(StandardCharsets.UTF_8)));
+                      return response.writeWith(body);
+                    }));
+  }
+
+  @Test
+  void test_audit_is_sent_when_response_completes() {
+    // given
+    ResponseAuditFilter filter =
+        new ResponseAuditFilter(this.auditPublisher, this.properties, this.meterRegistry);
+    MockServerWebExchange exchange = exchange();
+
+    // when
+    Mono<Void> result = filter.filter(exchange, upstreamChain());
+    then(this.auditPublisher).should(never()).publish(anyString(), any());
+    result.block();
+
+    // then
+    ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+    // the audit is sent right after the completion reaches the subscriber
+    then(this.auditPublisher).should(timeout(1000)).publish(eq("15"), captor.capture());
+    ResponseAudit audit = (ResponseAudit) captor.getValue();
+    Assertions.assertEquals(201, audit.getStatus());
+    Assertions.assertEquals("products", audit.getHeaders().getFirst("X-Upstream"));
+    Assertions.assertEquals(exchange.getResponse().getHeaders(), audit.getHeaders());
+    Assertions.assertTrue(
+        this.meterRegistry.get("gateway.exchange.overhead").timer().totalTime(TimeUnit.MILLISECONDS)
+            >= 10);
+    Assertions.assertTrue(
+        this.meterRegistry.get("gateway.exchange.upstream").timer().totalTime(TimeUnit.MILLISECONDS)
+            >= 20);
+    Assertions.assertEquals(
+        9.0, this.meterRegistry.get("gateway.exchange.response.bytes").summary().totalAmount());
+  }
+
+  @Test
+  void test_merged_audit_is_sent_once() {
+    // given
+    this.properties.getAudit().setMode(LimiterServiceProperties.AuditMode.MERGED);
+    RequestAuditFilter requestAuditFilter =
+        new RequestAuditFilter(this.auditPublisher, mock(UserUsageReporter.class), this.properties);
+    ResponseAuditFilter responseAuditFilter =
+        new ResponseAuditFilter(this.auditPublisher, this.properties, this.meterRegistry);
+    MockServerWebExchange exchange = exchange();
+
+    // when
+    requestAuditFilter
+        .filter(exchange, e -> responseAuditFilter.filter(e, upstreamChain()))
+        .block();
+
+    // then
+    ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+    then(this.auditPublisher).should(timeout(1000)).publish(eq("15"), captor.capture());
+    ExchangeAudit audit = (ExchangeAudit) captor.getValue();
+    Assertions.assertEquals("GET", audit.getRequest().getMethod());
+    Assertions.assertEquals(201, audit.getResponse().getStatus());
+    Assertions.assertEquals(audit.getId(), audit.getRequest().getId());
+    Assertions.assertEquals(9, audit.getResponseBytes());
+    Assertions.assertTrue(audit.getGatewayTime().toMillis() >= 10);
+    Assertions.assertTrue(audit.getUpstreamTime().toMillis() >= 20);
+    Assertions.assertTrue(audit.getTotalTime().compareTo(audit.getUpstreamTime()) >= 0);
+  }
+
+  @Test
+  void test_request_not_forwarded() {
+    // given
+    this.properties.getAudit().setMode(LimiterServiceProperties.AuditMode.MERGED);
+    ResponseAuditFilter filter =
+        new ResponseAuditFilter(this.auditPublisher, this.properties, this.meterRegistry);
+    GatewayFilterChain gatewayChain =
+        exchange -> {
+          exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+          return exchange.getResponse().setComplete();
+        };
+
+    // when
+    filter.filter(exchange(), gatewayChain).block();
+
+    // then
+    ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+    then(this.auditPublisher).should(timeout(1000)).publish(eq("15"), captor.capture());
+    ExchangeAudit audit = (ExchangeAudit) captor.getValue();
+    Assertions.assertEquals(429, audit.getResponse().getStatus());
+    Assertions.assertEquals(Duration.ZERO, audit.getUpstreamTime());
+    Assertions.assertTrue(audit.getTotalTime().compareTo(audit.getGatewayTime()) >= 0);
+  }
+
+  @Test
+  void test_audit_disabled() {
+    // given
+    this.properties.getAudit().setEnabled(false);
+    ResponseAuditFilter filter =
+        new ResponseAuditFilter(this.auditPublisher, this.properties, this.meterRegistry);
+
+    // when
+    filter.filter(exchange(), upstreamChain()).block();
+
+    // then
+    then(this.auditPublisher).should(never()).publish(anyString(), any());
+  }
+}
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
@@ -87,4 +88,55 @@ public class BlockedUserTests {
     // then
     Assertions.assertEquals(result, status);
   }
+
+  @ParameterizedTest
+  @MethodSource("provideParameters")
+  void test_is_blocked_epoch_milli(LocalDateTime test, boolean result) {
+    // given
+    LocalDateTime from = LocalDateTime.of(2024, 3, 10, 12, 15, 30, 0);
+    LocalDateTime to = LocalDateTime.of(2024, 3, 10, 13, 15, 30, 0);
+    BlockedUser blockedUser = BlockedUser.builder().userId("123").from(from).to(to).build();
+    long time = test.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    // when
+    boolean status = blockedUser.isBlock(time);
+
+    // then
+    Assertions.assertEquals(result, status);
+  }
+
+  @Test
+  void test_epoch_milli_constructor() {
+    // given
+    LocalDateTime from = LocalDateTime.of(2024, 3, 10, 12, 15, 30, 0);
+    LocalDateTime to = LocalDateTime.of(2024, 3, 10, 13, 15, 30, 0);
+    BlockedUser blockedUser = BlockedUser.builder().userId("123").from(from).to(to).build();
+
+    // when
+    BlockedUser copy =
+        new BlockedUser("123", blockedUser.getFromEpochMilli(), blockedUser.getToEpochMilli());
+    BlockedUser withoutWindow = BlockedUser.builder().userId("123").build();
+
+    // then
+    Assertions.assertEquals(from, copy.getFrom());
+    Assertions.assertEquals(to, copy.getTo());
+    Assertions.assertFalse(withoutWindow.isBlock(System.currentTimeMillis()));
+  }
+
+  @Test
+  void test_serialize_without_epoch_milli() throws JsonProcessingException {
+    // given
+    BlockedUser blockedUser =
+        BlockedUser.builder()
+            .userId("123")
+            .from(LocalDateTime.of(2024, 3, 10, 12, 15, 30, 0))
+            .to(LocalDateTime.of(2024, 3, 10, 13, 15, 30, 0))
+            .build();
+
+    // when
+    String json = mapper.writeValueAsString(blockedUser);
+
+    // then
+    Assertions.assertFalse(json.contains("EpochMilli"));
+  }
 }
@@ -18,12 +18,18 @@
 package io.oigres.ecomm.gateway.services;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.BDDMockito.willDoNothing;
 import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
 
+import io.oigres.ecomm.gateway.util.RevokedTokenRegistry;
 import io.oigres.ecomm.service.limiter.BlackedInfo;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -43,6 +49,10 @@ public class BlacklistedUsersListenerTests {
   static class TestConfig {}
 
   @MockBean BlockedUserService blockedUserService;
+  @MockBean RevokedTokenRegistry revokedTokenRegistry;
+  @MockBean BlockedUserRegistry blockedUserRegistry;
+  @MockBean BlockedUserCacheInvalidator blockedUserCacheInvalidator;
+  @MockBean LockingBlockedUserMerger lockingBlockedUserMerger;
   @Autowired BlacklistedUsersListener blacklistedUsersListener;
 
   @Test
@@ -105,4 +115,53 @@ public class BlacklistedUsersListenerTests {
     Assertions.assertEquals(from, blackedInfoCaptor.getValue().getFrom());
     Assertions.assertEquals(to, blackedInfoCaptor.getValue().getTo());
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void test_batch_flow() {
+    // given
+    LocalDateTime from = LocalDateTime.now().minusHours(2);
+    LocalDateTime to = LocalDateTime.now();
+    BlackedInfo first = BlackedInfo.builder().userId("user14").from(from).to(to).build();
+    BlackedInfo second = BlackedInfo.builder().userId("user15").from(from).to(to).build();
+    List<ConsumerRecord<String, BlackedInfo>> records =
+        List.of(
+            new ConsumerRecord<>("my_topic", 1, 15, "user14", first),
+            new ConsumerRecord<>("my_topic", 1, 16, "user14", null),
+            new ConsumerRecord<>("my_topic", 1, 17, "user15", second));
+    given(this.blockedUserService.processBlackedInfos(anyCollection())).willReturn(2);
+
+    // when
+    blacklistedUsersListener.consumeMessages(records);
+
+    // then
+    ArgumentCaptor<Collection<BlackedInfo>> blackedInfosCaptor =
+        ArgumentCaptor.forClass(Collection.class);
+    then(this.blockedUserService).should().processBlackedInfos(blackedInfosCaptor.capture());
+    Assertions.assertEquals(List.of(first, second), List.copyOf(blackedInfosCaptor.getValue()));
+    then(this.blockedUserService).should(never()).processBlackedInfo(any());
+  }
+
+  @Test
+  void test_batch_exception_is_not_acknowledged() {
+    // given
+    BlackedInfo blackedInfo =
+        BlackedInfo.builder()
+            .userId("user14")
+            .from(LocalDateTime.now())
+            .to(LocalDateTime.now())
+            .build();
+    willThrow(new RuntimeException())
+        .given(this.blockedUserService)
+        .processBlackedInfos(anyCollection());
+
+    List<ConsumerRecord<String, BlackedInfo>> records =
+        List.of(new ConsumerRecord<>("my_topic", 1, 15, "user14", blackedInfo));
+
+    // when / then
+    // the container only commits the offsets of a batch when the listener returns
+    Assertions.assertThrows(
+        RuntimeException.class, () -> blacklistedUsersListener.consumeMessages(records));
+    then(this.blockedUserService).should().processBlackedInfos(anyCollection());
+  }
 }
@@ -0,0 +1,123 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.redisson.api.RFuture;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.api.listener.StatusListener;
+import org.redisson.client.codec.StringCodec;
+
+public class BlockedUserCacheInvalidatorTests {
+  private AsyncLoadingCache<Object, Object> nearCache;
+  private RTopic topic;
+  private BlockedUserCacheInvalidator invalidator;
+
+  @BeforeEach
+  void setup() {
+    this.nearCache = Caffeine.newBuilder().buildAsync(key -> "loaded");
+    this.topic = mock(RTopic.class);
+    RedissonClient redissonClient = mock(RedissonClient.class);
+    given(redissonClient.getTopic(anyString(), eq(StringCodec.INSTANCE))).willReturn(this.topic);
+    this.invalidator =
+        new BlockedUserCacheInvalidator(
+            this.nearCache, redissonClient, new LimiterServiceProperties());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void test_message_evicts_user() {
+    // given
+    ArgumentCaptor<MessageListener<String>> listener =
+        ArgumentCaptor.forClass(MessageListener.class);
+    this.invalidator.subscribe();
+    then(this.topic).should().addListener(eq(String.class), listener.capture());
+    this.nearCache.synchronous().put("15", "blocked");
+    this.nearCache.synchronous().put("16", "blocked");
+
+    // when
+    listener.getValue().onMessage("gateway:blocked-users:invalidations", "15");
+
+    // then
+    Assertions.assertNull(this.nearCache.synchronous().getIfPresent("15"));
+    Assertions.assertEquals("blocked", this.nearCache.synchronous().getIfPresent("16"));
+  }
+
+  @Test
+  void test_resubscribe_clears_cache() {
+    // given
+    ArgumentCaptor<StatusListener> listener = ArgumentCaptor.forClass(StatusListener.class);
+    this.invalidator.subscribe();
+    then(this.topic).should().addListener(listener.capture());
+    this.nearCache.synchronous().put("15", "blocked");
+    this.nearCache.synchronous().put("16", "blocked");
+
+    // when
+    listener.getValue().onSubscribe("gateway:blocked-users:invalidations");
+
+    // then
+    Assertions.assertEquals(0, this.nearCache.synchronous().estimatedSize());
+  }
+
+  @Test
+  void test_first_subscription_completes_subscribed() {
+    // given
+    ArgumentCaptor<StatusListener> listener = ArgumentCaptor.forClass(StatusListener.class);
+    this.invalidator.subscribe();
+    then(this.topic).should().addListener(listener.capture());
+    boolean before = this.invalidator.subscribed().isDone();
+
+    // when
+    listener.getValue().onSubscribe("gateway:blocked-users:invalidations");
+
+    // then
+    Assertions.assertFalse(before);
+    Assertions.assertTrue(this.invalidator.subscribed().isDone());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void test_publish() {
+    // given
+    RFuture<Long> future = mock(RFuture.class);
+    given(future.whenComplete(any())).willReturn(CompletableFuture.completedFuture(1L));
+    given(this.topic.publishAsync(any())).willReturn(future);
+
+    // when
+    this.invalidator.publish("15");
+
+    // then
+    then(this.topic).should().publishAsync("15");
+  }
+}
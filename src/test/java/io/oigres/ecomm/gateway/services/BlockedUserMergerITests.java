@@ -0,0 +1,305 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import io.oigres.ecomm.cache.RedissonCacheLockFactory;
+import io.oigres.ecomm.gateway.config.CacheConfiguration;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.config.Config;
+import org.redisson.spring.data.connection.RedissonConnectionFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/** Runs the merge script against redis and compares it with the locked read-merge-write. */
+public class BlockedUserMergerITests {
+  private static final int THREADS = 8;
+  private static final int MESSAGES_PER_THREAD = 250;
+  private static final int HOT_USERS = 5;
+
+  private RedissonClient redissonClient;
+  private RedisSerializer<BlockedUser> serializer;
+  private CacheManager redisCacheManager;
+  private LockingBlockedUserMerger lockingMerger;
+  private ScriptBlockedUserMerger scriptMerger;
+  private final List<String> userIds = Collections.synchronizedList(new ArrayList<>());
+
+  @BeforeEach
+  void setup() {
+    Config config = new Config();
+    config
+        .useSingleServer()
+        .setAddress(
+            "redis://"
+                + System.getProperty("tests.redis.hostname", "localhost")
+                + ":"
+                + System.getProperty("tests.redis.port", "6379"));
+    this.redissonClient = Redisson.create(config);
+    CacheConfiguration cacheConfiguration = new CacheConfiguration();
+    this.serializer = cacheConfiguration.blockedUserRedisSerializer(new LimiterServiceProperties());
+    RedissonCacheLockFactory cacheLockFactory = new RedissonCacheLockFactory(this.redissonClient);
+    this.redisCacheManager =
+        cacheConfiguration.redisCacheManager(
+            new RedissonConnectionFactory(this.redissonClient), cacheLockFactory, this.serializer);
+    ((RedisCacheManager) this.redisCacheManager).afterPropertiesSet();
+    this.lockingMerger = new LockingBlockedUserMerger(this.redisCacheManager, cacheLockFactory);
+    this.scriptMerger = new ScriptBlockedUserMerger(this.redissonClient, this.serializer);
+  }
+
+  @AfterEach
+  void cleanup() {
+    this.userIds.forEach(
+        userId ->
+            this.redissonClient
+                .getBucket(CacheNames.BLOCKED_USERS_KEY_PREFIX + userId, ByteArrayCodec.INSTANCE)
+                .delete());
+    this.redissonClient.shutdown();
+  }
+
+  private String newUserId() {
+    String userId = UUID.randomUUID().toString();
+    this.userIds.add(userId);
+    return userId;
+  }
+
+  private BlockedUser stored(String userId) {
+    Cache cache = this.redisCacheManager.getCache(CacheNames.BLOCKED_USERS_CACHE_NAME);
+    return cache.get(userId, BlockedUser.class);
+  }
+
+  private static void assertSameWindow(BlockedUser expected, BlockedUser actual) {
+    if (expected == null) {
+      Assertions.assertNull(actual);
+      return;
+    }
+    Assertions.assertNotNull(actual);
+    Assertions.assertEquals(expected.getFromEpochMilli(), actual.getFromEpochMilli());
+    Assertions.assertEquals(expected.getToEpochMilli(), actual.getToEpochMilli());
+  }
+
+  @Test
+  void test_script_merges_like_locked_merge() {
+    // given
+    String lockedUserId = newUserId();
+    String scriptUserId = newUserId();
+    LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    Random random = new Random(15);
+
+    for (int i = 0; i < 500; i++) {
+      // whole minutes away from now, so time passing during the test does not change the result
+      int fromMinutes = random.nextBoolean() ? -1 - random.nextInt(10) : 1 + random.nextInt(5);
+      int toMinutes = fromMinutes + 1 + random.nextInt(15);
+      LocalDateTime from = base.plusMinutes(fromMinutes);
+      LocalDateTime to = base.plusMinutes(toMinutes);
+
+      // when
+      BlockedUser locked =
+          this.lockingMerger.merge(
+              BlockedUser.builder().userId(lockedUserId).from(from).to(to).build());
+      BlockedUser scripted =
+          this.scriptMerger.merge(
+              BlockedUser.builder().userId(scriptUserId).from(from).to(to).build());
+
+      // then
+      assertSameWindow(locked, scripted);
+      assertSameWindow(stored(lockedUserId), stored(scriptUserId));
+    }
+  }
+
+  @Test
+  void test_script_extends_stored_window() {
+    // given
+    String userId = newUserId();
+    LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    this.scriptMerger.merge(
+        BlockedUser.builder()
+            .userId(userId)
+            .from(now.minusMinutes(5))
+            .to(now.plusMinutes(5))
+            .build());
+
+    // when
+    BlockedUser merged =
+        this.scriptMerger.merge(
+            BlockedUser.builder()
+                .userId(userId)
+                .from(now.minusMinutes(1))
+                .to(now.plusMinutes(30))
+                .build());
+
+    // then
+    BlockedUser expected =
+        BlockedUser.builder()
+            .userId(userId)
+            .from(now.minusMinutes(5))
+            .to(now.plusMinutes(30))
+            .build();
+    assertSameWindow(expected, merged);
+    assertSameWindow(expected, stored(userId));
+  }
+
+  private Map<String, BlockedUser> mergeConcurrently(
+      BlockedUserMerger merger, List<String> users, LocalDateTime base) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      Random random = new Random(t);
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 0; i < MESSAGES_PER_THREAD; i++) {
+                  // every window contains now and ends at the same time, so any order of the
+                  // merges must end with the earliest start
+                  merger.merge(
+                      BlockedUser.builder()
+                          .userId(users.get(random.nextInt(users.size())))
+                          .from(base.minusSeconds(1 + random.nextInt(3600)))
+                          .to(base.plusMinutes(10))
+                          .build());
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    Map<String, BlockedUser> result = new ConcurrentHashMap<>();
+    users.forEach(userId -> result.put(userId, stored(userId)));
+    return result;
+  }
+
+  /** Replays the messages of all the threads, and keeps the earliest start of each user. */
+  private static long[] expectedFroms(LocalDateTime base) {
+    long[] froms = new long[HOT_USERS];
+    Arrays.fill(froms, Long.MAX_VALUE);
+    for (int t = 0; t < THREADS; t++) {
+      Random random = new Random(t);
+      for (int i = 0; i < MESSAGES_PER_THREAD; i++) {
+        int user = random.nextInt(HOT_USERS);
+        long from =
+            BlockedUser.builder()
+                .from(base.minusSeconds(1 + random.nextInt(3600)))
+                .build()
+                .getFromEpochMilli();
+        froms[user] = Math.min(froms[user], from);
+      }
+    }
+    return froms;
+  }
+
+  @Test
+  void test_concurrent_merges_are_not_lost() throws Exception {
+    // given
+    List<String> lockedUsers = new ArrayList<>();
+    List<String> scriptUsers = new ArrayList<>();
+    for (int i = 0; i < HOT_USERS; i++) {
+      lockedUsers.add(newUserId());
+      scriptUsers.add(newUserId());
+    }
+
+    LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+    // when
+    Map<String, BlockedUser> locked = mergeConcurrently(this.lockingMerger, lockedUsers, base);
+    Map<String, BlockedUser> scripted = mergeConcurrently(this.scriptMerger, scriptUsers, base);
+
+    // then
+    long[] expectedFroms = expectedFroms(base);
+    for (int i = 0; i < HOT_USERS; i++) {
+      BlockedUser expected =
+          new BlockedUser(
+              lockedUsers.get(i),
+              expectedFroms[i],
+              BlockedUser.builder().to(base.plusMinutes(10)).build().getToEpochMilli());
+      assertSameWindow(expected, locked.get(lockedUsers.get(i)));
+      assertSameWindow(expected, scripted.get(scriptUsers.get(i)));
+    }
+  }
+
+  @Test
+  void test_script_merges_legacy_entry() {
+    // given
+    String userId = newUserId();
+    LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    BlockedUser legacy =
+        BlockedUser.builder()
+            .userId(userId)
+            .from(now.minusMinutes(3))
+            .to(now.plusMinutes(3))
+            .build();
+    LimiterServiceProperties legacyProperties = new LimiterServiceProperties();
+    legacyProperties.getRedis().setWriteFormat(LimiterServiceProperties.RedisFormat.GZIP_JSON);
+    byte[] legacyEntry =
+        new CacheConfiguration().blockedUserRedisSerializer(legacyProperties).serialize(legacy);
+    this.redissonClient
+        .getBucket(CacheNames.BLOCKED_USERS_KEY_PREFIX + userId, ByteArrayCodec.INSTANCE)
+        .set(legacyEntry);
+
+    // when
+    BlockedUser merged =
+        this.scriptMerger.merge(
+            BlockedUser.builder()
+                .userId(userId)
+                .from(now.minusMinutes(5))
+                .to(now.plusMinutes(1))
+                .build());
+
+    // then
+    BlockedUser expected =
+        BlockedUser.builder()
+            .userId(userId)
+            .from(now.minusMinutes(5))
+            .to(now.plusMinutes(3))
+            .build();
+    assertSameWindow(expected, merged);
+    assertSameWindow(expected, stored(userId));
+    byte[] entry =
+        (byte[])
+            this.redissonClient
+                .getBucket(CacheNames.BLOCKED_USERS_KEY_PREFIX + userId, ByteArrayCodec.INSTANCE)
+                .get();
+    Assertions.assertEquals(1, entry[0]);
+  }
+}
@@ -0,0 +1,196 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.model.BlackInfoBlockedUserMapper;
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import io.oigres.ecomm.service.limiter.BlackedInfo;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class BlockedUserRegistryTests {
+  private ReactiveRedisTemplate<String, BlockedUser> template;
+  private ReactiveValueOperations<String, BlockedUser> valueOperations;
+  private BlockedUserRegistry registry;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setup() {
+    this.template = mock(ReactiveRedisTemplate.class);
+    this.valueOperations = mock(ReactiveValueOperations.class);
+    given(this.template.opsForValue()).willReturn(this.valueOperations);
+    LimiterServiceProperties properties = new LimiterServiceProperties();
+    properties.getLocalBlocklist().setEnabled(true);
+    properties.getLocalBlocklist().setSnapshotBatchSize(2);
+    this.registry =
+        new BlockedUserRegistry(
+            new BlockedUserStore(this.template),
+            Mappers.getMapper(BlackInfoBlockedUserMapper.class),
+            properties,
+            new SimpleMeterRegistry());
+  }
+
+  private static BlockedUser blockedUser(String userId, LocalDateTime from, LocalDateTime to) {
+    return BlockedUser.builder().userId(userId).from(from).to(to).build();
+  }
+
+  @Test
+  void test_apply_and_find() {
+    // given
+    LocalDateTime from = LocalDateTime.now().minusMinutes(1);
+    LocalDateTime to = LocalDateTime.now().plusMinutes(5);
+
+    // when
+    this.registry.apply(BlackedInfo.builder().userId("user1").from(from).to(to).build());
+    this.registry.apply(BlackedInfo.builder().from(from).to(to).build());
+
+    // then
+    Assertions.assertEquals(from, this.registry.find("user1").getFrom());
+    Assertions.assertEquals(to, this.registry.find("user1").getTo());
+    Assertions.assertNull(this.registry.find("user2"));
+    Assertions.assertFalse(this.registry.isAuthoritative());
+  }
+
+  @Test
+  void test_apply_already_covered() {
+    // given
+    LocalDateTime from = LocalDateTime.now().minusMinutes(5);
+    LocalDateTime to = LocalDateTime.now().plusMinutes(5);
+    this.registry.apply(BlackedInfo.builder().userId("user1").from(from).to(to).build());
+
+    // when
+    this.registry.apply(
+        BlackedInfo.builder()
+            .userId("user1")
+            .from(from.plusMinutes(1))
+            .to(to.minusMinutes(1))
+            .build());
+
+    // then
+    Assertions.assertEquals(from, this.registry.find("user1").getFrom());
+    Assertions.assertEquals(to, this.registry.find("user1").getTo());
+  }
+
+  @Test
+  void test_purge() {
+    // given
+    LocalDateTime now = LocalDateTime.now();
+    this.registry.apply(
+        BlackedInfo.builder()
+            .userId("user1")
+            .from(now.minusMinutes(10))
+            .to(now.minusMinutes(1))
+            .build());
+    this.registry.apply(
+        BlackedInfo.builder()
+            .userId("user2")
+            .from(now.minusMinutes(10))
+            .to(now.plusMinutes(1))
+            .build());
+
+    // when
+    this.registry.purge();
+
+    // then
+    Assertions.assertNull(this.registry.find("user1"));
+    Assertions.assertNotNull(this.registry.find("user2"));
+  }
+
+  @Test
+  void test_loadSnapshot() {
+    // given
+    LocalDateTime now = LocalDateTime.now();
+    given(this.template.scan(any(ScanOptions.class)))
+        .willReturn(
+            Flux.just("BLOCKED_USERS::user1", "BLOCKED_USERS::user2", "BLOCKED_USERS::user3"));
+    given(this.valueOperations.multiGet(anyList()))
+        .willReturn(
+            Mono.just(
+                Arrays.asList(
+                    blockedUser("user1", now.minusMinutes(1), now.plusMinutes(5)),
+                    blockedUser("user2", now.minusMinutes(1), now.plusMinutes(5)))))
+        .willReturn(
+            Mono.just(
+                Arrays.asList(
+                    (BlockedUser) null,
+                    blockedUser("user4", now.minusMinutes(10), now.minusMinutes(5)))));
+    LocalDateTime newerTo = now.plusMinutes(30);
+    this.registry.apply(
+        BlackedInfo.builder().userId("user2").from(now.minusMinutes(1)).to(newerTo).build());
+
+    // when
+    this.registry.loadSnapshot();
+
+    // then
+    Assertions.assertTrue(this.registry.isAuthoritative());
+    Assertions.assertNotNull(this.registry.find("user1"));
+    Assertions.assertEquals(newerTo, this.registry.find("user2").getTo());
+    Assertions.assertNull(this.registry.find("user3"));
+    Assertions.assertNull(this.registry.find("user4"));
+  }
+
+  @Test
+  void test_loadSnapshot_failure() {
+    // given
+    given(this.template.scan(any(ScanOptions.class)))
+        .willReturn(Flux.error(new IllegalStateException("redis is down")));
+
+    // when
+    this.registry.loadSnapshot();
+
+    // then
+    Assertions.assertFalse(this.registry.isAuthoritative());
+  }
+
+  @Test
+  void test_loadSnapshot_disabled() {
+    // given
+    LimiterServiceProperties properties = new LimiterServiceProperties();
+    BlockedUserRegistry disabled =
+        new BlockedUserRegistry(
+            new BlockedUserStore(this.template),
+            Mappers.getMapper(BlackInfoBlockedUserMapper.class),
+            properties,
+            new SimpleMeterRegistry());
+
+    // when
+    disabled.loadSnapshot();
+
+    // then
+    Assertions.assertFalse(disabled.isAuthoritative());
+    then(this.template).should(never()).scan(any(ScanOptions.class));
+  }
+}
@@ -20,28 +20,100 @@ package io.oigres.ecomm.gateway.services;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.*;
 
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.oigres.ecomm.cache.CacheLockFactory;
+import io.oigres.ecomm.gateway.config.BlockedUserCacheLoader;
+import io.oigres.ecomm.gateway.config.BlockedUserRedisSerializer;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.exceptions.BlockedUserLookupException;
 import io.oigres.ecomm.gateway.model.BlackInfoBlockedUserMapper;
 import io.oigres.ecomm.gateway.model.BlockedUser;
+import io.oigres.ecomm.gateway.util.RevokedTokenRegistry;
 import io.oigres.ecomm.service.limiter.BlackedInfo;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NullValue;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @ExtendWith(SpringExtension.class)
 public class BlockedUserServiceImplTests {
   @TestConfiguration
   @ComponentScan(basePackageClasses = {BlockedUserService.class, BlackInfoBlockedUserMapper.class})
-  static class TestConfig {}
+  static class TestConfig {
+    @Bean
+    LimiterServiceProperties limiterServiceProperties() {
+      LimiterServiceProperties limiterServiceProperties = new LimiterServiceProperties();
+      limiterServiceProperties.getLookup().setTimeout(Duration.ofMillis(50));
+      limiterServiceProperties
+          .getRedis()
+          .setMergeStrategy(LimiterServiceProperties.MergeStrategy.LOCK);
+      return limiterServiceProperties;
+    }
+
+    @Bean
+    @SuppressWarnings("unchecked")
+    ReactiveRedisTemplate<String, BlockedUser> blockedUserReactiveRedisTemplate() {
+      return mock(ReactiveRedisTemplate.class);
+    }
+
+    @Bean
+    CacheLockFactory cacheLockFactory() {
+      return name -> new ReentrantLock();
+    }
+
+    @Bean
+    RedissonClient redissonClient() {
+      return mock(RedissonClient.class);
+    }
+
+    @Bean
+    RedisSerializer<BlockedUser> blockedUserRedisSerializer() {
+      return new BlockedUserRedisSerializer(
+          mock(RedisSerializer.class), LimiterServiceProperties.RedisFormat.BINARY);
+    }
+
+    @Bean
+    MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    AsyncLoadingCache<Object, Object> blockedUsersNearCache(
+        ReactiveRedisTemplate<String, BlockedUser> blockedUserReactiveRedisTemplate,
+        LimiterServiceProperties limiterServiceProperties) {
+      return Caffeine.newBuilder()
+          .buildAsync(
+              new BlockedUserCacheLoader(
+                  blockedUserReactiveRedisTemplate,
+                  limiterServiceProperties.getLookup().getTimeout()));
+    }
+  }
 
   @MockBean(name = "caffeineCacheManager")
   CacheManager caffeineCacheManager;
@@ -49,8 +121,170 @@ public class BlockedUserServiceImplTests {
   @MockBean(name = "redisCacheManager")
   CacheManager redisCacheManager;
 
+  @MockBean RevokedTokenRegistry revokedTokenRegistry;
+  @MockBean BlockedUserRegistry blockedUserRegistry;
+  @MockBean BlockedUserCacheInvalidator blockedUserCacheInvalidator;
+
+  @Autowired ReactiveRedisTemplate<String, BlockedUser> blockedUserReactiveRedisTemplate;
+
+  @Autowired LimiterServiceProperties limiterServiceProperties;
+
+  @Autowired AsyncLoadingCache<Object, Object> blockedUsersNearCache;
+
   @Autowired BlockedUserService blockedUserService;
 
+  @AfterEach
+  void reset() {
+    this.limiterServiceProperties
+        .getLookup()
+        .setFailurePolicy(LimiterServiceProperties.FailurePolicy.FAIL_OPEN);
+    this.blockedUsersNearCache.synchronous().invalidateAll();
+    Mockito.reset(this.blockedUserReactiveRedisTemplate);
+  }
+
+  @SuppressWarnings("unchecked")
+  private ReactiveValueOperations<String, BlockedUser> givenRedisReturns(Mono<BlockedUser> result) {
+    ReactiveValueOperations<String, BlockedUser> valueOperations =
+        mock(ReactiveValueOperations.class);
+    Mockito.doReturn(valueOperations).when(this.blockedUserReactiveRedisTemplate).opsForValue();
+    Mockito.doReturn(result).when(valueOperations).get(any());
+    return valueOperations;
+  }
+
+  private static BlockedUser blockedUser(String userId) {
+    return BlockedUser.builder()
+        .userId(userId)
+        .from(LocalDateTime.now().minusMinutes(5))
+        .to(LocalDateTime.now().plusMinutes(5))
+        .build();
+  }
+
+  @Test
+  void test_findBlockedUserFor_local_blocklist() {
+    // given
+    String userId = "user14@yopmail.com";
+    BlockedUser blockedUser = blockedUser(userId);
+    Mockito.doReturn(true).when(this.blockedUserRegistry).isAuthoritative();
+    Mockito.doReturn(blockedUser).when(this.blockedUserRegistry).find(eq(userId));
+
+    // when
+    BlockedUser actualBlockedUser = this.blockedUserService.findBlockedUserFor(userId).block();
+    BlockedUser notBlockedUser = this.blockedUserService.findBlockedUserFor("user15").block();
+
+    // then
+    Assertions.assertSame(blockedUser, actualBlockedUser);
+    Assertions.assertNull(notBlockedUser);
+    Mockito.verifyNoInteractions(this.blockedUserReactiveRedisTemplate);
+  }
+
+  @Test
+  void test_findBlockedUserFor_near_cache_hit() {
+    // given
+    String userId = "user14@yopmail.com";
+    BlockedUser cachedBlockedUser = blockedUser(userId);
+    this.blockedUsersNearCache.synchronous().put(userId, cachedBlockedUser);
+
+    // when
+    BlockedUser actualBlockedUser = this.blockedUserService.findBlockedUserFor(userId).block();
+
+    // then
+    Assertions.assertSame(cachedBlockedUser, actualBlockedUser);
+    Mockito.verifyNoInteractions(this.blockedUserReactiveRedisTemplate);
+  }
+
+  @Test
+  void test_findBlockedUserFor_redis_hit() {
+    // given
+    String userId = "user14@yopmail.com";
+    BlockedUser storedBlockedUser = blockedUser(userId);
+    ReactiveValueOperations<String, BlockedUser> valueOperations =
+        givenRedisReturns(Mono.just(storedBlockedUser));
+
+    // when
+    BlockedUser actualBlockedUser = this.blockedUserService.findBlockedUserFor(userId).block();
+    BlockedUser cachedBlockedUser = this.blockedUserService.findBlockedUserFor(userId).block();
+
+    // then
+    Assertions.assertSame(storedBlockedUser, actualBlockedUser);
+    Assertions.assertSame(storedBlockedUser, cachedBlockedUser);
+    Mockito.verify(valueOperations).get(eq(CacheNames.BLOCKED_USERS_CACHE_NAME + "::" + userId));
+  }
+
+  @Test
+  void test_findBlockedUserFor_redis_miss() {
+    // given
+    String userId = "user14@yopmail.com";
+    ReactiveValueOperations<String, BlockedUser> valueOperations = givenRedisReturns(Mono.empty());
+
+    // when
+    BlockedUser actualBlockedUser = this.blockedUserService.findBlockedUserFor(userId).block();
+    BlockedUser cachedBlockedUser = this.blockedUserService.findBlockedUserFor(userId).block();
+
+    // then
+    Assertions.assertNull(actualBlockedUser);
+    Assertions.assertNull(cachedBlockedUser);
+    Assertions.assertSame(
+        NullValue.INSTANCE, this.blockedUsersNearCache.synchronous().getIfPresent(userId));
+    Mockito.verify(valueOperations).get(any());
+  }
+
+  @Test
+  void test_findBlockedUserFor_concurrent_misses_share_redis_read() {
+    // given
+    String userId = "user14@yopmail.com";
+    BlockedUser storedBlockedUser = blockedUser(userId);
+    ReactiveValueOperations<String, BlockedUser> valueOperations =
+        givenRedisReturns(Mono.delay(Duration.ofMillis(20)).thenReturn(storedBlockedUser));
+
+    // when
+    List<BlockedUser> actualBlockedUsers =
+        Flux.range(0, 10)
+            .flatMap(i -> this.blockedUserService.findBlockedUserFor(userId))
+            .collectList()
+            .block(Duration.ofSeconds(5));
+
+    // then
+    Assertions.assertEquals(10, actualBlockedUsers.size());
+    actualBlockedUsers.forEach(
+        actualBlockedUser -> Assertions.assertSame(storedBlockedUser, actualBlockedUser));
+    Mockito.verify(valueOperations, Mockito.times(1)).get(any());
+  }
+
+  @Test
+  void test_findBlockedUserFor_timeout_fail_open() {
+    // given
+    String userId = "user14@yopmail.com";
+    givenRedisReturns(Mono.never());
+
+    // when
+    BlockedUser actualBlockedUser =
+        this.blockedUserService.findBlockedUserFor(userId).block(Duration.ofSeconds(5));
+
+    // then
+    Assertions.assertNull(actualBlockedUser);
+    Assertions.assertNull(this.blockedUsersNearCache.synchronous().getIfPresent(userId));
+  }
+
+  @Test
+  void test_findBlockedUserFor_timeout_fail_closed() {
+    // given
+    String userId = "user14@yopmail.com";
+    this.limiterServiceProperties
+        .getLookup()
+        .setFailurePolicy(LimiterServiceProperties.FailurePolicy.FAIL_CLOSED);
+    givenRedisReturns(Mono.never());
+
+    // when
+    Mono<BlockedUser> lookup = this.blockedUserService.findBlockedUserFor(userId);
+
+    // then
+    BlockedUserLookupException exception =
+        Assertions.assertThrows(
+            BlockedUserLookupException.class, () -> lookup.block(Duration.ofSeconds(5)));
+    Assertions.assertInstanceOf(TimeoutException.class, exception.getCause());
+    Assertions.assertNull(this.blockedUsersNearCache.synchronous().getIfPresent(userId));
+  }
+
   @Test
   void test_retrieveBlockedUserFor_default_flow() {
     // given
@@ -101,6 +335,7 @@ public class BlockedUserServiceImplTests {
     Assertions.assertEquals(from, putBlockedUser.get().getFrom());
     Assertions.assertEquals(to, putBlockedUser.get().getTo());
     Mockito.verify(caffeineCache).evict(eq(userId));
+    Mockito.verify(this.blockedUserCacheInvalidator).publish(eq(userId));
   }
 
   @Test
@@ -147,6 +382,7 @@ public class BlockedUserServiceImplTests {
     Assertions.assertEquals(from, putBlockedUser.get().getFrom());
     Assertions.assertEquals(to, putBlockedUser.get().getTo());
     Mockito.verify(caffeineCache).evict(eq(userId));
+    Mockito.verify(this.blockedUserCacheInvalidator).publish(eq(userId));
   }
 
   @Test
@@ -189,8 +425,9 @@ public class BlockedUserServiceImplTests {
     Assertions.assertEquals(userId, putUserId.get());
     Assertions.assertEquals(userId, putBlockedUser.get().getUserId());
     Assertions.assertEquals(cachedFrom, putBlockedUser.get().getFrom());
-    Assertions.assertEquals(cachedTo, putBlockedUser.get().getTo());
+    Assertions.assertEquals(to, putBlockedUser.get().getTo());
     Mockito.verify(caffeineCache).evict(eq(userId));
+    Mockito.verify(this.blockedUserCacheInvalidator).publish(eq(userId));
   }
 
   @Test
@@ -233,8 +470,9 @@ public class BlockedUserServiceImplTests {
     Assertions.assertEquals(userId, putUserId.get());
     Assertions.assertEquals(userId, putBlockedUser.get().getUserId());
     Assertions.assertEquals(from, putBlockedUser.get().getFrom());
-    Assertions.assertEquals(to, putBlockedUser.get().getTo());
+    Assertions.assertEquals(cachedTo, putBlockedUser.get().getTo());
     Mockito.verify(caffeineCache).evict(eq(userId));
+    Mockito.verify(this.blockedUserCacheInvalidator).publish(eq(userId));
   }
 
   @Test
@@ -276,5 +514,129 @@ public class BlockedUserServiceImplTests {
     Assertions.assertEquals(from, putBlockedUser.get().getFrom());
     Assertions.assertEquals(to, putBlockedUser.get().getTo());
     Mockito.verify(caffeineCache).evict(eq(userId));
+    Mockito.verify(this.blockedUserCacheInvalidator).publish(eq(userId));
+  }
+
+  @Test
+  void test_processBlackedInfos_merges_messages_of_each_user() {
+    // given
+    LocalDateTime now = LocalDateTime.now();
+    List<BlackedInfo> blackedInfos =
+        List.of(
+            BlackedInfo.builder()
+                .userId("user14")
+                .from(now.minusMinutes(5))
+                .to(now.plusMinutes(5))
+                .build(),
+            BlackedInfo.builder()
+                .userId("user15")
+                .from(now.minusMinutes(1))
+                .to(now.plusMinutes(1))
+                .build(),
+            BlackedInfo.builder()
+                .userId("user14")
+                .from(now.minusMinutes(10))
+                .to(now.plusMinutes(5))
+                .build(),
+            BlackedInfo.builder().userId("").from(now).to(now).build());
+    Cache redisCache = mock(Cache.class);
+    Mockito.doReturn(redisCache)
+        .when(this.redisCacheManager)
+        .getCache(CacheNames.BLOCKED_USERS_CACHE_NAME);
+    Cache caffeineCache = mock(Cache.class);
+    Mockito.doReturn(caffeineCache)
+        .when(this.caffeineCacheManager)
+        .getCache(CacheNames.BLOCKED_USERS_CACHE_NAME);
+
+    // when
+    int changed = this.blockedUserService.processBlackedInfos(blackedInfos);
+
+    // then
+    Assertions.assertEquals(2, changed);
+    then(redisCache).should(times(1)).get(eq("user14"), eq(BlockedUser.class));
+    then(redisCache).should(times(1)).get(eq("user15"), eq(BlockedUser.class));
+    ArgumentCaptor<BlockedUser> user14 = ArgumentCaptor.forClass(BlockedUser.class);
+    then(redisCache).should().put(eq("user14"), user14.capture());
+    Assertions.assertEquals(now.minusMinutes(10), user14.getValue().getFrom());
+    Assertions.assertEquals(now.plusMinutes(5), user14.getValue().getTo());
+    then(redisCache).should().put(eq("user15"), any());
+    Mockito.verify(this.blockedUserCacheInvalidator).publish(eq("user14"));
+    Mockito.verify(this.blockedUserCacheInvalidator).publish(eq("user15"));
+  }
+
+  @Test
+  void test_processBlackedInfos_already_blocked() {
+    // given
+    LocalDateTime now = LocalDateTime.now();
+    BlockedUser cachedBlockedUser =
+        BlockedUser.builder()
+            .userId("user14")
+            .from(now.minusMinutes(10))
+            .to(now.plusMinutes(10))
+            .build();
+    Cache redisCache = mock(Cache.class);
+    Mockito.doReturn(redisCache)
+        .when(this.redisCacheManager)
+        .getCache(CacheNames.BLOCKED_USERS_CACHE_NAME);
+    Mockito.doReturn(cachedBlockedUser).when(redisCache).get(eq("user14"), eq(BlockedUser.class));
+
+    // when
+    int changed =
+        this.blockedUserService.processBlackedInfos(
+            List.of(
+                BlackedInfo.builder()
+                    .userId("user14")
+                    .from(now.minusMinutes(1))
+                    .to(now.plusMinutes(1))
+                    .build()));
+
+    // then
+    Assertions.assertEquals(0, changed);
+    then(redisCache).should(never()).put(any(), any());
+    then(this.blockedUserCacheInvalidator).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void test_processBlackedInfos_new_block_extends_stored_window() {
+    // given
+    LocalDateTime now = LocalDateTime.now();
+    BlockedUser cachedBlockedUser =
+        BlockedUser.builder()
+            .userId("user14")
+            .from(now.minusMinutes(10))
+            .to(now.plusMinutes(10))
+            .build();
+    Cache redisCache = mock(Cache.class);
+    Mockito.doReturn(redisCache)
+        .when(this.redisCacheManager)
+        .getCache(CacheNames.BLOCKED_USERS_CACHE_NAME);
+    Mockito.doReturn(cachedBlockedUser).when(redisCache).get(eq("user14"), eq(BlockedUser.class));
+    Cache caffeineCache = mock(Cache.class);
+    Mockito.doReturn(caffeineCache)
+        .when(this.caffeineCacheManager)
+        .getCache(CacheNames.BLOCKED_USERS_CACHE_NAME);
+
+    // when
+    int changed =
+        this.blockedUserService.processBlackedInfos(
+            List.of(
+                BlackedInfo.builder()
+                    .userId("user14")
+                    .from(now.minusMinutes(1))
+                    .to(now.plusMinutes(20))
+                    .build(),
+                BlackedInfo.builder()
+                    .userId("user14")
+                    .from(now.minusMinutes(1))
+                    .to(now.plusMinutes(30))
+                    .build()));
+
+    // then
+    Assertions.assertEquals(1, changed);
+    ArgumentCaptor<BlockedUser> user14 = ArgumentCaptor.forClass(BlockedUser.class);
+    then(redisCache).should().put(eq("user14"), user14.capture());
+    Assertions.assertEquals(now.minusMinutes(10), user14.getValue().getFrom());
+    Assertions.assertEquals(now.plusMinutes(30), user14.getValue().getTo());
+    Mockito.verify(this.blockedUserCacheInvalidator).publish(eq("user14"));
   }
 }
@@ -0,0 +1,96 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+
+import io.oigres.ecomm.gateway.util.RevokedTokenRegistry;
+import io.oigres.ecomm.service.limiter.BlackedInfo;
+import java.time.LocalDateTime;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+public class LocalBlocklistListenerTests {
+
+  @TestConfiguration
+  @ComponentScan
+  static class TestConfig {}
+
+  @MockBean BlockedUserService blockedUserService;
+  @MockBean RevokedTokenRegistry revokedTokenRegistry;
+  @MockBean BlockedUserRegistry blockedUserRegistry;
+  @MockBean BlockedUserCacheInvalidator blockedUserCacheInvalidator;
+  @MockBean LockingBlockedUserMerger lockingBlockedUserMerger;
+  @Autowired LocalBlocklistListener localBlocklistListener;
+
+  @Test
+  void test_default_flow() {
+    // given
+    String userId = "user14@yopmail.com";
+    BlackedInfo blackedInfo =
+        BlackedInfo.builder()
+            .userId(userId)
+            .from(LocalDateTime.now().minusHours(2))
+            .to(LocalDateTime.now())
+            .build();
+    ConsumerRecord<String, BlackedInfo> record =
+        new ConsumerRecord<>("my_topic", 1, 15, userId, blackedInfo);
+
+    // when
+    localBlocklistListener.consumeMessage(record);
+
+    // then
+    then(this.blockedUserRegistry).should().apply(blackedInfo);
+  }
+
+  @Test
+  void test_null_blacked_info_flow() {
+    // given
+    ConsumerRecord<String, BlackedInfo> record =
+        new ConsumerRecord<>("my_topic", 1, 15, "user14@yopmail.com", null);
+
+    // when
+    localBlocklistListener.consumeMessage(record);
+
+    // then
+    then(this.blockedUserRegistry).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void test_registry_error_flow() {
+    // given
+    BlackedInfo blackedInfo = BlackedInfo.builder().userId("user14@yopmail.com").build();
+    willThrow(new IllegalStateException()).given(this.blockedUserRegistry).apply(any());
+
+    // when
+    localBlocklistListener.consumeMessage(
+        new ConsumerRecord<>("my_topic", 1, 15, "user14@yopmail.com", blackedInfo));
+
+    // then
+    then(this.blockedUserRegistry).should().apply(blackedInfo);
+  }
+}
@@ -0,0 +1,104 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+
+import io.oigres.ecomm.gateway.model.RevokedToken;
+import io.oigres.ecomm.gateway.util.RevokedTokenRegistry;
+import java.time.Instant;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+public class RevokedTokensListenerTests {
+
+  @TestConfiguration
+  @ComponentScan
+  static class TestConfig {}
+
+  @MockBean BlockedUserService blockedUserService;
+  @MockBean RevokedTokenRegistry revokedTokenRegistry;
+  @MockBean BlockedUserRegistry blockedUserRegistry;
+  @MockBean BlockedUserCacheInvalidator blockedUserCacheInvalidator;
+  @MockBean LockingBlockedUserMerger lockingBlockedUserMerger;
+  @Autowired RevokedTokensListener revokedTokensListener;
+
+  @Test
+  void test_default_flow() {
+    // given
+    Instant expiresAt = Instant.now().plusSeconds(3600);
+    RevokedToken revokedToken =
+        RevokedToken.builder().tokenId("token-1").subject("15").expiresAt(expiresAt).build();
+    ConsumerRecord<String, RevokedToken> record =
+        new ConsumerRecord<>("my_topic", 1, 15, "token-1", revokedToken);
+
+    // when
+    revokedTokensListener.consumeMessage(record);
+
+    // then
+    then(this.revokedTokenRegistry).should().revoke("token-1", expiresAt.toEpochMilli());
+  }
+
+  @Test
+  void test_incomplete_revoked_token_flow() {
+    // given
+    ConsumerRecord<String, RevokedToken> withoutValue =
+        new ConsumerRecord<>("my_topic", 1, 15, "token-1", null);
+    ConsumerRecord<String, RevokedToken> withoutExpiration =
+        new ConsumerRecord<>(
+            "my_topic", 1, 16, "token-1", RevokedToken.builder().tokenId("token-1").build());
+
+    // when
+    revokedTokensListener.consumeMessage(withoutValue);
+    revokedTokensListener.consumeMessage(withoutExpiration);
+
+    // then
+    then(this.revokedTokenRegistry).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void test_not_catch_exception_flow() {
+    // given
+    RevokedToken revokedToken =
+        RevokedToken.builder()
+            .tokenId("token-1")
+            .expiresAt(Instant.now().plusSeconds(3600))
+            .build();
+    ConsumerRecord<String, RevokedToken> record =
+        new ConsumerRecord<>("my_topic", 1, 15, "token-1", revokedToken);
+    willThrow(new RuntimeException())
+        .given(this.revokedTokenRegistry)
+        .revoke(anyString(), anyLong());
+
+    // when
+    revokedTokensListener.consumeMessage(record);
+
+    // then
+    then(this.revokedTokenRegistry).should().revoke(anyString(), anyLong());
+  }
+}
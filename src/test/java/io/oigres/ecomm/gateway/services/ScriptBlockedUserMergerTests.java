@@ -0,0 +1,111 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+import io.oigres.ecomm.gateway.config.BlockedUserRedisSerializer;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.model.BlockedUser;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RFuture;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+public class ScriptBlockedUserMergerTests {
+  private RScript script;
+  private BlockedUserRedisSerializer serializer;
+  private ScriptBlockedUserMerger merger;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setup() {
+    this.script = mock(RScript.class);
+    RedissonClient redissonClient = mock(RedissonClient.class);
+    given(redissonClient.getScript(ByteArrayCodec.INSTANCE)).willReturn(this.script);
+    this.serializer =
+        new BlockedUserRedisSerializer(
+            mock(RedisSerializer.class), LimiterServiceProperties.RedisFormat.BINARY);
+    this.merger = new ScriptBlockedUserMerger(redissonClient, this.serializer);
+  }
+
+  private static BlockedUser blockedUser(String userId) {
+    LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    return BlockedUser.builder()
+        .userId(userId)
+        .from(now.minusMinutes(5))
+        .to(now.plusMinutes(5))
+        .build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void givenResult(String userId, Object... result) {
+    RFuture<Object> future = mock(RFuture.class);
+    given(future.toCompletableFuture())
+        .willReturn(CompletableFuture.completedFuture(List.of(result)));
+    given(
+            this.script.evalAsync(
+                any(RScript.Mode.class),
+                anyString(),
+                any(RScript.ReturnType.class),
+                eq(List.of(CacheNames.BLOCKED_USERS_KEY_PREFIX + userId)),
+                any(Object[].class)))
+        .willReturn(future);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void test_mergeAll_sends_all_scripts_together() {
+    // given
+    BlockedUser user14 = blockedUser("user14");
+    BlockedUser user15 = blockedUser("user15");
+    givenResult("user14", ScriptBlockedUserMerger.STORED, this.serializer.serialize(user14));
+    givenResult("user15", ScriptBlockedUserMerger.UNCHANGED);
+
+    // when
+    List<BlockedUser> stored = this.merger.mergeAll(List.of(user14, user15));
+
+    // then
+    then(this.script)
+        .should(times(2))
+        .evalAsync(
+            any(RScript.Mode.class),
+            anyString(),
+            any(RScript.ReturnType.class),
+            any(List.class),
+            any(Object[].class));
+    then(this.script).shouldHaveNoMoreInteractions();
+    Assertions.assertEquals(1, stored.size());
+    Assertions.assertEquals("user14", stored.get(0).getUserId());
+    Assertions.assertEquals(user14.getToEpochMilli(), stored.get(0).getToEpochMilli());
+  }
+}
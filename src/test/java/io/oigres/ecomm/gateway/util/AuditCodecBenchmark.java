@@ -0,0 +1,101 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.oigres.ecomm.service.limiter.RequestAudit;
+import io.oigres.ecomm.service.limiter.ResponseAudit;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the cost of encoding typical request and response audits with the JSON codec, which is
+ * how the kafka JsonSerializer encodes them, and with the binary codec. The payload size of each
+ * codec is reported as the payloadBytes secondary result.
+ *
+ * <p>Run it with: mvn -Pbenchmark test -DskipTests -Dbenchmark=AuditCodecBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AuditCodecBenchmark {
+
+  @Param({"json", "binary"})
+  private String codecName;
+
+  private AuditCodec codec;
+  private RequestAudit requestAudit;
+  private ResponseAudit responseAudit;
+
+  /** Size of the last encoded audit, which is the same on every operation. */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Payload {
+    public long payloadBytes;
+  }
+
+  @Setup
+  public void setup() {
+    this.codec =
+        BinaryAuditCodec.NAME.equals(this.codecName)
+            ? new BinaryAuditCodec()
+            : new JsonAuditCodec(Object.class);
+    this.requestAudit = BinaryAuditCodecTests.requestAudit();
+    this.responseAudit = BinaryAuditCodecTests.responseAudit();
+  }
+
+  @Benchmark
+  public byte[] encode_request(Payload payload) {
+    byte[] data = this.codec.encode(this.requestAudit);
+    payload.payloadBytes = data.length;
+    return data;
+  }
+
+  @Benchmark
+  public byte[] encode_response(Payload payload) {
+    byte[] data = this.codec.encode(this.responseAudit);
+    payload.payloadBytes = data.length;
+    return data;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(AuditCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+        .run();
+  }
+}
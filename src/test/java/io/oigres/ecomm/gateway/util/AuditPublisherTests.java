@@ -0,0 +1,179 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+
+public class AuditPublisherTests {
+  private LimiterServiceProperties properties;
+  private KafkaTemplate<String, Object> kafkaTemplate;
+  private MeterRegistry meterRegistry;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setup() {
+    this.properties = new LimiterServiceProperties();
+    this.properties.getAudit().setBufferSize(4);
+    this.properties.getAudit().setBatchSize(3);
+    this.kafkaTemplate = mock(KafkaTemplate.class);
+    given(this.kafkaTemplate.sendDefault(anyString(), any()))
+        .willReturn(CompletableFuture.completedFuture(null));
+    this.meterRegistry = new SimpleMeterRegistry();
+  }
+
+  private AuditPublisher newPublisher(LimiterServiceProperties.OverflowPolicy policy) {
+    this.properties.getAudit().setOverflowPolicy(policy);
+    return new AuditPublisher(this.properties, this.kafkaTemplate, this.meterRegistry);
+  }
+
+  private List<Object> sentAudits(int times) {
+    ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+    then(this.kafkaTemplate).should(times(times)).sendDefault(anyString(), captor.capture());
+    return captor.getAllValues();
+  }
+
+  private double dropped() {
+    return this.meterRegistry.get("gateway.audit.dropped").counter().count();
+  }
+
+  @Test
+  void test_audits_are_drained_in_batches() {
+    // given
+    AuditPublisher publisher = newPublisher(LimiterServiceProperties.OverflowPolicy.DROP_OLDEST);
+    for (int i = 0; i < 4; i++) {
+      publisher.publish("15", i);
+    }
+
+    // when
+    int first = publisher.drain();
+    int second = publisher.drain();
+
+    // then
+    Assertions.assertEquals(3, first);
+    Assertions.assertEquals(1, second);
+    Assertions.assertEquals(List.of(0, 1, 2, 3), sentAudits(4));
+    Assertions.assertEquals(0, publisher.depth());
+    Assertions.assertEquals(
+        4, this.meterRegistry.get("gateway.audit.publish.latency").timer().count());
+  }
+
+  @Test
+  void test_drop_oldest() {
+    // given
+    AuditPublisher publisher = newPublisher(LimiterServiceProperties.OverflowPolicy.DROP_OLDEST);
+
+    // when
+    for (int i = 0; i < 6; i++) {
+      publisher.publish("15", i);
+    }
+    publisher.drain();
+    publisher.drain();
+
+    // then
+    Assertions.assertEquals(List.of(2, 3, 4, 5), sentAudits(4));
+    Assertions.assertEquals(2.0, dropped());
+  }
+
+  @Test
+  void test_drop_newest() {
+    // given
+    AuditPublisher publisher = newPublisher(LimiterServiceProperties.OverflowPolicy.DROP_NEWEST);
+
+    // when
+    for (int i = 0; i < 6; i++) {
+      publisher.publish("15", i);
+    }
+    publisher.drain();
+    publisher.drain();
+
+    // then
+    Assertions.assertEquals(List.of(0, 1, 2, 3), sentAudits(4));
+    Assertions.assertEquals(2.0, dropped());
+  }
+
+  @Test
+  void test_sample() {
+    // given
+    this.properties.getAudit().setBufferSize(8);
+    this.properties.getAudit().setBatchSize(8);
+    this.properties.getAudit().setSampleEvery(3);
+    AuditPublisher publisher = newPublisher(LimiterServiceProperties.OverflowPolicy.SAMPLE);
+
+    // when
+    for (int i = 0; i < 10; i++) {
+      publisher.publish("15", i);
+    }
+    publisher.drain();
+
+    // then
+    // the first half is kept, then one of every three
+    Assertions.assertEquals(List.of(0, 1, 2, 3, 4, 7), sentAudits(6));
+    Assertions.assertEquals(4.0, dropped());
+  }
+
+  @Test
+  void test_publisher_thread_sends_audits() throws Exception {
+    // given
+    this.properties.getAudit().setBufferSize(1024);
+    AuditPublisher publisher = newPublisher(LimiterServiceProperties.OverflowPolicy.DROP_NEWEST);
+    publisher.start();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    // when
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                for (int i = 0; i < 200; i++) {
+                  publisher.publish("15", i);
+                }
+              }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    // then
+    then(this.kafkaTemplate).should(timeout(5000).times(800)).sendDefault(anyString(), any());
+    publisher.stop();
+    Assertions.assertEquals(0.0, dropped());
+  }
+}
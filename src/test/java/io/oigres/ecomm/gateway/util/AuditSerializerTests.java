@@ -0,0 +1,90 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.oigres.ecomm.service.limiter.RequestAudit;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+public class AuditSerializerTests {
+
+  private static String header(RecordHeaders headers, String name) {
+    return new String(headers.lastHeader(name).value(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void test_serializer_encodes_only_audits() {
+    // given
+    AuditSerializer serializer = new AuditSerializer();
+    serializer.configure(Map.of(AuditSerializer.CODEC_CONFIG, BinaryAuditCodec.NAME), false);
+    RecordHeaders auditHeaders = new RecordHeaders();
+    RecordHeaders usageHeaders = new RecordHeaders();
+
+    // when
+    byte[] audit =
+        serializer.serialize("topic", auditHeaders, BinaryAuditCodecTests.requestAudit());
+    byte[] usage = serializer.serialize("topic", usageHeaders, Map.of("requests", 3));
+
+    // then
+    Assertions.assertEquals(BinaryAuditCodec.VERSION, audit[0]);
+    Assertions.assertEquals(BinaryAuditCodec.NAME, header(auditHeaders, AuditCodec.CODEC_HEADER));
+    Assertions.assertEquals("{\"requests\":3}", new String(usage, StandardCharsets.UTF_8));
+    Assertions.assertNull(usageHeaders.lastHeader(AuditCodec.CODEC_HEADER));
+  }
+
+  @Test
+  void test_json_is_the_default_codec() {
+    // given
+    AuditSerializer serializer = new AuditSerializer();
+    serializer.configure(Map.of(), false);
+    RecordHeaders headers = new RecordHeaders();
+    RequestAudit audit = BinaryAuditCodecTests.requestAudit();
+
+    // when
+    byte[] data = serializer.serialize("topic", headers, audit);
+
+    // then
+    Assertions.assertEquals(JsonAuditCodec.NAME, header(headers, AuditCodec.CODEC_HEADER));
+    // consumers with a JsonDeserializer still find the type of the audit
+    Assertions.assertEquals(
+        RequestAudit.class.getName(),
+        header(headers, AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME));
+    // and the audit is written as the JsonSerializer writes it
+    try (JsonSerializer<Object> jsonSerializer = new JsonSerializer<>()) {
+      Assertions.assertArrayEquals(
+          jsonSerializer.serialize("topic", new RecordHeaders(), audit), data);
+    }
+  }
+
+  @Test
+  void test_unknown_codec_is_rejected() {
+    // given
+    AuditSerializer serializer = new AuditSerializer();
+
+    // when
+    // then
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> serializer.configure(Map.of(AuditSerializer.CODEC_CONFIG, "avro"), false));
+  }
+}
@@ -0,0 +1,175 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.oigres.ecomm.gateway.config.GatewayProperties;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+public class FairAdmissionQueueTests {
+  private GatewayProperties properties;
+  private MeterRegistry meterRegistry;
+  private List<String> admitted;
+
+  @BeforeEach
+  void setup() {
+    this.properties = new GatewayProperties();
+    this.properties.getFairQueue().setEnabled(true);
+    this.properties.getFairQueue().setMaxInFlight(1);
+    this.properties.getFairQueue().setMaxDelay(Duration.ofSeconds(10));
+    this.meterRegistry = new SimpleMeterRegistry();
+    this.admitted = new CopyOnWriteArrayList<>();
+  }
+
+  private Disposable acquire(FairAdmissionQueue queue, String userId) {
+    return queue
+        .acquire(userId)
+        .subscribe(
+            result -> {
+              if (result) {
+                this.admitted.add(userId);
+              }
+            });
+  }
+
+  @Test
+  void test_users_take_turns() {
+    // given
+    FairAdmissionQueue queue = new FairAdmissionQueue(this.properties, this.meterRegistry);
+    acquire(queue, "heavy");
+    for (int i = 0; i < 3; i++) {
+      acquire(queue, "heavy");
+    }
+    acquire(queue, "light");
+
+    // when
+    for (int i = 0; i < 4; i++) {
+      queue.release();
+    }
+
+    // then
+    Assertions.assertEquals(List.of("heavy", "heavy", "light", "heavy", "heavy"), this.admitted);
+    Assertions.assertEquals(0, queue.queued());
+  }
+
+  @Test
+  void test_quantum_is_forwarded_on_each_turn() {
+    // given
+    this.properties.getFairQueue().setQuantum(2);
+    FairAdmissionQueue queue = new FairAdmissionQueue(this.properties, this.meterRegistry);
+    acquire(queue, "first");
+    for (int i = 0; i < 3; i++) {
+      acquire(queue, "heavy");
+    }
+    for (int i = 0; i < 2; i++) {
+      acquire(queue, "light");
+    }
+
+    // when
+    for (int i = 0; i < 5; i++) {
+      queue.release();
+    }
+
+    // then
+    Assertions.assertEquals(
+        List.of("first", "heavy", "heavy", "light", "light", "heavy"), this.admitted);
+  }
+
+  @Test
+  void test_queue_is_bounded() {
+    // given
+    this.properties.getFairQueue().setMaxQueuedPerUser(2);
+    this.properties.getFairQueue().setMaxQueued(3);
+    FairAdmissionQueue queue = new FairAdmissionQueue(this.properties, this.meterRegistry);
+    acquire(queue, "15");
+
+    // when
+    queue.acquire("15").subscribe();
+    queue.acquire("15").subscribe();
+    Boolean overUser = queue.acquire("15").block();
+    queue.acquire("16").subscribe();
+    Boolean overTotal = queue.acquire("17").block();
+
+    // then
+    Assertions.assertFalse(overUser);
+    Assertions.assertFalse(overTotal);
+    Assertions.assertEquals(3, queue.queued());
+    Assertions.assertEquals(
+        2.0,
+        this.meterRegistry
+            .get("gateway.fair.queue.rejected")
+            .tag("reason", "full")
+            .counter()
+            .count());
+  }
+
+  @Test
+  void test_waiting_is_bounded_in_time() {
+    // given
+    this.properties.getFairQueue().setMaxDelay(Duration.ofMillis(50));
+    FairAdmissionQueue queue = new FairAdmissionQueue(this.properties, this.meterRegistry);
+    acquire(queue, "15");
+
+    // when
+    Boolean result = queue.acquire("16").block(Duration.ofSeconds(5));
+
+    // then
+    Assertions.assertFalse(result);
+    Assertions.assertEquals(0, queue.queued());
+    queue.release();
+    Assertions.assertTrue(queue.acquire("16").block(Duration.ofSeconds(5)));
+  }
+
+  @Test
+  void test_cancelled_request_leaves_the_queue() {
+    // given
+    FairAdmissionQueue queue = new FairAdmissionQueue(this.properties, this.meterRegistry);
+    acquire(queue, "15");
+    Disposable waiting = acquire(queue, "16");
+    acquire(queue, "17");
+
+    // when
+    waiting.dispose();
+    queue.release();
+
+    // then
+    Assertions.assertEquals(List.of("15", "17"), this.admitted);
+  }
+
+  @Test
+  void test_disabled() {
+    // given
+    this.properties.getFairQueue().setEnabled(false);
+    FairAdmissionQueue queue = new FairAdmissionQueue(this.properties, this.meterRegistry);
+
+    // when
+    for (int i = 0; i < 10; i++) {
+      acquire(queue, "15");
+    }
+
+    // then
+    Assertions.assertEquals(10, this.admitted.size());
+  }
+}
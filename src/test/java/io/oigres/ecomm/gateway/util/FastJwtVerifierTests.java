@@ -0,0 +1,308 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.oigres.ecomm.gateway.config.AuthenticationProperties;
+import io.oigres.ecomm.service.users.api.model.ValidateUserResponse;
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import javax.crypto.SecretKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class FastJwtVerifierTests {
+  private static final String secret = "Yn2kjibddFAWtnPJ2AFlL8WXmohJMCvigQggaEypa5E=";
+  private static final SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+
+  private static JwtKeyRing keyRing() {
+    AuthenticationProperties.Jwt jwt = new AuthenticationProperties.Jwt();
+    jwt.setSecret(secret);
+    AuthenticationProperties.Jwt.Key other = new AuthenticationProperties.Jwt.Key();
+    other.setId("k2");
+    other.setSecret(secret.replace('Y', 'Z'));
+    jwt.getKeys().add(other);
+    AuthenticationProperties authenticationProperties = new AuthenticationProperties();
+    authenticationProperties.setJwt(jwt);
+    return new JwtKeyRing(authenticationProperties);
+  }
+
+  private static AuthenticationProperties.Jwt.Key publicKey(
+      String id, JwtAlgorithm algorithm, KeyPair keyPair) {
+    AuthenticationProperties.Jwt.Key key = new AuthenticationProperties.Jwt.Key();
+    key.setId(id);
+    key.setAlgorithm(algorithm);
+    key.setPublicKey(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+    return key;
+  }
+
+  private static Date inOneHour() {
+    return new Date(System.currentTimeMillis() + 3_600_000);
+  }
+
+  @Test
+  void test_valid_token() {
+    // given
+    JWTUtil jwtUtil = new JWTUtil(secret, "admin");
+    FastJwtVerifier verifier = new FastJwtVerifier(keyRing(), "admin");
+    String token =
+        jwtUtil.createToken(ValidateUserResponse.builder().userId(15L).profiles(List.of()).build());
+
+    // when
+    TokenValidationResult result = verifier.verify(token);
+
+    // then
+    TokenValidationResult expected = jwtUtil.validate(token);
+    Assertions.assertNotNull(result);
+    Assertions.assertTrue(result.isValid());
+    Assertions.assertEquals(
+        expected.getPrincipal().getSubject(), result.getPrincipal().getSubject());
+    Assertions.assertEquals(expected.getPrincipal().getScope(), result.getPrincipal().getScope());
+    Assertions.assertEquals(
+        expected.getPrincipal().getExpiresAt(), result.getPrincipal().getExpiresAt());
+  }
+
+  @Test
+  void test_invalid_signature() {
+    // given
+    FastJwtVerifier verifier = new FastJwtVerifier(keyRing(), "admin");
+    String token =
+        Jwts.builder()
+            .subject("15")
+            .claim("scope", "admin")
+            .expiration(inOneHour())
+            .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret.replace('Y', 'Z'))))
+            .compact();
+
+    // when
+    TokenValidationResult result = verifier.verify(token);
+
+    // then
+    Assertions.assertNotNull(result);
+    Assertions.assertEquals(TokenValidationResult.Reason.INVALID_SIGNATURE, result.getReason());
+  }
+
+  @Test
+  void test_expired_token() {
+    // given
+    FastJwtVerifier verifier = new FastJwtVerifier(keyRing(), "admin");
+    String token =
+        Jwts.builder()
+            .subject("15")
+            .claim("scope", "admin")
+            .expiration(new Date(System.currentTimeMillis() - 60_000))
+            .signWith(key)
+            .compact();
+
+    // when
+    TokenValidationResult result = verifier.verify(token);
+
+    // then
+    Assertions.assertNotNull(result);
+    Assertions.assertEquals(TokenValidationResult.Reason.EXPIRED, result.getReason());
+  }
+
+  @Test
+  void test_invalid_scope() {
+    // given
+    FastJwtVerifier verifier = new FastJwtVerifier(keyRing(), "admin");
+    String token =
+        Jwts.builder()
+            .subject("15")
+            .claim("scope", "customer")
+            .claim("roles", List.of("a", "b"))
+            .expiration(inOneHour())
+            .signWith(key)
+            .compact();
+
+    // when
+    TokenValidationResult result = verifier.verify(token);
+
+    // then
+    Assertions.assertNotNull(result);
+    Assertions.assertEquals(TokenValidationResult.Reason.INVALID_SCOPE, result.getReason());
+  }
+
+  @Test
+  void test_key_id() {
+    // given
+    FastJwtVerifier verifier = new FastJwtVerifier(keyRing(), "admin");
+    String withKnownKeyId =
+        Jwts.builder()
+            .header()
+            .keyId("k2")
+            .and()
+            .subject("15")
+            .claim("scope", "admin")
+            .expiration(inOneHour())
+            .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret.replace('Y', 'Z'))))
+            .compact();
+    String withUnknownKeyId =
+        Jwts.builder()
+            .header()
+            .keyId("k1")
+            .and()
+            .subject("15")
+            .claim("scope", "admin")
+            .expiration(inOneHour())
+            .signWith(key)
+            .compact();
+    String withoutKeyId =
+        Jwts.builder()
+            .subject("15")
+            .claim("scope", "admin")
+            .expiration(inOneHour())
+            .signWith(key)
+            .compact();
+
+    // when
+    TokenValidationResult known = verifier.verify(withKnownKeyId);
+    TokenValidationResult unknown = verifier.verify(withUnknownKeyId);
+    TokenValidationResult legacy = verifier.verify(withoutKeyId);
+
+    // then
+    Assertions.assertTrue(known.isValid());
+    Assertions.assertEquals("k2", known.getPrincipal().getKeyId());
+    Assertions.assertEquals(TokenValidationResult.Reason.UNKNOWN_KEY, unknown.getReason());
+    Assertions.assertTrue(legacy.isValid());
+    Assertions.assertNull(legacy.getPrincipal().getKeyId());
+  }
+
+  @Test
+  void test_asymmetric_keys() {
+    // given
+    KeyPair rsa = Jwts.SIG.RS256.keyPair().build();
+    KeyPair ec = Jwts.SIG.ES256.keyPair().build();
+    AuthenticationProperties authenticationProperties = new AuthenticationProperties();
+    authenticationProperties.setJwt(new AuthenticationProperties.Jwt());
+    authenticationProperties.getJwt().setSecret(secret);
+    authenticationProperties
+        .getJwt()
+        .setKeys(
+            List.of(
+                publicKey("rsa", JwtAlgorithm.RS256, rsa),
+                publicKey("ec", JwtAlgorithm.ES256, ec)));
+    FastJwtVerifier verifier =
+        new FastJwtVerifier(new JwtKeyRing(authenticationProperties), "admin");
+    String rs256 =
+        Jwts.builder()
+            .header()
+            .keyId("rsa")
+            .and()
+            .subject("15")
+            .claim("scope", "admin")
+            .expiration(inOneHour())
+            .signWith(rsa.getPrivate(), Jwts.SIG.RS256)
+            .compact();
+    String es256 =
+        Jwts.builder()
+            .header()
+            .keyId("ec")
+            .and()
+            .subject("16")
+            .claim("scope", "admin")
+            .expiration(inOneHour())
+            .signWith(ec.getPrivate(), Jwts.SIG.ES256)
+            .compact();
+    String wrongKey =
+        Jwts.builder()
+            .header()
+            .keyId("ec")
+            .and()
+            .subject("16")
+            .claim("scope", "admin")
+            .expiration(inOneHour())
+            .signWith(Jwts.SIG.ES256.keyPair().build().getPrivate(), Jwts.SIG.ES256)
+            .compact();
+    String hs256WithRsaKeyId =
+        Jwts.builder()
+            .header()
+            .keyId("rsa")
+            .and()
+            .subject("15")
+            .claim("scope", "admin")
+            .expiration(inOneHour())
+            .signWith(key)
+            .compact();
+
+    // when
+    TokenValidationResult rs256Result = verifier.verify(rs256);
+    TokenValidationResult es256Result = verifier.verify(es256);
+    TokenValidationResult wrongKeyResult = verifier.verify(wrongKey);
+
+    // then
+    Assertions.assertTrue(rs256Result.isValid());
+    Assertions.assertEquals("15", rs256Result.getPrincipal().getSubject());
+    Assertions.assertTrue(es256Result.isValid());
+    Assertions.assertEquals("16", es256Result.getPrincipal().getSubject());
+    Assertions.assertEquals(
+        TokenValidationResult.Reason.INVALID_SIGNATURE, wrongKeyResult.getReason());
+    Assertions.assertNull(verifier.verify(hs256WithRsaKeyId));
+  }
+
+  @Test
+  void test_unusual_tokens_fall_back() {
+    // given
+    FastJwtVerifier verifier = new FastJwtVerifier(keyRing(), "admin");
+    String withNotBefore =
+        Jwts.builder()
+            .subject("15")
+            .claim("scope", "admin")
+            .notBefore(new Date())
+            .expiration(inOneHour())
+            .signWith(key)
+            .compact();
+    String withoutSubject =
+        Jwts.builder().claim("scope", "admin").expiration(inOneHour()).signWith(key).compact();
+    String hs512 =
+        Jwts.builder()
+            .subject("15")
+            .claim("scope", "admin")
+            .expiration(inOneHour())
+            .signWith(Keys.hmacShaKeyFor(new byte[64]), Jwts.SIG.HS512)
+            .compact();
+
+    // then
+    Assertions.assertNull(verifier.verify(withNotBefore));
+    Assertions.assertNull(verifier.verify(withoutSubject));
+    Assertions.assertNull(verifier.verify(hs512));
+    Assertions.assertNull(verifier.verify("aflkjnbqworhgiqwrtgu[oipjsadfvb"));
+    Assertions.assertNull(verifier.verify("a.b.c.d"));
+  }
+
+  @Test
+  void test_jwt_util_with_fast_path() {
+    // given
+    JWTUtil jwtUtil = new JWTUtil(secret, "admin", true);
+    String token =
+        jwtUtil.createToken(ValidateUserResponse.builder().userId(15L).profiles(List.of()).build());
+
+    // when
+    TokenValidationResult valid = jwtUtil.validate(token);
+    TokenValidationResult malformed = jwtUtil.validate("aflkjnbqworhgiqwrtgu[oipjsadfvb");
+
+    // then
+    Assertions.assertTrue(valid.isValid());
+    Assertions.assertEquals("15", valid.getPrincipal().getSubject());
+    Assertions.assertEquals(TokenValidationResult.Reason.MALFORMED, malformed.getReason());
+  }
+}
@@ -0,0 +1,101 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.oigres.ecomm.service.users.api.model.ValidateUserResponse;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.SecretKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the cost of validating a token with the former JWTUtil flow (isInvalid + getAllClaims,
+ * building a new parser on each call), the single pass jjwt validation and the fast path.
+ *
+ * <p>Run it with: mvn -Pbenchmark test -DskipTests -Dbenchmark=JWTUtilBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JWTUtilBenchmark {
+  private static final String secret = "Yn2kjibddFAWtnPJ2AFlL8WXmohJMCvigQggaEypa5E=";
+
+  private SecretKey key;
+  private JWTUtil jjwtUtil;
+  private JWTUtil fastPathUtil;
+  private String token;
+
+  @Setup
+  public void setup() {
+    this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+    this.jjwtUtil = new JWTUtil(secret, "admin");
+    this.fastPathUtil = new JWTUtil(secret, "admin", true);
+    this.token =
+        this.jjwtUtil.createToken(
+            ValidateUserResponse.builder().userId(15L).profiles(List.of()).build());
+  }
+
+  @Benchmark
+  public Object former_isInvalid_and_getAllClaims() {
+    Claims checked = (Claims) Jwts.parser().verifyWith(key).build().parse(token).getPayload();
+    if (checked.getExpiration().before(new Date())) {
+      return null;
+    }
+    return Jwts.parser().verifyWith(key).build().parse(token).getPayload();
+  }
+
+  @Benchmark
+  public TokenValidationResult jjwt_validate() {
+    return this.jjwtUtil.validate(this.token);
+  }
+
+  @Benchmark
+  public TokenValidationResult fast_path_validate() {
+    return this.fastPathUtil.validate(this.token);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(JWTUtilBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+        .run();
+  }
+}
@@ -18,8 +18,12 @@
 package io.oigres.ecomm.gateway.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
 import io.oigres.ecomm.service.users.api.model.ValidateProfileResponse;
 import io.oigres.ecomm.service.users.api.model.ValidateUserResponse;
+import java.util.Date;
 import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -119,4 +123,90 @@ public class JWTUtilTests {
     // then
     Assertions.assertTrue(isValid);
   }
+
+  @Test
+  void test_validate() {
+    // given
+    JWTUtil jwtUtil = new JWTUtil(secret, "admin");
+    ValidateUserResponse validateUserResponse =
+        ValidateUserResponse.builder().userId(15L).profiles(List.of()).build();
+    String token = jwtUtil.createToken(validateUserResponse);
+
+    // when
+    TokenValidationResult result = jwtUtil.validate(token);
+
+    // then
+    Assertions.assertTrue(result.isValid());
+    Assertions.assertNull(result.getReason());
+    Assertions.assertEquals("15", result.getPrincipal().getSubject());
+    Assertions.assertEquals("admin", result.getPrincipal().getScope());
+    Assertions.assertTrue(result.getPrincipal().getExpiresAt() > System.currentTimeMillis());
+  }
+
+  @Test
+  void test_validate_expired() {
+    // given
+    JWTUtil jwtUtil = new JWTUtil(secret, "admin");
+    String token =
+        Jwts.builder()
+            .subject("15")
+            .claim("scope", "admin")
+            .expiration(new Date(System.currentTimeMillis() - 60_000))
+            .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)))
+            .compact();
+
+    // when
+    TokenValidationResult result = jwtUtil.validate(token);
+
+    // then
+    Assertions.assertFalse(result.isValid());
+    Assertions.assertEquals(TokenValidationResult.Reason.EXPIRED, result.getReason());
+  }
+
+  @Test
+  void test_validate_invalid_signature() {
+    // given
+    JWTUtil jwtUtil = new JWTUtil(secret, "admin");
+    JWTUtil otherJwtUtil = new JWTUtil("c2VjcmV0LXNlY3JldC1zZWNyZXQtc2VjcmV0LXNlY3JldCE=", "admin");
+    ValidateUserResponse validateUserResponse =
+        ValidateUserResponse.builder().userId(15L).profiles(List.of()).build();
+    String token = otherJwtUtil.createToken(validateUserResponse);
+
+    // when
+    TokenValidationResult result = jwtUtil.validate(token);
+
+    // then
+    Assertions.assertFalse(result.isValid());
+    Assertions.assertEquals(TokenValidationResult.Reason.INVALID_SIGNATURE, result.getReason());
+  }
+
+  @Test
+  void test_validate_invalid_scope() {
+    // given
+    JWTUtil jwtUtil = new JWTUtil(secret, "admin");
+    JWTUtil otherJwtUtil = new JWTUtil(secret, "customer");
+    ValidateUserResponse validateUserResponse =
+        ValidateUserResponse.builder().userId(15L).profiles(List.of()).build();
+    String token = otherJwtUtil.createToken(validateUserResponse);
+
+    // when
+    TokenValidationResult result = jwtUtil.validate(token);
+
+    // then
+    Assertions.assertFalse(result.isValid());
+    Assertions.assertEquals(TokenValidationResult.Reason.INVALID_SCOPE, result.getReason());
+  }
+
+  @Test
+  void test_validate_malformed() {
+    // given
+    JWTUtil jwtUtil = new JWTUtil(secret, "admin");
+
+    // when
+    TokenValidationResult result = jwtUtil.validate("aflkjnbqworhgiqwrtgu[oipjsadfvb");
+
+    // then
+    Assertions.assertFalse(result.isValid());
+    Assertions.assertEquals(TokenValidationResult.Reason.MALFORMED, result.getReason());
+  }
 }
@@ -0,0 +1,117 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.jsonwebtoken.Jwts;
+import io.oigres.ecomm.gateway.config.AuthenticationProperties;
+import io.oigres.ecomm.service.users.api.model.ValidateUserResponse;
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures how many tokens a single core verifies per second for each supported algorithm, with
+ * jjwt and with the fast path. Dividing the expected requests per second by this throughput gives
+ * the number of cores which are needed to verify tokens.
+ *
+ * <p>Run it with: mvn -Pbenchmark test -DskipTests -Dbenchmark=JwtAlgorithmBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtAlgorithmBenchmark {
+  private static final String secret = "Yn2kjibddFAWtnPJ2AFlL8WXmohJMCvigQggaEypa5E=";
+
+  @Param({"HS256", "RS256", "ES256"})
+  private JwtAlgorithm algorithm;
+
+  private JWTUtil jjwtUtil;
+  private JWTUtil fastPathUtil;
+  private String token;
+
+  private AuthenticationProperties properties(KeyPair keyPair, boolean fastPath) {
+    AuthenticationProperties.Jwt jwt = new AuthenticationProperties.Jwt();
+    jwt.setSecret(secret);
+    jwt.setFastPath(fastPath);
+    if (keyPair != null) {
+      AuthenticationProperties.Jwt.Key key = new AuthenticationProperties.Jwt.Key();
+      key.setId("k1");
+      key.setAlgorithm(this.algorithm);
+      key.setPublicKey(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+      key.setPrivateKey(Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()));
+      jwt.getKeys().add(key);
+      jwt.setCurrentKeyId("k1");
+    }
+    AuthenticationProperties authenticationProperties = new AuthenticationProperties();
+    authenticationProperties.setScope("admin");
+    authenticationProperties.setJwt(jwt);
+    return authenticationProperties;
+  }
+
+  @Setup
+  public void setup() {
+    KeyPair keyPair =
+        switch (this.algorithm) {
+          case HS256 -> null;
+          case RS256 -> Jwts.SIG.RS256.keyPair().build();
+          case ES256 -> Jwts.SIG.ES256.keyPair().build();
+        };
+    AuthenticationProperties jjwt = properties(keyPair, false);
+    AuthenticationProperties fastPath = properties(keyPair, true);
+    this.jjwtUtil = new JWTUtil(new JwtKeyRing(jjwt), jjwt);
+    this.fastPathUtil = new JWTUtil(new JwtKeyRing(fastPath), fastPath);
+    this.token =
+        this.jjwtUtil.createToken(
+            ValidateUserResponse.builder().userId(15L).profiles(List.of()).build());
+  }
+
+  @Benchmark
+  public TokenValidationResult jjwt_validate() {
+    return this.jjwtUtil.validate(this.token);
+  }
+
+  @Benchmark
+  public TokenValidationResult fast_path_validate() {
+    return this.fastPathUtil.validate(this.token);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JwtAlgorithmBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
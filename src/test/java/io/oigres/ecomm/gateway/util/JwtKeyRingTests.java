@@ -0,0 +1,258 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.jsonwebtoken.Jwts;
+import io.oigres.ecomm.gateway.config.AuthenticationProperties;
+import io.oigres.ecomm.service.users.api.model.ValidateUserResponse;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class JwtKeyRingTests {
+  private static final String secret = "Yn2kjibddFAWtnPJ2AFlL8WXmohJMCvigQggaEypa5E=";
+  private static final String firstSecret = "c2VjcmV0LXNlY3JldC1zZWNyZXQtc2VjcmV0LXNlY3JldCE=";
+  private static final String secondSecret = "b3RoZXItb3RoZXItb3RoZXItb3RoZXItb3RoZXItb3RoZXIh";
+
+  private static class MutableClock extends Clock {
+    private Instant now = Instant.now();
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return this.now;
+    }
+  }
+
+  private static AuthenticationProperties.Jwt.Key key(String id, String secret) {
+    AuthenticationProperties.Jwt.Key key = new AuthenticationProperties.Jwt.Key();
+    key.setId(id);
+    key.setSecret(secret);
+    return key;
+  }
+
+  private static AuthenticationProperties.Jwt.Key key(
+      String id, JwtAlgorithm algorithm, KeyPair keyPair, boolean withPrivateKey) {
+    AuthenticationProperties.Jwt.Key key = new AuthenticationProperties.Jwt.Key();
+    key.setId(id);
+    key.setAlgorithm(algorithm);
+    key.setPublicKey(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+    if (withPrivateKey) {
+      key.setPrivateKey(Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()));
+    }
+    return key;
+  }
+
+  private static AuthenticationProperties properties() {
+    AuthenticationProperties.Jwt jwt = new AuthenticationProperties.Jwt();
+    jwt.setSecret(secret);
+    jwt.getKeys().add(key("k1", firstSecret));
+    jwt.setCurrentKeyId("k1");
+    jwt.setGracePeriod(Duration.ofMinutes(10));
+    AuthenticationProperties authenticationProperties = new AuthenticationProperties();
+    authenticationProperties.setScope("admin");
+    authenticationProperties.setJwt(jwt);
+    return authenticationProperties;
+  }
+
+  private static ValidateUserResponse user() {
+    return ValidateUserResponse.builder().userId(15L).profiles(List.of()).build();
+  }
+
+  @Test
+  void test_sign_with_current_key() {
+    // given
+    AuthenticationProperties authenticationProperties = properties();
+    JwtKeyRing keyRing = new JwtKeyRing(authenticationProperties);
+    JWTUtil jwtUtil = new JWTUtil(keyRing, authenticationProperties);
+
+    // when
+    String token = jwtUtil.createToken(user());
+    TokenValidationResult result = jwtUtil.validate(token);
+
+    // then
+    Assertions.assertTrue(result.isValid());
+    Assertions.assertEquals("k1", result.getPrincipal().getKeyId());
+    Assertions.assertFalse(new JWTUtil(secret, "admin").validate(token).isValid());
+  }
+
+  @Test
+  void test_legacy_tokens_are_verified_with_secret() {
+    // given
+    AuthenticationProperties authenticationProperties = properties();
+    JWTUtil jwtUtil =
+        new JWTUtil(new JwtKeyRing(authenticationProperties), authenticationProperties);
+    String token = new JWTUtil(secret, "admin").createToken(user());
+
+    // when
+    TokenValidationResult result = jwtUtil.validate(token);
+
+    // then
+    Assertions.assertTrue(result.isValid());
+    Assertions.assertNull(result.getPrincipal().getKeyId());
+  }
+
+  @Test
+  void test_rotation_keeps_retired_key_during_grace_period() {
+    // given
+    MutableClock clock = new MutableClock();
+    AuthenticationProperties authenticationProperties = properties();
+    JwtKeyRing keyRing = new JwtKeyRing(authenticationProperties, clock);
+    JWTUtil jwtUtil = new JWTUtil(keyRing, authenticationProperties);
+    String oldToken = jwtUtil.createToken(user());
+    JwtPrincipal oldPrincipal = jwtUtil.validate(oldToken).getPrincipal();
+
+    // when
+    authenticationProperties.getJwt().setKeys(List.of(key("k2", secondSecret)));
+    authenticationProperties.getJwt().setCurrentKeyId("k2");
+    keyRing.reload();
+    String newToken = jwtUtil.createToken(user());
+
+    // then
+    Assertions.assertTrue(jwtUtil.validate(oldToken).isValid());
+    Assertions.assertTrue(jwtUtil.isKeyActive(oldPrincipal));
+    Assertions.assertEquals("k2", jwtUtil.validate(newToken).getPrincipal().getKeyId());
+
+    // when
+    clock.now = clock.now.plus(Duration.ofMinutes(11));
+
+    // then
+    Assertions.assertEquals(
+        TokenValidationResult.Reason.UNKNOWN_KEY, jwtUtil.validate(oldToken).getReason());
+    Assertions.assertFalse(jwtUtil.isKeyActive(oldPrincipal));
+    Assertions.assertTrue(jwtUtil.validate(newToken).isValid());
+
+    // when
+    keyRing.reload();
+
+    // then
+    Assertions.assertNull(keyRing.current().find("k1", clock.millis()));
+    Assertions.assertEquals(2, keyRing.current().size());
+  }
+
+  @Test
+  void test_wrong_configuration_keeps_current_keys() {
+    // given
+    AuthenticationProperties authenticationProperties = properties();
+    JwtKeyRing keyRing = new JwtKeyRing(authenticationProperties);
+    JwtKeySet keySet = keyRing.current();
+
+    // when
+    authenticationProperties.getJwt().setCurrentKeyId("missing");
+    keyRing.reload();
+
+    // then
+    Assertions.assertSame(keySet, keyRing.current());
+  }
+
+  @Test
+  void test_wrong_configuration_at_startup() {
+    // given
+    AuthenticationProperties authenticationProperties = properties();
+    authenticationProperties.getJwt().setKeys(List.of(key("k1", firstSecret), key("k1", secret)));
+
+    // then
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new JwtKeyRing(authenticationProperties));
+  }
+
+  @ParameterizedTest
+  @EnumSource(
+      value = JwtAlgorithm.class,
+      names = {"RS256", "ES256"})
+  void test_asymmetric_keys(JwtAlgorithm algorithm) {
+    // given
+    KeyPair keyPair =
+        algorithm == JwtAlgorithm.RS256
+            ? Jwts.SIG.RS256.keyPair().build()
+            : Jwts.SIG.ES256.keyPair().build();
+    AuthenticationProperties signer = properties();
+    signer.getJwt().setKeys(List.of(key("a1", algorithm, keyPair, true)));
+    signer.getJwt().setCurrentKeyId("a1");
+    AuthenticationProperties verifier = properties();
+    verifier.getJwt().setKeys(List.of(key("a1", algorithm, keyPair, false)));
+    verifier.getJwt().setCurrentKeyId(null);
+    JWTUtil signerUtil = new JWTUtil(new JwtKeyRing(signer), signer);
+    JWTUtil jjwtUtil = new JWTUtil(new JwtKeyRing(verifier), verifier);
+    verifier.getJwt().setFastPath(true);
+    JWTUtil fastPathUtil = new JWTUtil(new JwtKeyRing(verifier), verifier);
+    String token = signerUtil.createToken(user());
+    String tampered = token.substring(0, token.length() - 4) + "AAAA";
+
+    // when
+    TokenValidationResult jjwtResult = jjwtUtil.validate(token);
+    TokenValidationResult fastPathResult = fastPathUtil.validate(token);
+
+    // then
+    Assertions.assertTrue(jjwtResult.isValid());
+    Assertions.assertTrue(fastPathResult.isValid());
+    Assertions.assertEquals("a1", fastPathResult.getPrincipal().getKeyId());
+    Assertions.assertEquals("15", fastPathResult.getPrincipal().getSubject());
+    Assertions.assertFalse(jjwtUtil.validate(tampered).isValid());
+    Assertions.assertFalse(fastPathUtil.validate(tampered).isValid());
+  }
+
+  @Test
+  void test_es256_key_must_be_p256() throws Exception {
+    // given
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(384);
+    AuthenticationProperties authenticationProperties = properties();
+    authenticationProperties
+        .getJwt()
+        .setKeys(List.of(key("a1", JwtAlgorithm.ES256, generator.generateKeyPair(), true)));
+
+    // then
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new JwtKeyRing(authenticationProperties));
+  }
+
+  @Test
+  void test_asymmetric_key_without_private_key_can_not_sign() {
+    // given
+    KeyPair keyPair = Jwts.SIG.ES256.keyPair().build();
+    AuthenticationProperties authenticationProperties = properties();
+    authenticationProperties
+        .getJwt()
+        .setKeys(List.of(key("a1", JwtAlgorithm.ES256, keyPair, false)));
+    authenticationProperties.getJwt().setCurrentKeyId("a1");
+
+    // then
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new JwtKeyRing(authenticationProperties));
+  }
+}
@@ -0,0 +1,115 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.oigres.ecomm.gateway.config.AuthenticationProperties;
+import io.oigres.ecomm.service.users.api.model.ValidateUserResponse;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RevokedTokenRegistryTests {
+  private static final String secret = "Yn2kjibddFAWtnPJ2AFlL8WXmohJMCvigQggaEypa5E=";
+
+  private static RevokedTokenRegistry registry(long expectedTokens) {
+    AuthenticationProperties authenticationProperties = new AuthenticationProperties();
+    authenticationProperties.getRevocation().setExpectedTokens(expectedTokens);
+    return new RevokedTokenRegistry(authenticationProperties, new SimpleMeterRegistry());
+  }
+
+  @Test
+  void test_revoke() {
+    // given
+    RevokedTokenRegistry registry = registry(1_000);
+    long expiresAt = System.currentTimeMillis() + 60_000;
+
+    // when
+    registry.revoke("token-1", expiresAt);
+
+    // then
+    Assertions.assertTrue(registry.isRevoked("token-1"));
+    Assertions.assertFalse(registry.isRevoked("token-2"));
+  }
+
+  @Test
+  void test_expired_tokens_are_not_kept() {
+    // given
+    RevokedTokenRegistry registry = registry(1_000);
+
+    // when
+    registry.revoke("token-1", System.currentTimeMillis() - 1);
+
+    // then
+    Assertions.assertFalse(registry.isRevoked("token-1"));
+  }
+
+  @Test
+  void test_purge() throws InterruptedException {
+    // given
+    RevokedTokenRegistry registry = registry(1_000);
+    registry.revoke("short-lived", System.currentTimeMillis() + 50);
+    registry.revoke("long-lived", System.currentTimeMillis() + 60_000);
+    Thread.sleep(100);
+
+    // when
+    registry.purge();
+
+    // then
+    Assertions.assertFalse(registry.isRevoked("short-lived"));
+    Assertions.assertTrue(registry.isRevoked("long-lived"));
+  }
+
+  @Test
+  void test_no_false_negatives_beyond_expected_size() {
+    // given
+    RevokedTokenRegistry registry = registry(100);
+    long expiresAt = System.currentTimeMillis() + 60_000;
+    List<String> tokenIds =
+        Stream.generate(() -> UUID.randomUUID().toString()).limit(5_000).toList();
+
+    // when
+    tokenIds.forEach(tokenId -> registry.revoke(tokenId, expiresAt));
+
+    // then
+    tokenIds.forEach(tokenId -> Assertions.assertTrue(registry.isRevoked(tokenId)));
+    Assertions.assertFalse(registry.isRevoked(UUID.randomUUID().toString()));
+  }
+
+  @Test
+  void test_created_tokens_have_id() {
+    // given
+    JWTUtil jwtUtil = new JWTUtil(secret, "admin", true);
+    RevokedTokenRegistry registry = registry(1_000);
+    String token =
+        jwtUtil.createToken(ValidateUserResponse.builder().userId(15L).profiles(List.of()).build());
+    JwtPrincipal principal = jwtUtil.validate(token).getPrincipal();
+
+    // when
+    registry.revoke(principal.getTokenId(), principal.getExpiresAt());
+
+    // then
+    Assertions.assertNotNull(principal.getTokenId());
+    Assertions.assertEquals(
+        principal.getTokenId(),
+        new JWTUtil(secret, "admin").validate(token).getPrincipal().getTokenId());
+    Assertions.assertTrue(registry.isRevoked(principal.getTokenId()));
+  }
+}
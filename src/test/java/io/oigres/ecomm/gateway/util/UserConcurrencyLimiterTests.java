@@ -0,0 +1,147 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.oigres.ecomm.gateway.config.GatewayProperties;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class UserConcurrencyLimiterTests {
+  private GatewayProperties properties;
+  private MeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setup() {
+    this.properties = new GatewayProperties();
+    this.properties.getConcurrencyLimit().setEnabled(true);
+    this.properties.getConcurrencyLimit().setMaxInFlight(3);
+    this.meterRegistry = new SimpleMeterRegistry();
+  }
+
+  @Test
+  void test_max_in_flight() {
+    // given
+    UserConcurrencyLimiter limiter =
+        new UserConcurrencyLimiter(this.properties, this.meterRegistry);
+
+    // when
+    int admitted = 0;
+    for (int i = 0; i < 5; i++) {
+      admitted += limiter.tryAcquire("15") ? 1 : 0;
+    }
+    boolean otherUserAdmitted = limiter.tryAcquire("16");
+
+    // then
+    Assertions.assertEquals(3, admitted);
+    Assertions.assertTrue(otherUserAdmitted);
+    Assertions.assertEquals(3, limiter.inFlight("15"));
+    Assertions.assertEquals(
+        2.0, this.meterRegistry.get("gateway.concurrency.limit.rejected").counter().count());
+  }
+
+  @Test
+  void test_release() {
+    // given
+    UserConcurrencyLimiter limiter =
+        new UserConcurrencyLimiter(this.properties, this.meterRegistry);
+    limiter.tryAcquire("15");
+    limiter.tryAcquire("15");
+    limiter.tryAcquire("15");
+
+    // when
+    limiter.release("15");
+    boolean admitted = limiter.tryAcquire("15");
+    limiter.release("15");
+    limiter.release("15");
+    limiter.release("15");
+
+    // then
+    Assertions.assertTrue(admitted);
+    Assertions.assertEquals(0, limiter.inFlight("15"));
+    Assertions.assertEquals(
+        0.0, this.meterRegistry.get("gateway.concurrency.limit.users").gauge().value());
+    Assertions.assertEquals(
+        3.0, this.meterRegistry.get("gateway.concurrency.limit.peak").summary().max());
+  }
+
+  @Test
+  void test_disabled() {
+    // given
+    this.properties.getConcurrencyLimit().setEnabled(false);
+    UserConcurrencyLimiter limiter =
+        new UserConcurrencyLimiter(this.properties, this.meterRegistry);
+
+    // when
+    int admitted = 0;
+    for (int i = 0; i < 5; i++) {
+      admitted += limiter.tryAcquire("15") ? 1 : 0;
+    }
+
+    // then
+    Assertions.assertEquals(5, admitted);
+    Assertions.assertEquals(0, limiter.inFlight("15"));
+  }
+
+  @Test
+  void test_concurrent_requests_never_exceed_max() throws Exception {
+    // given
+    UserConcurrencyLimiter limiter =
+        new UserConcurrencyLimiter(this.properties, this.meterRegistry);
+    AtomicInteger current = new AtomicInteger();
+    AtomicInteger peak = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+
+    // when
+    for (int t = 0; t < 8; t++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                start.await();
+                for (int i = 0; i < 10_000; i++) {
+                  if (limiter.tryAcquire("15")) {
+                    peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+                    current.decrementAndGet();
+                    limiter.release("15");
+                  }
+                }
+                return null;
+              }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    // then
+    Assertions.assertTrue(peak.get() <= 3);
+    Assertions.assertEquals(0, limiter.inFlight("15"));
+  }
+}
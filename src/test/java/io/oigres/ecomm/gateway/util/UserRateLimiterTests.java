@@ -0,0 +1,205 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.oigres.ecomm.gateway.config.GatewayProperties;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RAtomicLongAsync;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RedissonClient;
+
+public class UserRateLimiterTests {
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private GatewayProperties properties;
+  private RedissonClient redissonClient;
+  private MeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setup() {
+    this.properties = new GatewayProperties();
+    this.properties.getRateLimit().setEnabled(true);
+    this.properties.getRateLimit().setCapacity(5);
+    this.properties.getRateLimit().setRefillRate(10);
+    this.redissonClient = mock(RedissonClient.class);
+    this.meterRegistry = new SimpleMeterRegistry();
+  }
+
+  private static int acquire(UserRateLimiter limiter, String userId, int requests, long now) {
+    int admitted = 0;
+    for (int i = 0; i < requests; i++) {
+      if (limiter.tryAcquire(userId, now)) {
+        admitted++;
+      }
+    }
+    return admitted;
+  }
+
+  @SuppressWarnings("unchecked")
+  private RAtomicLongAsync givenRedisCounter(long... totals) {
+    RBatch batch = mock(RBatch.class);
+    RAtomicLongAsync counter = mock(RAtomicLongAsync.class);
+    given(this.redissonClient.createBatch(any(BatchOptions.class))).willReturn(batch);
+    given(batch.getAtomicLong(UserRateLimiter.KEY_PREFIX + "15")).willReturn(counter);
+    RFuture<Long>[] futures = new RFuture[totals.length];
+    for (int i = 0; i < totals.length; i++) {
+      futures[i] = mock(RFuture.class);
+      given(futures[i].toCompletableFuture())
+          .willReturn(CompletableFuture.completedFuture(totals[i]));
+    }
+    given(counter.addAndGetAsync(anyLong()))
+        .willReturn(futures[0], Arrays.copyOfRange(futures, 1, futures.length));
+    return counter;
+  }
+
+  @Test
+  void test_burst_is_cut_off() {
+    // given
+    UserRateLimiter limiter =
+        new UserRateLimiter(this.properties, this.redissonClient, this.meterRegistry);
+    long now = System.nanoTime();
+
+    // when
+    int admitted = acquire(limiter, "15", 20, now);
+    int otherUserAdmitted = acquire(limiter, "16", 1, now);
+
+    // then
+    Assertions.assertEquals(5, admitted);
+    Assertions.assertEquals(1, otherUserAdmitted);
+    Assertions.assertEquals(
+        15.0, this.meterRegistry.get("gateway.rate.limit.rejected").counter().count());
+  }
+
+  @Test
+  void test_bucket_is_refilled() {
+    // given
+    UserRateLimiter limiter =
+        new UserRateLimiter(this.properties, this.redissonClient, this.meterRegistry);
+    long now = System.nanoTime();
+    acquire(limiter, "15", 5, now);
+
+    // when
+    int admittedAfter100ms = acquire(limiter, "15", 5, now + SECOND / 10);
+    int admittedAfter1s = acquire(limiter, "15", 10, now + SECOND + SECOND / 10);
+
+    // then
+    Assertions.assertEquals(1, admittedAfter100ms);
+    Assertions.assertEquals(5, admittedAfter1s);
+  }
+
+  @Test
+  void test_disabled() {
+    // given
+    this.properties.getRateLimit().setEnabled(false);
+    UserRateLimiter limiter =
+        new UserRateLimiter(this.properties, this.redissonClient, this.meterRegistry);
+
+    // when
+    int admitted = 0;
+    for (int i = 0; i < 20; i++) {
+      admitted += limiter.tryAcquire("15") ? 1 : 0;
+    }
+    limiter.synchronize();
+
+    // then
+    Assertions.assertEquals(20, admitted);
+    then(this.redissonClient).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void test_usage_of_other_instances_is_charged() {
+    // given
+    UserRateLimiter limiter =
+        new UserRateLimiter(this.properties, this.redissonClient, this.meterRegistry);
+    // first sync learns the counter, second one sees 2 local and 3 remote requests
+    RAtomicLongAsync counter = givenRedisCounter(100, 105);
+    long now = System.nanoTime();
+    acquire(limiter, "15", 1, now);
+    limiter.synchronize(now);
+    acquire(limiter, "15", 2, now + SECOND);
+
+    // when
+    limiter.synchronize(now + SECOND);
+    int admitted = acquire(limiter, "15", 5, now + SECOND);
+
+    // then
+    then(counter).should().addAndGetAsync(1);
+    then(counter).should().addAndGetAsync(2);
+    Assertions.assertEquals(0, admitted);
+  }
+
+  @Test
+  void test_usage_is_kept_when_sync_fails() {
+    // given
+    UserRateLimiter limiter =
+        new UserRateLimiter(this.properties, this.redissonClient, this.meterRegistry);
+    RAtomicLongAsync counter = givenRedisCounter(3);
+    RBatch batch = this.redissonClient.createBatch(BatchOptions.defaults());
+    given(batch.execute()).willThrow(new IllegalStateException("redis is down"));
+    long now = System.nanoTime();
+    acquire(limiter, "15", 3, now);
+
+    // when
+    limiter.synchronize(now);
+    reset(batch);
+    given(batch.getAtomicLong(UserRateLimiter.KEY_PREFIX + "15")).willReturn(counter);
+    limiter.synchronize(now);
+
+    // then
+    then(counter).should(times(2)).addAndGetAsync(3);
+  }
+
+  @Test
+  void test_idle_users_are_not_synchronized() {
+    // given
+    UserRateLimiter limiter =
+        new UserRateLimiter(this.properties, this.redissonClient, this.meterRegistry);
+    RAtomicLongAsync counter = givenRedisCounter(2, 4);
+    RBatch batch = this.redissonClient.createBatch(BatchOptions.defaults());
+    long now = System.nanoTime();
+    acquire(limiter, "15", 2, now);
+
+    // when
+    limiter.synchronize(now);
+    limiter.synchronize(now + SECOND);
+    limiter.synchronize(now + 2 * SECOND);
+    limiter.synchronize(now + 3 * SECOND);
+
+    // then
+    then(counter).should().addAndGetAsync(2);
+    then(counter).should().addAndGetAsync(0);
+    then(batch).should(times(2)).execute();
+  }
+}
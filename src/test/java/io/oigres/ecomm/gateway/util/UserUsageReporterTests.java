@@ -0,0 +1,189 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.oigres.ecomm.gateway.config.LimiterServiceProperties;
+import io.oigres.ecomm.gateway.model.UserUsage;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+
+public class UserUsageReporterTests {
+  private static final String TOPIC = "user-usage-topic";
+  private static final Instant T0 = Instant.parse("2024-08-01T10:00:00Z");
+
+  private LimiterServiceProperties properties;
+  private KafkaTemplate<String, Object> kafkaTemplate;
+  private MeterRegistry meterRegistry;
+  private Clock clock;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setup() {
+    this.properties = new LimiterServiceProperties();
+    this.properties.setTopics(new LimiterServiceProperties.Topics());
+    this.properties.getTopics().setUsage(new LimiterServiceProperties.UsageTopicProperties());
+    this.properties.getTopics().getUsage().setName(TOPIC);
+    this.properties.getUsage().setEnabled(true);
+    this.kafkaTemplate = mock(KafkaTemplate.class);
+    this.meterRegistry = new SimpleMeterRegistry();
+    this.clock = mock(Clock.class);
+    given(this.clock.instant())
+        .willReturn(T0, T0.plusSeconds(1), T0.plusSeconds(2), T0.plusSeconds(3));
+  }
+
+  private UserUsageReporter newReporter() {
+    return new UserUsageReporter(
+        this.properties, this.kafkaTemplate, this.meterRegistry, this.clock, Runnable::run);
+  }
+
+  private List<UserUsage> sentUsages(int times) {
+    ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+    then(this.kafkaTemplate).should(times(times)).send(eq(TOPIC), anyString(), captor.capture());
+    return captor.getAllValues().stream().map(UserUsage.class::cast).toList();
+  }
+
+  @Test
+  void test_one_record_per_user_and_window() {
+    // given
+    UserUsageReporter reporter = newReporter();
+    for (int i = 0; i < 100; i++) {
+      reporter.record("15");
+    }
+    reporter.record("16");
+
+    // when
+    reporter.flush();
+
+    // then
+    Map<String, UserUsage> usages =
+        sentUsages(2).stream().collect(Collectors.toMap(UserUsage::getUserId, usage -> usage));
+    Assertions.assertEquals(100, usages.get("15").getRequests());
+    Assertions.assertEquals(1, usages.get("16").getRequests());
+    Assertions.assertEquals(T0, usages.get("15").getWindowStart());
+    Assertions.assertEquals(T0.plusSeconds(1), usages.get("15").getWindowEnd());
+    Assertions.assertEquals(2.0, this.meterRegistry.get("gateway.usage.records").counter().count());
+  }
+
+  @Test
+  void test_windows_do_not_overlap() {
+    // given
+    UserUsageReporter reporter = newReporter();
+    reporter.record("15");
+    reporter.flush();
+    reporter.record("15");
+    reporter.record("15");
+
+    // when
+    reporter.flush();
+
+    // then
+    List<UserUsage> usages = sentUsages(2);
+    Assertions.assertEquals(1, usages.get(0).getRequests());
+    Assertions.assertEquals(2, usages.get(1).getRequests());
+    Assertions.assertEquals(usages.get(0).getWindowEnd(), usages.get(1).getWindowStart());
+  }
+
+  @Test
+  void test_idle_users_are_forgotten() {
+    // given
+    UserUsageReporter reporter = newReporter();
+    reporter.record("15");
+    reporter.flush();
+
+    // when
+    reporter.flush();
+
+    // then
+    sentUsages(1);
+    Assertions.assertEquals(0.0, this.meterRegistry.get("gateway.usage.users").gauge().value());
+  }
+
+  @Test
+  void test_no_request_is_lost_while_flushing() throws InterruptedException {
+    // given
+    given(this.clock.instant()).willReturn(T0);
+    UserUsageReporter reporter = newReporter();
+    AtomicLong sent = new AtomicLong();
+    given(this.kafkaTemplate.send(eq(TOPIC), anyString(), any()))
+        .willAnswer(
+            invocation -> {
+              sent.addAndGet(((UserUsage) invocation.getArgument(2)).getRequests());
+              return null;
+            });
+    int threads = 4;
+    int requests = 50_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch done = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      executor.execute(
+          () -> {
+            for (int i = 0; i < requests; i++) {
+              // a few users, so counters are retired and created again while counting
+              reporter.record(String.valueOf(i % 3));
+            }
+            done.countDown();
+          });
+    }
+
+    // when
+    while (done.getCount() > 0) {
+      reporter.flush();
+    }
+    reporter.flush();
+    executor.shutdown();
+
+    // then
+    Assertions.assertEquals((long) threads * requests, sent.get());
+  }
+
+  @Test
+  void test_disabled() {
+    // given
+    this.properties.getUsage().setEnabled(false);
+    UserUsageReporter reporter = newReporter();
+    reporter.record("15");
+
+    // when
+    reporter.flush();
+
+    // then
+    then(this.kafkaTemplate).should(times(0)).send(anyString(), anyString(), any());
+  }
+}
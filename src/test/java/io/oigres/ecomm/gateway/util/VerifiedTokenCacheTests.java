@@ -0,0 +1,133 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.oigres.ecomm.gateway.config.AuthenticationProperties;
+import io.oigres.ecomm.service.users.api.model.ValidateProfileResponse;
+import io.oigres.ecomm.service.users.api.model.ValidateUserResponse;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class VerifiedTokenCacheTests {
+  private static final String secret = "Yn2kjibddFAWtnPJ2AFlL8WXmohJMCvigQggaEypa5E=";
+
+  private static AuthenticationProperties buildProperties(boolean enabled) {
+    AuthenticationProperties properties = new AuthenticationProperties();
+    properties.getTokenCache().setEnabled(enabled);
+    properties.getTokenCache().setMaximumSize(10);
+    return properties;
+  }
+
+  private static String createToken(JWTUtil jwtUtil) {
+    ValidateUserResponse validateUserResponse =
+        ValidateUserResponse.builder()
+            .userId(15L)
+            .profiles(
+                List.of(
+                    ValidateProfileResponse.builder()
+                        .profileId(16L)
+                        .profileType("ADMIN")
+                        .isEnabled(true)
+                        .build()))
+            .build();
+    return jwtUtil.createToken(validateUserResponse);
+  }
+
+  @Test
+  void test_cache_hit() {
+    // given
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    VerifiedTokenCache cache = new VerifiedTokenCache(buildProperties(true), meterRegistry);
+    JWTUtil jwtUtil = new JWTUtil(secret, "admin");
+    String token = createToken(jwtUtil);
+    JwtPrincipal principal = jwtUtil.validate(token).getPrincipal();
+
+    // when
+    JwtPrincipal missed = cache.get(token);
+    cache.put(token, principal);
+    JwtPrincipal cached = cache.get(token);
+
+    // then
+    Assertions.assertNull(missed);
+    Assertions.assertSame(principal, cached);
+    Assertions.assertEquals(
+        1.0,
+        meterRegistry
+            .get("cache.gets")
+            .tag("cache", VerifiedTokenCache.CACHE_NAME)
+            .tag("result", "hit")
+            .functionCounter()
+            .count());
+    Assertions.assertEquals(
+        1.0,
+        meterRegistry
+            .get("cache.gets")
+            .tag("cache", VerifiedTokenCache.CACHE_NAME)
+            .tag("result", "miss")
+            .functionCounter()
+            .count());
+  }
+
+  @Test
+  void test_expired_principal_is_not_cached() {
+    // given
+    VerifiedTokenCache cache =
+        new VerifiedTokenCache(buildProperties(true), new SimpleMeterRegistry());
+    JwtPrincipal principal =
+        JwtPrincipal.builder()
+            .subject("15")
+            .scope("admin")
+            .expiresAt(System.currentTimeMillis() - 1000)
+            .build();
+
+    // when
+    cache.put("a.b.c", principal);
+
+    // then
+    Assertions.assertNull(cache.get("a.b.c"));
+  }
+
+  @Test
+  void test_disabled_cache() {
+    // given
+    VerifiedTokenCache cache =
+        new VerifiedTokenCache(buildProperties(false), new SimpleMeterRegistry());
+    JWTUtil jwtUtil = new JWTUtil(secret, "admin");
+    String token = createToken(jwtUtil);
+
+    // when
+    cache.put(token, jwtUtil.validate(token).getPrincipal());
+
+    // then
+    Assertions.assertNull(cache.get(token));
+  }
+
+  @Test
+  void test_digest_does_not_keep_token() {
+    // when
+    String digest = VerifiedTokenCache.digest("header.payload.signature");
+
+    // then
+    Assertions.assertEquals(64, digest.length());
+    Assertions.assertFalse(digest.contains("payload"));
+    Assertions.assertEquals(digest, VerifiedTokenCache.digest("header.payload.signature"));
+  }
+}
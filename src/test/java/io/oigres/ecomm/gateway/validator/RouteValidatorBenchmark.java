@@ -0,0 +1,100 @@
+/**********
+ This project is free software; you can redistribute it and/or modify it under
+ the terms of the GNU General Public License as published by the
+ Free Software Foundation; either version 3.0 of the License, or (at your
+ option) any later version. (See <https://www.gnu.org/licenses/gpl-3.0.html>.)
+
+ This project is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE.  See the GNU General Public License for
+ more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this project; if not, write to the Free Software Foundation, Inc.,
+ 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301  USA
+ **********/
+// Copyright (c) 2024-2025 Sergio Exposito.  All rights reserved.              
+
+package io.oigres.ecomm.gateway.validator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the former RouteValidator check (a stream over the unprotected urls with
+ * String.contains) against the compiled path trie, with thousands of configured patterns.
+ *
+ * <p>Run it with: mvn -Pbenchmark test -DskipTests -Dbenchmark=RouteValidatorBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RouteValidatorBenchmark {
+
+  @Param({"1000", "5000"})
+  private int patterns;
+
+  private List<String> unprotected;
+  private RouteValidator routeValidator;
+  private String securedPath;
+  private String unprotectedPath;
+
+  @Setup
+  public void setup() {
+    this.unprotected = new ArrayList<>();
+    for (int i = 0; i < this.patterns; i++) {
+      switch (i % 3) {
+        case 0 -> this.unprotected.add("/api/v1/service" + i + "/public");
+        case 1 -> this.unprotected.add("/api/v1/service" + i + "/*/images");
+        default -> this.unprotected.add("/api/v1/service" + i + "/docs/**");
+      }
+    }
+    this.routeValidator = new RouteValidator(this.unprotected, List.of());
+    this.securedPath = "/api/v1/products/15/images/3";
+    this.unprotectedPath = "/api/v1/service" + (this.patterns - 1) + "/public";
+  }
+
+  @Benchmark
+  public boolean former_stream_contains_secured() {
+    String path = this.securedPath;
+    return this.unprotected.stream().noneMatch(path::contains);
+  }
+
+  @Benchmark
+  public boolean path_trie_secured() {
+    return this.routeValidator.isSecured(this.securedPath);
+  }
+
+  @Benchmark
+  public boolean path_trie_unprotected() {
+    return this.routeValidator.isSecured(this.unprotectedPath);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(RouteValidatorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+        .run();
+  }
+}
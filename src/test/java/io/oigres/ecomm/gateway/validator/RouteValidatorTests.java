@@ -18,6 +18,8 @@
 package io.oigres.ecomm.gateway.validator;
 
 import java.net.URI;
+import java.util.List;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.io.buffer.DataBuffer;
@@ -82,4 +84,79 @@ public class RouteValidatorTests {
         new TestServerHttpRequest(HttpMethod.GET, URI.create("/api/v1/products"), "");
     Assertions.assertTrue(routeValidator.isSecured.test(serverHttpRequest));
   }
+
+  @Test
+  void test_signin_path_inside_other_path() {
+    RouteValidator routeValidator = new RouteValidator();
+    ServerHttpRequest serverHttpRequest =
+        new TestServerHttpRequest(
+            HttpMethod.GET, URI.create("/api/v1/products" + RouteValidator.SIGNIN_PATH), "");
+    Assertions.assertTrue(routeValidator.isSecured.test(serverHttpRequest));
+    Assertions.assertTrue(routeValidator.isSecured(RouteValidator.SIGNIN_PATH + "/other"));
+    Assertions.assertTrue(routeValidator.isSecured(RouteValidator.SIGNIN_PATH + "x"));
+    Assertions.assertFalse(routeValidator.isSecured(RouteValidator.SIGNIN_PATH + "/"));
+  }
+
+  @Test
+  void test_configured_patterns() {
+    // given
+    RouteValidator routeValidator =
+        new RouteValidator(
+            List.of("/api/v1/public/**", "/api/v1/products/*/images", "/health"),
+            List.of("/api/v1/public/admin/**", "/api/v1/products/secret/images"));
+
+    // then
+    Assertions.assertFalse(routeValidator.isSecured("/api/v1/public"));
+    Assertions.assertFalse(routeValidator.isSecured("/api/v1/public/catalog/1"));
+    Assertions.assertTrue(routeValidator.isSecured("/api/v1/public/admin"));
+    Assertions.assertTrue(routeValidator.isSecured("/api/v1/public/admin/users"));
+    Assertions.assertFalse(routeValidator.isSecured("/api/v1/public/administrator"));
+    Assertions.assertFalse(routeValidator.isSecured("/api/v1/products/15/images"));
+    Assertions.assertTrue(routeValidator.isSecured("/api/v1/products/15/images/1"));
+    Assertions.assertTrue(routeValidator.isSecured("/api/v1/products/secret/images"));
+    Assertions.assertTrue(routeValidator.isSecured("/api/v1/products/images"));
+    Assertions.assertFalse(routeValidator.isSecured("/health"));
+    Assertions.assertTrue(routeValidator.isSecured("/healthz"));
+    Assertions.assertTrue(routeValidator.isSecured("/"));
+    Assertions.assertTrue(routeValidator.isSecured(""));
+  }
+
+  @Test
+  void test_dot_and_empty_segments_are_secured() {
+    // given
+    RouteValidator routeValidator = new RouteValidator(List.of("/api/v1/public/**"), List.of());
+
+    // then
+    Assertions.assertTrue(routeValidator.isSecured("/api/v1/public/../admin"));
+    Assertions.assertTrue(routeValidator.isSecured("/api/v1/public/./catalog"));
+    Assertions.assertTrue(routeValidator.isSecured("/api/v1/public//catalog"));
+    Assertions.assertFalse(routeValidator.isSecured("/api/v1/public/..catalog"));
+  }
+
+  @Test
+  void test_many_patterns() {
+    // given
+    List<String> unprotected =
+        IntStream.range(0, 2_000).mapToObj(i -> "/api/v1/service" + i + "/public").toList();
+    RouteValidator routeValidator = new RouteValidator(unprotected, List.of());
+
+    // then
+    Assertions.assertFalse(routeValidator.isSecured("/api/v1/service0/public"));
+    Assertions.assertFalse(routeValidator.isSecured("/api/v1/service1999/public"));
+    Assertions.assertTrue(routeValidator.isSecured("/api/v1/service2000/public"));
+    Assertions.assertTrue(routeValidator.isSecured("/api/v1/service15/private"));
+  }
+
+  @Test
+  void test_wrong_patterns() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new RouteValidator(List.of("api/v1/public"), List.of()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new RouteValidator(List.of("/api/**/public"), List.of()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> new RouteValidator(List.of("/api//public"), List.of()));
+  }
 }